@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.customConverter;
+
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.core.lang.Tuple2;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.Unpooled;
+import com.couchbase.client.java.transcoder.TranscoderUtils;
+import com.couchbase.roadrunner.sampleClasses.Device;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The conversions every write and read goes through: rendering a sample
+ * object to JSON, and encoding and decoding the payload of a document with
+ * the transcoder handed to the SDK.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranscoderBenchmark {
+
+	private JacksonConverter converter;
+
+	private ByteJsonTranscoder transcoder;
+
+	private Device device;
+
+	private ByteJsonDocument document;
+
+	/** A read response as handed to the transcoder, shared by all decodes. */
+	private ByteBuf response;
+
+	@Setup
+	public void setup() {
+		converter = new JacksonConverter();
+		transcoder = new ByteJsonTranscoder();
+		device = new Device();
+		byte[] payload = converter.toBytes(device);
+		document = ByteJsonDocument.create("Device-1", payload);
+		response = Unpooled.directBuffer(payload.length).writeBytes(payload);
+	}
+
+	@Benchmark
+	public byte[] toBytes() {
+		return converter.toBytes(device);
+	}
+
+	@Benchmark
+	public Tuple2<ByteBuf, Integer> encode() {
+		return transcoder.encode(document);
+	}
+
+	@Benchmark
+	public ByteJsonDocument decode() {
+		// the transcoder releases what it decodes, the duplicate shares the reference count
+		return transcoder.decode("Device-1", response.duplicate().retain(), 1, 0,
+				TranscoderUtils.JSON_COMPAT_FLAGS, ResponseStatus.SUCCESS);
+	}
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.roadrunner.customConverter.ByteBufJsonDocument;
+import com.couchbase.roadrunner.customConverter.ByteJsonDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The documents of the writes, rendered per document or taken from a
+ * payload pool (see --payload-pool).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DocumentGeneratorBenchmark {
+
+	@Param({"0", "1024"})
+	public int payloadPool;
+
+	private DocumentGenerator generator;
+
+	@Setup
+	public void setup() {
+		generator = new DocumentGenerator("Device", payloadPool);
+	}
+
+	@Benchmark
+	public ByteJsonDocument getDocument() {
+		return generator.getDocument("Device-1");
+	}
+
+	@Benchmark
+	public ByteBufJsonDocument getBufferDocument() {
+		ByteBufJsonDocument document = generator.getBufferDocument("Device-1");
+		// the SDK releases the content once written
+		document.content().release();
+		return document;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.roadrunner.GlobalConfig;
+import com.couchbase.roadrunner.RoadRunner;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import rx.Observable;
+import rx.Subscription;
+
+/**
+ * What a worker does per op besides calling the SDK: picking and building
+ * the key, and recording the latency and outcome of a measured op. The
+ * worker has no bucket, none of this touches it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WorkloadBenchmark {
+
+	/**
+	 * A worker picking keys with the given distribution and format.
+	 */
+	@State(Scope.Thread)
+	public static class Keys {
+
+		@Param({"sequential", "zipfian"})
+		public String keyDistribution;
+
+		@Param({"padded", "hashed"})
+		public String keyFormat;
+
+		private Workload workload;
+
+		private long opNumber;
+
+		@Setup
+		public void setup() throws ParseException {
+			workload = workload("--" + RoadRunner.OPT_KEY_DISTRIBUTION, keyDistribution,
+					"--" + RoadRunner.OPT_KEY_FORMAT, keyFormat);
+		}
+	}
+
+	private Workload workload;
+
+	private Observable<Object> completed;
+
+	@Setup
+	public void setup() throws ParseException {
+		workload = workload();
+		completed = Observable.just(new Object());
+	}
+
+	@Benchmark
+	public String key(Keys keys) {
+		return keys.workload.key(keys.opNumber++);
+	}
+
+	@Benchmark
+	public void addMeasure() {
+		workload.addMeasure("get", System.nanoTime());
+	}
+
+	@Benchmark
+	public Subscription measuredOp() {
+		return workload.counted("get", workload.measured("get", completed, System.nanoTime(), 0)).subscribe();
+	}
+
+	private static Workload workload(String... args) throws ParseException {
+		Options options = new Options()
+				.addOption(null, RoadRunner.OPT_KEY_DISTRIBUTION, true, "")
+				.addOption(null, RoadRunner.OPT_KEY_FORMAT, true, "");
+		GlobalConfig config = new GlobalConfig(new GnuParser().parse(options, args));
+		return new Workload("Benchmark", null, config, null, 1000000, 0);
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The agent side of a distributed run: receives the command line and the
+ * key range share from the coordinator, waits at the start of every phase
+ * until all agents are ready, and streams the measures back.
+ */
+final class AgentConnection implements Closeable {
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(AgentConnection.class.getName());
+
+  private final Socket socket;
+
+  private final DataInputStream in;
+
+  private final DataOutputStream out;
+
+  private final int index;
+
+  private final int count;
+
+  private final String[] args;
+
+  private ScheduledExecutorService streamer;
+
+  private AgentConnection(Socket socket) throws IOException {
+    this.socket = socket;
+    this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+    this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+    out.writeByte(AgentProtocol.HELLO);
+    out.writeUTF(InetAddress.getLocalHost().getHostName());
+    out.flush();
+
+    AgentProtocol.expect(AgentProtocol.ASSIGN, in.readByte());
+    this.index = in.readInt();
+    this.count = in.readInt();
+    this.args = new String[in.readInt()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = in.readUTF();
+    }
+  }
+
+  /**
+   * Connect to the coordinator and receive the assignment.
+   *
+   * @param address the coordinator as host:port.
+   * @return the connection.
+   */
+  static AgentConnection connect(String address) throws IOException {
+    int colon = address.lastIndexOf(':');
+    if (colon < 0) {
+      throw new IllegalArgumentException("Expected host:port but got: " + address);
+    }
+    Socket socket = new Socket(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+    socket.setTcpNoDelay(true);
+    try {
+      AgentConnection connection = new AgentConnection(socket);
+      LOGGER.info("Joined the coordinator at " + address + " as agent " + (connection.index + 1)
+        + " of " + connection.count);
+      return connection;
+    } catch (IOException ex) {
+      socket.close();
+      throw ex;
+    }
+  }
+
+  /**
+   * @return the position of this agent among all agents.
+   */
+  int getIndex() {
+    return index;
+  }
+
+  int getCount() {
+    return count;
+  }
+
+  /**
+   * @return the command line to run with.
+   */
+  String[] getArgs() {
+    return args;
+  }
+
+  /**
+   * Report ready for the phase and block until all agents are.
+   *
+   * @param phase the index of the phase.
+   */
+  void awaitStart(int phase) throws IOException {
+    synchronized (out) {
+      out.writeByte(AgentProtocol.READY);
+      out.writeInt(phase);
+      out.flush();
+    }
+    AgentProtocol.expect(AgentProtocol.START, in.readByte());
+    int started = in.readInt();
+    if (started != phase) {
+      throw new IOException("Coordinator started phase " + started + " instead of " + phase);
+    }
+  }
+
+  /**
+   * Send the interval measures of the run every interval in the background.
+   *
+   * @param results the measures to send.
+   * @param intervalSeconds the seconds between two intervals.
+   */
+  void startStreaming(RunResults results, long intervalSeconds) {
+    streamer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "AgentStreamer");
+      thread.setDaemon(true);
+      return thread;
+    });
+    streamer.scheduleAtFixedRate(() -> {
+      // keep streaming, the executor drops a task at its first exception
+      try {
+        sendInterval(results);
+      } catch (IOException | RuntimeException ex) {
+        LOGGER.warn("Could not send the interval measures to the coordinator", ex);
+      }
+    }, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Stop streaming and send the final (partial) interval.
+   */
+  void stopStreaming(RunResults results) throws IOException, InterruptedException {
+    if (streamer == null) {
+      return;
+    }
+    streamer.shutdown();
+    streamer.awaitTermination(1, TimeUnit.MINUTES);
+    sendInterval(results);
+  }
+
+  /**
+   * Send the measures of the last interval. All values are collected
+   * before the frame is written, so a failing getter cannot leave half a
+   * frame on the stream.
+   */
+  void sendInterval(RunResults results) throws IOException {
+    long totalOps = results.getTotalOps();
+    long inFlightOps = results.getInFlightOps();
+    Map<String, long[]> outcomes = results.getOutcomes();
+    Map<String, Histogram> intervals = results.getIntervalMeasures();
+    synchronized (out) {
+      out.writeByte(AgentProtocol.INTERVAL);
+      out.writeLong(totalOps);
+      out.writeLong(inFlightOps);
+      AgentProtocol.writeOutcomes(out, outcomes);
+      AgentProtocol.writeHistograms(out, intervals);
+      out.flush();
+    }
+  }
+
+  /**
+   * Send the final measures of the run, collected before the frame is
+   * written like the intervals.
+   */
+  void sendResult(RunResults results) throws IOException {
+    long totalOps = results.getTotalOps();
+    Map<String, long[]> outcomes = results.getOutcomes();
+    long measuredOps = results.getMeasuredOps();
+    long warmupOps = results.getWarmupOps();
+    long warmupMillis = results.getWarmupMillis();
+    Map<String, Histogram> measures = results.getMeasures();
+    Map<String, Histogram> warmupMeasures = results.getWarmupMeasures();
+    Map<String, Long> queryRows = results.getQueryRows();
+    List<Long> threadElapsed = results.getThreadElapsedMillis();
+    synchronized (out) {
+      out.writeByte(AgentProtocol.RESULT);
+      out.writeLong(totalOps);
+      AgentProtocol.writeOutcomes(out, outcomes);
+      out.writeLong(measuredOps);
+      out.writeLong(warmupOps);
+      out.writeLong(warmupMillis);
+      AgentProtocol.writeHistograms(out, measures);
+      AgentProtocol.writeHistograms(out, warmupMeasures);
+      AgentProtocol.writeCounts(out, queryRows);
+      AgentProtocol.writeLongs(out, threadElapsed);
+      out.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    socket.close();
+  }
+}
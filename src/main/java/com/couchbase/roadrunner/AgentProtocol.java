@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The messages between the coordinator and the agents of a distributed run.
+ *
+ * Every message is a type byte followed by its fields in
+ * {@link DataOutputStream} encoding:
+ * <pre>
+ * HELLO    agent -> coordinator   host name
+ * ASSIGN   coordinator -> agent   agent index, agent count, command line
+ * READY    agent -> coordinator   phase index
+ * START    coordinator -> agent   phase index
+ * INTERVAL agent -> coordinator   total ops, ops in flight, outcomes, interval histograms
+ * RESULT   agent -> coordinator   total ops, outcomes, measured ops, warmup ops, warmup time,
+ *                                 histograms, warmup histograms, query rows, worker run times
+ * </pre>
+ * Histograms travel in the compressed HdrHistogram encoding.
+ */
+final class AgentProtocol {
+
+  static final byte HELLO = 1;
+  static final byte ASSIGN = 2;
+  static final byte READY = 3;
+  static final byte START = 4;
+  static final byte INTERVAL = 5;
+  static final byte RESULT = 6;
+
+  private AgentProtocol() {
+  }
+
+  static void writeHistograms(DataOutputStream out, Map<String, Histogram> histograms) throws IOException {
+    out.writeInt(histograms.size());
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      Histogram histogram = entry.getValue();
+      ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+      int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+      out.writeUTF(entry.getKey());
+      out.writeInt(length);
+      out.write(buffer.array(), 0, length);
+    }
+  }
+
+  static Map<String, Histogram> readHistograms(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, Histogram> histograms = new HashMap<String, Histogram>();
+    for (int i = 0; i < size; i++) {
+      String name = in.readUTF();
+      byte[] encoded = new byte[in.readInt()];
+      in.readFully(encoded);
+      try {
+        histograms.put(name, Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(encoded),
+          Workload.HIGHEST_TRACKABLE_LATENCY));
+      } catch (DataFormatException ex) {
+        throw new IOException("Corrupt histogram \"" + name + "\"", ex);
+      }
+    }
+    return histograms;
+  }
+
+  static void writeCounts(DataOutputStream out, Map<String, Long> counts) throws IOException {
+    out.writeInt(counts.size());
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      out.writeUTF(entry.getKey());
+      out.writeLong(entry.getValue());
+    }
+  }
+
+  static Map<String, Long> readCounts(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, Long> counts = new HashMap<String, Long>();
+    for (int i = 0; i < size; i++) {
+      counts.put(in.readUTF(), in.readLong());
+    }
+    return counts;
+  }
+
+  static void writeOutcomes(DataOutputStream out, Map<String, long[]> outcomes) throws IOException {
+    out.writeInt(outcomes.size());
+    for (Map.Entry<String, long[]> entry : outcomes.entrySet()) {
+      out.writeUTF(entry.getKey());
+      for (long count : entry.getValue()) {
+        out.writeLong(count);
+      }
+    }
+  }
+
+  static Map<String, long[]> readOutcomes(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    Map<String, long[]> outcomes = new HashMap<String, long[]>();
+    for (int i = 0; i < size; i++) {
+      String name = in.readUTF();
+      long[] counts = new long[Outcome.values().length];
+      for (int j = 0; j < counts.length; j++) {
+        counts[j] = in.readLong();
+      }
+      outcomes.put(name, counts);
+    }
+    return outcomes;
+  }
+
+  static void writeLongs(DataOutputStream out, List<Long> values) throws IOException {
+    out.writeInt(values.size());
+    for (long value : values) {
+      out.writeLong(value);
+    }
+  }
+
+  static List<Long> readLongs(DataInputStream in) throws IOException {
+    int size = in.readInt();
+    List<Long> values = new ArrayList<Long>(size);
+    for (int i = 0; i < size; i++) {
+      values.add(in.readLong());
+    }
+    return values;
+  }
+
+  static void expect(byte expected, byte actual) throws IOException {
+    if (expected != actual) {
+      throw new IOException("Expected message " + expected + " but got " + actual);
+    }
+  }
+}
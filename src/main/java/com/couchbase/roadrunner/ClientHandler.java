@@ -24,15 +24,30 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.couchbase.client.core.env.WaitStrategyFactory;
+import com.couchbase.client.deps.com.lmax.disruptor.BlockingWaitStrategy;
+import com.couchbase.client.deps.com.lmax.disruptor.BusySpinWaitStrategy;
+import com.couchbase.client.deps.com.lmax.disruptor.LiteBlockingWaitStrategy;
+import com.couchbase.client.deps.com.lmax.disruptor.SleepingWaitStrategy;
+import com.couchbase.client.deps.com.lmax.disruptor.YieldingWaitStrategy;
 import com.couchbase.client.java.Bucket;
 import com.couchbase.client.java.Cluster;
 import com.couchbase.client.java.CouchbaseCluster;
 import com.couchbase.client.java.env.CouchbaseEnvironment;
 import com.couchbase.client.java.env.DefaultCouchbaseEnvironment;
+import com.couchbase.roadrunner.customConverter.ByteBufJsonTranscoder;
 import com.couchbase.roadrunner.customConverter.ByteJsonTranscoder;
 import com.couchbase.roadrunner.workloads.DocumentGenerator;
+import com.couchbase.roadrunner.workloads.OperationSchedule;
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
+import com.couchbase.roadrunner.workloads.QueryWorkload;
+import com.couchbase.roadrunner.workloads.RunWindow;
 import com.couchbase.roadrunner.workloads.Workload;
 import com.google.common.base.Stopwatch;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * The ClientHandler is responsible for managing its own thread pool and
@@ -40,48 +55,210 @@ import com.google.common.base.Stopwatch;
  */
 class ClientHandler {
 
+	private static final Logger LOGGER =
+			LoggerFactory.getLogger(ClientHandler.class.getName());
+
 	static {
 		System.setProperty("com.couchbase.sentRequestQueueLimit", String.valueOf(Integer.MAX_VALUE));
 	}
 
 	private final GlobalConfig config;
 
-	private final ThreadPoolExecutor executor;
+	/** Runs the workers of the current phase, null when it runs on the reactive or virtual engine. */
+	private ThreadPoolExecutor executor;
 
 	private final Bucket client;
 
+	private final Cluster cluster;
+
+	/** The environment of this handler, null if it uses a shared one. */
+	private final CouchbaseEnvironment ownEnvironment;
+
 	private final String id;
 
 	private final long numDocs;
 
 	private final int clientOffset;
 
-	private Map<String, List<Stopwatch>> mergedMeasures;
+	private Map<String, Histogram> mergedMeasures;
+
+	private Map<String, Histogram> warmupMeasures;
 
 	private DocumentGenerator documentGenerator;
 
-	private List<Workload> workers;
+	/**
+	 * The workers of the current phase and the totals of the completed
+	 * ones, read by the reporting threads while the phases run.
+	 */
+	private volatile Progress progress;
+
+	private final List<Stopwatch> completedElapsed;
+
+	private final Map<String, Long> queryRows;
 
 	/**
 	 * Initialize the ClientHandler object.
 	 *
 	 * @param config the global configuration object.
+	 * @param sharedEnvironment the environment shared by all handlers, or null to create an own one.
 	 */
 	public ClientHandler(GlobalConfig config, String id, long numDocs, int offset,
-						 DocumentGenerator documentGenerator) throws Exception {
+						 DocumentGenerator documentGenerator, CouchbaseEnvironment sharedEnvironment) throws Exception {
 		this.config = config;
 		this.id = id;
 		this.numDocs = numDocs;
 		this.clientOffset = offset;
 		this.documentGenerator = documentGenerator;
 
-		CouchbaseEnvironment env = DefaultCouchbaseEnvironment.builder()
-			.kvEndpoints(4)
-			.callbacksOnIoPool(true)
-			.build();
-		Cluster cluster = CouchbaseCluster.create(env, config.getNodes());
-		this.client = cluster.openBucket(config.getBucket(), config.getPassword(), Collections.singletonList(new ByteJsonTranscoder()));
+		CouchbaseEnvironment env = sharedEnvironment;
+		if (env == null) {
+			env = createEnvironment(config);
+			this.ownEnvironment = env;
+		} else {
+			this.ownEnvironment = null;
+		}
+		this.cluster = CouchbaseCluster.create(env, config.getNodes());
+		this.client = cluster.openBucket(config.getBucket(), config.getPassword(),
+				Arrays.asList(new ByteJsonTranscoder(), new ByteBufJsonTranscoder()));
+
+		this.progress = new Progress(null, Collections.<Workload>emptyList(), null,
+				0, 0, 0, Collections.<String, long[]>emptyMap());
+		this.mergedMeasures = new HashMap<>();
+		this.warmupMeasures = new HashMap<>();
+		this.completedElapsed = new ArrayList<>();
+		this.queryRows = new HashMap<>();
+	}
+
+	/**
+	 * The workers of a phase with the totals of the phases before it. A
+	 * new snapshot replaces the current one as a whole, so a reader never
+	 * counts a worker both in the totals and in the running workers.
+	 */
+	private static final class Progress {
+
+		/** The phase the workers run, null before the first one. */
+		final WorkloadPhase phase;
+
+		final List<Workload> workers;
+
+		/** Runs the N1QL statements next to the KV workers, null if there are none. */
+		final QueryWorkload queryWorker;
+
+		/** Totals of the workers of the completed phases. */
+		final long completedOps;
+
+		final long completedMeasuredOps;
+
+		final long completedWarmupOps;
+
+		final Map<String, long[]> completedOutcomes;
+
+		Progress(WorkloadPhase phase, List<Workload> workers, QueryWorkload queryWorker, long completedOps,
+				 long completedMeasuredOps, long completedWarmupOps, Map<String, long[]> completedOutcomes) {
+			this.phase = phase;
+			this.workers = Collections.unmodifiableList(workers);
+			this.queryWorker = queryWorker;
+			this.completedOps = completedOps;
+			this.completedMeasuredOps = completedMeasuredOps;
+			this.completedWarmupOps = completedWarmupOps;
+			this.completedOutcomes = Collections.unmodifiableMap(completedOutcomes);
+		}
+
+		/**
+		 * @return the same totals with other workers.
+		 */
+		Progress withWorkers(WorkloadPhase phase, List<Workload> workers, QueryWorkload queryWorker) {
+			return new Progress(phase, workers, queryWorker, completedOps, completedMeasuredOps,
+					completedWarmupOps, completedOutcomes);
+		}
+	}
+
+	/**
+	 * Build a client environment tuned through the command line.
+	 *
+	 * @param config the global configuration object.
+	 * @return the environment.
+	 */
+	static CouchbaseEnvironment createEnvironment(GlobalConfig config) {
+		DefaultCouchbaseEnvironment.Builder builder = DefaultCouchbaseEnvironment.builder()
+			.kvEndpoints(config.getKvEndpoints())
+			.bootstrapCarrierDirectPort(config.getKvPort())
+			.bootstrapHttpDirectPort(config.getHttpPort())
+			.callbacksOnIoPool(true);
+		if (config.getIoPoolSize() > 0) {
+			builder.ioPoolSize(config.getIoPoolSize());
+		}
+		if (config.getComputationPoolSize() > 0) {
+			builder.computationPoolSize(config.getComputationPoolSize());
+		}
+		if (config.getRequestBufferSize() > 0) {
+			builder.requestBufferSize(config.getRequestBufferSize());
+		}
+		if (!config.getWaitStrategy().isEmpty()) {
+			builder.requestBufferWaitStrategy(waitStrategy(config.getWaitStrategy()));
+		}
+		return builder.build();
+	}
+
+	private static WaitStrategyFactory waitStrategy(String name) {
+		switch (name) {
+			case "blocking":
+				return BlockingWaitStrategy::new;
+			case "lite-blocking":
+				return LiteBlockingWaitStrategy::new;
+			case "sleeping":
+				return SleepingWaitStrategy::new;
+			case "yielding":
+				return YieldingWaitStrategy::new;
+			case "busy-spin":
+				return BusySpinWaitStrategy::new;
+			default:
+				throw new IllegalArgumentException("Unknown wait strategy: " + name);
+		}
+	}
 
+	/**
+	 * Execute the workload of a phase against the workers.
+	 *
+	 * @param phase the phase to run.
+	 * @param schedule the shared open-loop schedule, or null to run closed-loop.
+	 * @param window the shared warmup and deadline window.
+	 * @throws Exception
+	 */
+	public void executeWorkload(WorkloadPhase phase, OperationSchedule schedule, RunWindow window) throws Exception {
+		GlobalConfig config = phase.getConfig();
+		DocumentGenerator documentGenerator = phase.getDocumentGenerator();
+		List<Workload> workers = new ArrayList<>();
+		QueryWorkload queryWorker = null;
+		if (phase.getQueryTemplates() != null) {
+			int concurrency = Math.max(1,
+					config.getQueryConcurrency() / (config.getNumClients() * config.getAgentCount()));
+			queryWorker = new QueryWorkload(this.id + "/Query", this.client, config, documentGenerator,
+					(int) numDocs, this.clientOffset, window, phase.getQueryTemplates(), concurrency,
+					phase.getKeyChooser(), phase.getKeyBase());
+			workers.add(queryWorker);
+		}
+		if (config.isReactive()) {
+			this.executor = null;
+			Workload pipeline = new Workload(this.id + "/Reactive", this.client, config, documentGenerator,
+					(int) numDocs, this.clientOffset, null, window, phase.getKeyChooser(), phase.getKeyBase());
+			workers.add(pipeline);
+			start(phase, workers, queryWorker);
+			pipeline.reactive().subscribe(
+					ignored -> {},
+					err -> LOGGER.error("Reactive workload " + pipeline.getWorkloadName() + " failed", err)
+			);
+			return;
+		}
+		if (config.isVirtual()) {
+			this.executor = null;
+			Workload users = new Workload(this.id + "/Users", this.client, config, documentGenerator,
+					(int) numDocs, this.clientOffset, null, window, phase.getKeyChooser(), phase.getKeyBase());
+			workers.add(users);
+			start(phase, workers, queryWorker);
+			new Thread(users).start();
+			return;
+		}
 		this.executor = new ThreadPoolExecutor(
 				config.getNumThreads(),
 				config.getNumThreads(),
@@ -90,91 +267,239 @@ class ClientHandler {
 				new ArrayBlockingQueue<Runnable>(config.getNumThreads(), true),
 				new ThreadPoolExecutor.CallerRunsPolicy()
 		);
+		int workerThreads = config.getNumThreads()/ config.getNumClients();
+		int docsPerThread = (int) Math.floor(numDocs / workerThreads);
+		int workerOffset = this.clientOffset;
+		List<Workload> workloadWorkers = new ArrayList<>();
+		for (int i = 0; i < workerThreads; i++) {
+			workloadWorkers.add(new Workload(this.id + "/Workload-" + (i + 1), this.client, config, documentGenerator, docsPerThread, workerOffset, schedule, window, phase.getKeyChooser(), phase.getKeyBase()));
+			workerOffset += docsPerThread;
+		}
+		workers.addAll(workloadWorkers);
+		start(phase, workers, queryWorker);
+		for (Workload workloadWorker : workloadWorkers) {
+			executor.execute(workloadWorker);
+		}
+	}
 
-		this.workers = new ArrayList<>();
-		this.mergedMeasures = new HashMap<>();
+	/**
+	 * Publish the workers of a phase before they run and start the query
+	 * worker, if any.
+	 */
+	private void start(WorkloadPhase phase, List<Workload> workers, QueryWorkload queryWorker) {
+		progress = progress.withWorkers(phase, workers, queryWorker);
+		if (queryWorker != null) {
+			new Thread(queryWorker).start();
+		}
 	}
 
 	/**
-	 * Execute the given workload against the workers.
+	 * Wait for the workers of the current phase and store their measures.
 	 *
 	 * @throws Exception
 	 */
-	public void executeWorkload(DocumentGenerator documentGenerator) throws Exception {
-		int workerThreads = config.getNumThreads()/ config.getNumClients();
-		int docsPerThread = (int) Math.floor(numDocs / workerThreads);
-		int workerOffset = this.clientOffset;
-		for (int i = 0; i < workerThreads; i++) {
-			Workload workloadWorker = new Workload(this.id + "/Workload-" + (i + 1), this.client, config, documentGenerator, docsPerThread, workerOffset);
-			workers.add(workloadWorker);
-			executor.execute(workloadWorker);
-			workerOffset = this.clientOffset + docsPerThread;
+	public void completeWorkload() throws Exception {
+		Progress current = progress;
+		if (current.queryWorker != null) {
+			current.queryWorker.stop();
+		}
+		if (executor != null) {
+			while (true) {
+				if (executor.getActiveCount() == 0) {
+					executor.shutdown();
+					break;
+				}
+			}
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		}
+		for (Workload workloadWorker : current.workers) {
+			while (!workloadWorker.isFinished()) {
+				Thread.sleep(10);
+			}
 		}
+		storeMeasures(current);
 	}
 
 	/**
-	 * Cleanup after workload execution and store the measures.
+	 * Close the connection after the last phase.
 	 *
 	 * @throws Exception
 	 */
 	public void cleanup() throws Exception {
-		while (true) {
-			if (executor.getActiveCount() == 0) {
-				executor.shutdown();
-				break;
-			}
-		}
-		executor.awaitTermination(1, TimeUnit.MINUTES);
-		storeMeasures();
 		//close bucket and wait for it to close
 		this.client.close();
+		this.cluster.disconnect();
+		if (ownEnvironment != null) {
+			ownEnvironment.shutdown();
+		}
 	}
 
 	/**
-	 * Aggregate and store the calculated measurements.
+	 * Aggregate and store the calculated measurements, then fold the
+	 * totals of the finished workers into the next snapshot.
 	 */
-	private void storeMeasures() {
-		for (Workload workloadWorker : workers) {
-			Map<String, List<Stopwatch>> measures = workloadWorker.getMeasures();
-			for (Map.Entry<String, List<Stopwatch>> entry : measures.entrySet()) {
-				if (mergedMeasures.containsKey(entry.getKey())) {
-					mergedMeasures.get(entry.getKey()).addAll(entry.getValue());
-				} else {
-					mergedMeasures.put(entry.getKey(), entry.getValue());
-				}
+	private void storeMeasures(Progress current) {
+		WorkloadPhase phase = current.phase;
+		long completedOps = current.completedOps;
+		long completedMeasuredOps = current.completedMeasuredOps;
+		long completedWarmupOps = current.completedWarmupOps;
+		Map<String, long[]> completedOutcomes = new HashMap<>();
+		OutcomeCounters.merge(completedOutcomes, current.completedOutcomes);
+		for (Workload workloadWorker : current.workers) {
+			Workload.mergeMeasures(mergedMeasures, phaseMeasures(phase, workloadWorker.getMeasures()));
+			Workload.mergeMeasures(warmupMeasures, phaseMeasures(phase, workloadWorker.getWarmupMeasures()));
+			completedOps += workloadWorker.getTotalOps();
+			completedMeasuredOps += workloadWorker.getMeasuredOps();
+			completedWarmupOps += workloadWorker.getWarmupOps();
+			OutcomeCounters.merge(completedOutcomes, phaseOutcomes(phase, workloadWorker.getOutcomes()));
+			completedElapsed.add(workloadWorker.totalElapsed());
+		}
+		if (current.queryWorker != null) {
+			for (Map.Entry<String, Long> entry : current.queryWorker.getRows().entrySet()) {
+				queryRows.merge(phase.measureName(entry.getKey()), entry.getValue(), Long::sum);
 			}
 		}
+		progress = new Progress(phase, Collections.<Workload>emptyList(), null, completedOps,
+				completedMeasuredOps, completedWarmupOps, completedOutcomes);
+	}
+
+	/**
+	 * Name the measures after the given phase.
+	 */
+	private static Map<String, Histogram> phaseMeasures(WorkloadPhase phase, Map<String, Histogram> measures) {
+		if (phase.getName() == null) {
+			return measures;
+		}
+		Map<String, Histogram> named = new HashMap<>();
+		for (Map.Entry<String, Histogram> entry : measures.entrySet()) {
+			named.put(phase.measureName(entry.getKey()), entry.getValue());
+		}
+		return named;
+	}
+
+	private static Map<String, long[]> phaseOutcomes(WorkloadPhase phase, Map<String, long[]> outcomes) {
+		if (phase.getName() == null) {
+			return outcomes;
+		}
+		Map<String, long[]> named = new HashMap<>();
+		for (Map.Entry<String, long[]> entry : outcomes.entrySet()) {
+			named.put(phase.measureName(entry.getKey()), entry.getValue());
+		}
+		return named;
+	}
+
+	/**
+	 * Merge what the workers recorded since the last call into the given map.
+	 *
+	 * @param intervals the map to merge the interval histograms into.
+	 */
+	public void mergeIntervalMeasures(Map<String, Histogram> intervals) {
+		Progress current = progress;
+		for (Workload workloadWorker : current.workers) {
+			Workload.mergeMeasures(intervals, phaseMeasures(current.phase, workloadWorker.getIntervalMeasures()));
+		}
 	}
 
 	/**
 	 * Returns the aggregated measures.
 	 * @return the measures.
 	 */
-	public Map<String, List<Stopwatch>> getMeasures() {
+	public Map<String, Histogram> getMeasures() {
 		return mergedMeasures;
 	}
 
+	/**
+	 * Returns the aggregated measures of the ops started during warmup.
+	 * @return the warmup measures.
+	 */
+	public Map<String, Histogram> getWarmupMeasures() {
+		return warmupMeasures;
+	}
+
+	/**
+	 * The query worker of a phase bounded by op count runs until the KV
+	 * workers are done, in a time-bounded phase it runs to the deadline.
+	 *
+	 * @return true once all workers of the current phase are done.
+	 */
+	public boolean isFinished() {
+		Progress current = progress;
+		for (Workload workloadWorker : current.workers) {
+			if (workloadWorker == current.queryWorker && current.phase.getConfig().getDuration() <= 0) {
+				continue;
+			}
+			if (!workloadWorker.isFinished()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	public long getTotalOps() {
-		long totalOps = 0;
-		for (Workload workloadWorker : workers) {
+		Progress current = progress;
+		long totalOps = current.completedOps;
+		for (Workload workloadWorker : current.workers) {
 			totalOps += workloadWorker.getTotalOps();
 		}
 		return totalOps;
 	}
 
 	public long getMeasuredOps() {
-		long measuredOps = 0;
-		for (Workload workloadWorker : workers) {
+		Progress current = progress;
+		long measuredOps = current.completedMeasuredOps;
+		for (Workload workloadWorker : current.workers) {
 			measuredOps += workloadWorker.getMeasuredOps();
 		}
 		return measuredOps;
 	}
 
-	public List<Stopwatch> getThreadElapsed() {
-		List<Stopwatch> elapsed = new ArrayList<Stopwatch>();
-		for (Workload workloadWorker : workers) {
-			elapsed.add(workloadWorker.totalElapsed());
+	/**
+	 * @return the ops completed during the warmup of a phase.
+	 */
+	public long getWarmupOps() {
+		Progress current = progress;
+		long warmupOps = current.completedWarmupOps;
+		for (Workload workloadWorker : current.workers) {
+			warmupOps += workloadWorker.getWarmupOps();
 		}
-		return elapsed;
+		return warmupOps;
+	}
+
+	/**
+	 * @return the ops of the current phase issued and not completed yet.
+	 */
+	public long getInFlightOps() {
+		long inFlightOps = 0;
+		for (Workload workloadWorker : progress.workers) {
+			inFlightOps += workloadWorker.getInFlightOps();
+		}
+		return inFlightOps;
+	}
+
+	/**
+	 * @return the outcomes so far per operation type, indexed by {@link Outcome#ordinal()}.
+	 */
+	public Map<String, long[]> getOutcomes() {
+		Progress current = progress;
+		Map<String, long[]> outcomes = new HashMap<>();
+		OutcomeCounters.merge(outcomes, current.completedOutcomes);
+		for (Workload workloadWorker : current.workers) {
+			OutcomeCounters.merge(outcomes, phaseOutcomes(current.phase, workloadWorker.getOutcomes()));
+		}
+		return outcomes;
+	}
+
+	/**
+	 * @return the rows returned by the query workers of the completed phases, per statement.
+	 */
+	public Map<String, Long> getQueryRows() {
+		return queryRows;
+	}
+
+	/**
+	 * @return the run time of the workers of the completed phases.
+	 */
+	public List<Stopwatch> getThreadElapsed() {
+		return completedElapsed;
 	}
 }
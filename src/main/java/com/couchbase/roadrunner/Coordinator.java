@@ -0,0 +1,381 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The coordinator of a distributed run. It waits for the agents to connect,
+ * hands each of them the command line and its share of the key space,
+ * releases every phase once all agents are ready for it and merges the
+ * measures they stream back into the results of the whole run.
+ *
+ * The coordinator does not connect to the cluster itself.
+ */
+final class Coordinator implements RunResults {
+
+  private static final Logger LOGGER =
+    LoggerFactory.getLogger(Coordinator.class.getName());
+
+  /** Options only the coordinator uses, not passed on to the agents. */
+  private static final String[] COORDINATOR_OPTIONS = {RoadRunner.OPT_COORDINATOR, RoadRunner.OPT_AGENTS,
+      RoadRunner.OPT_RESULTS_JSON, RoadRunner.OPT_RESULTS_CSV, RoadRunner.OPT_METRICS_PORT};
+
+  private final GlobalConfig config;
+
+  private final String[] agentArgs;
+
+  private final ServerSocket server;
+
+  private final List<Agent> agents;
+
+  /** Agents ready per phase. */
+  private final Map<Integer, Integer> ready;
+
+  private final CountDownLatch results;
+
+  private final Map<String, Histogram> intervalMeasures;
+
+  private final Map<String, Histogram> mergedMeasures;
+
+  private final Map<String, Histogram> warmupMeasures;
+
+  private final Map<String, Long> queryRows;
+
+  private final List<Long> threadElapsed;
+
+  private long measuredOps;
+
+  private long warmupOps;
+
+  private long warmupMillis;
+
+  private IntervalReporter reporter;
+
+  private volatile IOException failure;
+
+  /**
+   * Create the coordinator and start listening for agents.
+   *
+   * @param config the global configuration object.
+   * @param args the command line, passed on to the agents.
+   */
+  Coordinator(GlobalConfig config, String[] args) throws IOException {
+    this.config = config;
+    this.agentArgs = agentArgs(args);
+    this.server = new ServerSocket(config.getCoordinatorPort());
+    this.agents = new ArrayList<Agent>();
+    this.ready = new HashMap<Integer, Integer>();
+    this.results = new CountDownLatch(config.getAgents());
+    this.intervalMeasures = new HashMap<String, Histogram>();
+    this.mergedMeasures = new HashMap<String, Histogram>();
+    this.warmupMeasures = new HashMap<String, Histogram>();
+    this.queryRows = new HashMap<String, Long>();
+    this.threadElapsed = new ArrayList<Long>();
+  }
+
+  /**
+   * Drop the coordinator options from the command line.
+   */
+  private static String[] agentArgs(String[] args) {
+    List<String> filtered = new ArrayList<String>();
+    for (int i = 0; i < args.length; i++) {
+      boolean coordinatorOption = false;
+      for (String option : COORDINATOR_OPTIONS) {
+        if (args[i].equals("--" + option)) {
+          coordinatorOption = true;
+          i++;
+        } else if (args[i].startsWith("--" + option + "=")) {
+          coordinatorOption = true;
+        }
+      }
+      if (!coordinatorOption) {
+        filtered.add(args[i]);
+      }
+    }
+    return filtered.toArray(new String[filtered.size()]);
+  }
+
+  /**
+   * @return the port the coordinator listens on.
+   */
+  int getPort() {
+    return server.getLocalPort();
+  }
+
+  /**
+   * Wait for all agents, run them and collect their results.
+   */
+  void run() throws Exception {
+    try {
+      LOGGER.info("Waiting for " + config.getAgents() + " agents on port " + getPort());
+      for (int i = 0; i < config.getAgents(); i++) {
+        Socket socket = server.accept();
+        socket.setTcpNoDelay(true);
+        agents.add(new Agent(socket, i));
+      }
+      for (Agent agent : agents) {
+        agent.start();
+      }
+
+      if (config.getReportInterval() > 0) {
+        reporter = new IntervalReporter(config, this);
+        reporter.start();
+      }
+      results.await();
+      if (reporter != null) {
+        reporter.stop();
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    } finally {
+      for (Agent agent : agents) {
+        agent.socket.close();
+      }
+      server.close();
+    }
+  }
+
+  /**
+   * Count the agent in for the phase and start it once all agents are.
+   */
+  private synchronized void ready(int phase) throws IOException {
+    Integer count = ready.get(phase);
+    count = count == null ? 1 : count + 1;
+    ready.put(phase, count);
+    if (count == agents.size()) {
+      LOGGER.info("All agents ready, starting phase " + (phase + 1));
+      for (Agent agent : agents) {
+        agent.send(AgentProtocol.START, phase);
+      }
+    }
+  }
+
+  /**
+   * Give up on the run: the other agents would wait for the lost one at
+   * the next phase, so they are disconnected as well.
+   */
+  private synchronized void fail(IOException ex) {
+    if (failure == null) {
+      failure = ex;
+      LOGGER.error(ex.getMessage());
+      for (Agent agent : agents) {
+        try {
+          agent.socket.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+    results.countDown();
+  }
+
+  private synchronized void interval(Map<String, Histogram> histograms) {
+    Workload.mergeMeasures(intervalMeasures, histograms);
+  }
+
+  private synchronized void result(DataInputStream in) throws IOException {
+    measuredOps += in.readLong();
+    warmupOps += in.readLong();
+    warmupMillis = Math.max(warmupMillis, in.readLong());
+    Workload.mergeMeasures(mergedMeasures, AgentProtocol.readHistograms(in));
+    Workload.mergeMeasures(warmupMeasures, AgentProtocol.readHistograms(in));
+    for (Map.Entry<String, Long> entry : AgentProtocol.readCounts(in).entrySet()) {
+      Long merged = queryRows.get(entry.getKey());
+      queryRows.put(entry.getKey(), merged == null ? entry.getValue() : merged + entry.getValue());
+    }
+    threadElapsed.addAll(AgentProtocol.readLongs(in));
+  }
+
+  @Override
+  public long getTotalOps() {
+    long totalOps = 0;
+    for (Agent agent : agents) {
+      totalOps += agent.totalOps;
+    }
+    return totalOps;
+  }
+
+  @Override
+  public synchronized long getWarmupOps() {
+    return warmupOps;
+  }
+
+  @Override
+  public synchronized long getWarmupMillis() {
+    return warmupMillis;
+  }
+
+  @Override
+  public long getInFlightOps() {
+    long inFlightOps = 0;
+    for (Agent agent : agents) {
+      inFlightOps += agent.inFlightOps;
+    }
+    return inFlightOps;
+  }
+
+  @Override
+  public synchronized long getMeasuredOps() {
+    return measuredOps;
+  }
+
+  @Override
+  public Map<String, long[]> getOutcomes() {
+    Map<String, long[]> outcomes = new HashMap<String, long[]>();
+    for (Agent agent : agents) {
+      OutcomeCounters.merge(outcomes, agent.outcomes);
+    }
+    return outcomes;
+  }
+
+  @Override
+  public synchronized Map<String, Histogram> getIntervalMeasures() {
+    Map<String, Histogram> intervals = new HashMap<String, Histogram>(intervalMeasures);
+    intervalMeasures.clear();
+    return intervals;
+  }
+
+  @Override
+  public synchronized Map<String, Histogram> getMeasures() {
+    return mergedMeasures;
+  }
+
+  @Override
+  public synchronized Map<String, Histogram> getWarmupMeasures() {
+    return warmupMeasures;
+  }
+
+  @Override
+  public synchronized Map<String, Long> getQueryRows() {
+    return queryRows;
+  }
+
+  @Override
+  public List<IntervalReporter.Interval> getThroughput() {
+    if (reporter == null) {
+      return new ArrayList<IntervalReporter.Interval>();
+    }
+    return reporter.getIntervals();
+  }
+
+  @Override
+  public synchronized List<Long> getThreadElapsedMillis() {
+    return threadElapsed;
+  }
+
+  /**
+   * The connection to one agent, read by its own thread.
+   */
+  private final class Agent extends Thread {
+
+    private final Socket socket;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private volatile long totalOps;
+
+    private volatile long inFlightOps;
+
+    private volatile Map<String, long[]> outcomes = new HashMap<String, long[]>();
+
+    Agent(Socket socket, int index) throws IOException {
+      super("Agent-" + (index + 1));
+      setDaemon(true);
+      this.socket = socket;
+      this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+      AgentProtocol.expect(AgentProtocol.HELLO, in.readByte());
+      LOGGER.info("Agent " + (index + 1) + " joined from " + in.readUTF());
+      out.writeByte(AgentProtocol.ASSIGN);
+      out.writeInt(index);
+      out.writeInt(config.getAgents());
+      out.writeInt(agentArgs.length + 4);
+      // the first occurrence of an option wins, so the share goes first
+      out.writeUTF("--" + RoadRunner.OPT_AGENT_INDEX);
+      out.writeUTF(String.valueOf(index));
+      out.writeUTF("--" + RoadRunner.OPT_AGENT_COUNT);
+      out.writeUTF(String.valueOf(config.getAgents()));
+      for (String arg : agentArgs) {
+        out.writeUTF(arg);
+      }
+      out.flush();
+    }
+
+    void send(byte type, int value) throws IOException {
+      synchronized (out) {
+        out.writeByte(type);
+        out.writeInt(value);
+        out.flush();
+      }
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          byte type = in.readByte();
+          if (type == AgentProtocol.READY) {
+            ready(in.readInt());
+          } else if (type == AgentProtocol.INTERVAL) {
+            totalOps = in.readLong();
+            inFlightOps = in.readLong();
+            outcomes = AgentProtocol.readOutcomes(in);
+            interval(AgentProtocol.readHistograms(in));
+          } else if (type == AgentProtocol.RESULT) {
+            totalOps = in.readLong();
+            outcomes = AgentProtocol.readOutcomes(in);
+            inFlightOps = 0;
+            result(in);
+            results.countDown();
+            return;
+          } else {
+            throw new IOException("Unexpected message " + type + " from " + getName());
+          }
+        }
+      } catch (EOFException ex) {
+        fail(new IOException(getName() + " disconnected before sending its results"));
+      } catch (IOException ex) {
+        fail(new IOException("Lost " + getName(), ex));
+      }
+    }
+  }
+}
@@ -49,6 +49,47 @@ public class GlobalConfig {
   private String phase;
   private int minThinkTime;
   private int maxThinkTime;
+  private int reportInterval;
+  private String histogramLog;
+  private long targetOps;
+  private boolean coCorrection;
+  private int duration;
+  private String keyDistribution;
+  private String keyFormat;
+  private int payloadPool;
+  private String schema;
+  private boolean zeroCopy;
+  private int maxInFlight;
+  private String engine;
+  private boolean sharedEnvironment;
+  private int ioPoolSize;
+  private int computationPoolSize;
+  private int kvEndpoints;
+  private int requestBufferSize;
+  private String waitStrategy;
+  private String opMix;
+  private long opTimeout;
+  private int subdocRatio;
+  private String subdocMix;
+  private String subdocPaths;
+  private String queryFile;
+  private int queryConcurrency;
+  private boolean queryAdhoc;
+  private String scanConsistency;
+  private String workloadFile;
+  private long numOps;
+  private int coordinatorPort;
+  private int agents;
+  private int agentIndex;
+  private int agentCount;
+  private String resultsJson;
+  private String resultsCsv;
+  private String backpressure;
+  private int kvPort;
+  private int httpPort;
+  private boolean mock;
+  private long mockLatency;
+  private int metricsPort;
 
   private String keyPrefix = "RoadRunnerDoc";
 
@@ -105,6 +146,132 @@ public class GlobalConfig {
 
     this.maxThinkTime = Integer.parseInt(args.hasOption(RoadRunner.OPT_MAXTHINKTIME)
             ? args.getOptionValue(RoadRunner.OPT_MAXTHINKTIME) : RoadRunner.DEFAULT_MAX_THINKTIME);
+
+    this.reportInterval = Integer.parseInt(args.hasOption(RoadRunner.OPT_REPORT_INTERVAL)
+            ? args.getOptionValue(RoadRunner.OPT_REPORT_INTERVAL) : RoadRunner.DEFAULT_REPORT_INTERVAL);
+
+    this.histogramLog = args.hasOption(RoadRunner.OPT_HISTOGRAM_LOG)
+      ? args.getOptionValue(RoadRunner.OPT_HISTOGRAM_LOG) : RoadRunner.DEFAULT_HISTOGRAM_LOG;
+
+    this.targetOps = Long.parseLong(args.hasOption(RoadRunner.OPT_TARGET_OPS)
+            ? args.getOptionValue(RoadRunner.OPT_TARGET_OPS) : RoadRunner.DEFAULT_TARGET_OPS);
+
+    this.coCorrection = args.hasOption(RoadRunner.OPT_CO_CORRECTION);
+
+    this.duration = Integer.parseInt(args.hasOption(RoadRunner.OPT_DURATION)
+            ? args.getOptionValue(RoadRunner.OPT_DURATION) : RoadRunner.DEFAULT_DURATION);
+
+    this.keyDistribution = args.hasOption(RoadRunner.OPT_KEY_DISTRIBUTION)
+      ? args.getOptionValue(RoadRunner.OPT_KEY_DISTRIBUTION) : RoadRunner.DEFAULT_KEY_DISTRIBUTION;
+    this.keyFormat = args.hasOption(RoadRunner.OPT_KEY_FORMAT)
+      ? args.getOptionValue(RoadRunner.OPT_KEY_FORMAT) : RoadRunner.DEFAULT_KEY_FORMAT;
+
+    this.payloadPool = Integer.parseInt(args.hasOption(RoadRunner.OPT_PAYLOAD_POOL)
+            ? args.getOptionValue(RoadRunner.OPT_PAYLOAD_POOL) : RoadRunner.DEFAULT_PAYLOAD_POOL);
+
+    this.schema = args.hasOption(RoadRunner.OPT_SCHEMA)
+      ? args.getOptionValue(RoadRunner.OPT_SCHEMA) : RoadRunner.DEFAULT_SCHEMA;
+
+    this.zeroCopy = args.hasOption(RoadRunner.OPT_ZERO_COPY);
+
+    this.maxInFlight = Integer.parseInt(args.hasOption(RoadRunner.OPT_MAX_IN_FLIGHT)
+            ? args.getOptionValue(RoadRunner.OPT_MAX_IN_FLIGHT) : RoadRunner.DEFAULT_MAX_IN_FLIGHT);
+
+    this.engine = args.hasOption(RoadRunner.OPT_ENGINE)
+      ? args.getOptionValue(RoadRunner.OPT_ENGINE) : RoadRunner.DEFAULT_ENGINE;
+    if (!"threaded".equals(engine) && !"reactive".equals(engine) && !"virtual".equals(engine)) {
+      throw new IllegalArgumentException("Unknown engine: " + engine);
+    }
+
+    this.sharedEnvironment = args.hasOption(RoadRunner.OPT_SHARED_ENV);
+
+    this.ioPoolSize = Integer.parseInt(args.hasOption(RoadRunner.OPT_IO_POOL_SIZE)
+            ? args.getOptionValue(RoadRunner.OPT_IO_POOL_SIZE) : RoadRunner.DEFAULT_IO_POOL_SIZE);
+
+    this.computationPoolSize = Integer.parseInt(args.hasOption(RoadRunner.OPT_COMPUTATION_POOL_SIZE)
+            ? args.getOptionValue(RoadRunner.OPT_COMPUTATION_POOL_SIZE) : RoadRunner.DEFAULT_COMPUTATION_POOL_SIZE);
+
+    this.kvEndpoints = Integer.parseInt(args.hasOption(RoadRunner.OPT_KV_ENDPOINTS)
+            ? args.getOptionValue(RoadRunner.OPT_KV_ENDPOINTS) : RoadRunner.DEFAULT_KV_ENDPOINTS);
+
+    this.requestBufferSize = Integer.parseInt(args.hasOption(RoadRunner.OPT_REQUEST_BUFFER_SIZE)
+            ? args.getOptionValue(RoadRunner.OPT_REQUEST_BUFFER_SIZE) : RoadRunner.DEFAULT_REQUEST_BUFFER_SIZE);
+
+    this.waitStrategy = args.hasOption(RoadRunner.OPT_WAIT_STRATEGY)
+      ? args.getOptionValue(RoadRunner.OPT_WAIT_STRATEGY) : RoadRunner.DEFAULT_WAIT_STRATEGY;
+
+    this.opMix = args.hasOption(RoadRunner.OPT_OP_MIX)
+      ? args.getOptionValue(RoadRunner.OPT_OP_MIX) : RoadRunner.DEFAULT_OP_MIX;
+
+    this.opTimeout = Long.parseLong(args.hasOption(RoadRunner.OPT_OP_TIMEOUT)
+            ? args.getOptionValue(RoadRunner.OPT_OP_TIMEOUT) : RoadRunner.DEFAULT_OP_TIMEOUT);
+    if (opTimeout <= 0) {
+      throw new IllegalArgumentException("The op timeout must be positive: " + opTimeout);
+    }
+
+    this.subdocRatio = Integer.parseInt(args.hasOption(RoadRunner.OPT_SUBDOC_RATIO)
+            ? args.getOptionValue(RoadRunner.OPT_SUBDOC_RATIO) : RoadRunner.DEFAULT_SUBDOC_RATIO);
+    if (opMix.isEmpty() && writeratio + readratio + subdocRatio > 100) {
+      throw new IllegalArgumentException("The write, read and sub-document ratios add up to more than 100: "
+        + writeratio + " + " + readratio + " + " + subdocRatio);
+    }
+
+    this.subdocMix = args.hasOption(RoadRunner.OPT_SUBDOC_MIX)
+      ? args.getOptionValue(RoadRunner.OPT_SUBDOC_MIX) : RoadRunner.DEFAULT_SUBDOC_MIX;
+
+    this.subdocPaths = args.hasOption(RoadRunner.OPT_SUBDOC_PATHS)
+      ? args.getOptionValue(RoadRunner.OPT_SUBDOC_PATHS) : RoadRunner.DEFAULT_SUBDOC_PATHS;
+
+    this.queryFile = args.hasOption(RoadRunner.OPT_QUERY_FILE)
+      ? args.getOptionValue(RoadRunner.OPT_QUERY_FILE) : RoadRunner.DEFAULT_QUERY_FILE;
+
+    this.queryConcurrency = Integer.parseInt(args.hasOption(RoadRunner.OPT_QUERY_CONCURRENCY)
+            ? args.getOptionValue(RoadRunner.OPT_QUERY_CONCURRENCY) : RoadRunner.DEFAULT_QUERY_CONCURRENCY);
+
+    this.queryAdhoc = args.hasOption(RoadRunner.OPT_QUERY_ADHOC);
+
+    this.scanConsistency = args.hasOption(RoadRunner.OPT_SCAN_CONSISTENCY)
+      ? args.getOptionValue(RoadRunner.OPT_SCAN_CONSISTENCY) : RoadRunner.DEFAULT_SCAN_CONSISTENCY;
+
+    this.workloadFile = args.hasOption(RoadRunner.OPT_WORKLOAD_FILE)
+      ? args.getOptionValue(RoadRunner.OPT_WORKLOAD_FILE) : RoadRunner.DEFAULT_WORKLOAD_FILE;
+
+    this.numOps = Long.parseLong(args.hasOption(RoadRunner.OPT_NUM_OPS)
+            ? args.getOptionValue(RoadRunner.OPT_NUM_OPS) : RoadRunner.DEFAULT_NUM_OPS);
+
+    this.coordinatorPort = Integer.parseInt(args.hasOption(RoadRunner.OPT_COORDINATOR)
+            ? args.getOptionValue(RoadRunner.OPT_COORDINATOR) : RoadRunner.DEFAULT_COORDINATOR);
+
+    this.agents = Integer.parseInt(args.hasOption(RoadRunner.OPT_AGENTS)
+            ? args.getOptionValue(RoadRunner.OPT_AGENTS) : RoadRunner.DEFAULT_AGENTS);
+
+    this.agentIndex = Integer.parseInt(args.hasOption(RoadRunner.OPT_AGENT_INDEX)
+            ? args.getOptionValue(RoadRunner.OPT_AGENT_INDEX) : RoadRunner.DEFAULT_AGENT_INDEX);
+
+    this.agentCount = Integer.parseInt(args.hasOption(RoadRunner.OPT_AGENT_COUNT)
+            ? args.getOptionValue(RoadRunner.OPT_AGENT_COUNT) : RoadRunner.DEFAULT_AGENT_COUNT);
+    this.resultsJson = args.hasOption(RoadRunner.OPT_RESULTS_JSON)
+      ? args.getOptionValue(RoadRunner.OPT_RESULTS_JSON) : RoadRunner.DEFAULT_RESULTS_JSON;
+    this.resultsCsv = args.hasOption(RoadRunner.OPT_RESULTS_CSV)
+      ? args.getOptionValue(RoadRunner.OPT_RESULTS_CSV) : RoadRunner.DEFAULT_RESULTS_CSV;
+    this.backpressure = args.hasOption(RoadRunner.OPT_BACKPRESSURE)
+      ? args.getOptionValue(RoadRunner.OPT_BACKPRESSURE) : RoadRunner.DEFAULT_BACKPRESSURE;
+    if (targetOps > 0 && backpressure.startsWith("aimd")) {
+      throw new IllegalArgumentException("The aimd backpressure limits the ops in flight, "
+        + "which would turn the open-loop target rate into a closed loop");
+    }
+    this.kvPort = Integer.parseInt(args.hasOption(RoadRunner.OPT_KV_PORT)
+      ? args.getOptionValue(RoadRunner.OPT_KV_PORT) : RoadRunner.DEFAULT_KV_PORT);
+    this.httpPort = Integer.parseInt(args.hasOption(RoadRunner.OPT_HTTP_PORT)
+      ? args.getOptionValue(RoadRunner.OPT_HTTP_PORT) : RoadRunner.DEFAULT_HTTP_PORT);
+    this.mock = args.hasOption(RoadRunner.OPT_MOCK);
+    this.mockLatency = Long.parseLong(args.hasOption(RoadRunner.OPT_MOCK_LATENCY)
+      ? args.getOptionValue(RoadRunner.OPT_MOCK_LATENCY) : RoadRunner.DEFAULT_MOCK_LATENCY);
+    this.metricsPort = Integer.parseInt(args.hasOption(RoadRunner.OPT_METRICS_PORT)
+      ? args.getOptionValue(RoadRunner.OPT_METRICS_PORT) : RoadRunner.DEFAULT_METRICS_PORT);
+    if (metricsPort > 0 && reportInterval <= 0) {
+      throw new IllegalArgumentException("The metrics endpoint is refreshed every report interval, which is off");
+    }
   }
 
   /**
@@ -170,11 +337,98 @@ public class GlobalConfig {
 
   public String getKeyPrefix() { return keyPrefix; }
 
+  public int getReportInterval() { return reportInterval; }
+
+  public String getHistogramLog() { return histogramLog; }
+
+  public long getTargetOps() { return targetOps; }
+
+  public boolean isCoCorrection() { return coCorrection; }
+
+  public int getDuration() { return duration; }
+
+  public String getKeyDistribution() { return keyDistribution; }
+
+  public String getKeyFormat() { return keyFormat; }
+
+  public int getPayloadPool() { return payloadPool; }
+
+  public String getSchema() { return schema; }
+
+  public boolean isZeroCopy() { return zeroCopy; }
+
+  public int getMaxInFlight() { return maxInFlight; }
+
+  public String getEngine() { return engine; }
+
+  public boolean isReactive() { return "reactive".equals(engine); }
+
+  public boolean isVirtual() { return "virtual".equals(engine); }
+
+  public boolean isSharedEnvironment() { return sharedEnvironment; }
+
+  public int getIoPoolSize() { return ioPoolSize; }
+
+  public int getComputationPoolSize() { return computationPoolSize; }
+
+  public int getKvEndpoints() { return kvEndpoints; }
+
+  public int getRequestBufferSize() { return requestBufferSize; }
+
+  public String getWaitStrategy() { return waitStrategy; }
+
+  public String getOpMix() { return opMix; }
+
+  public long getOpTimeout() { return opTimeout; }
+
+  public int getSubdocRatio() { return subdocRatio; }
+
+  public String getSubdocMix() { return subdocMix; }
+
+  public String getSubdocPaths() { return subdocPaths; }
+
+  public String getQueryFile() { return queryFile; }
+
+  public int getQueryConcurrency() { return queryConcurrency; }
+
+  public boolean isQueryAdhoc() { return queryAdhoc; }
+
+  public String getScanConsistency() { return scanConsistency; }
+
+  public String getWorkloadFile() { return workloadFile; }
+
+  public long getNumOps() { return numOps; }
+
+  public int getCoordinatorPort() { return coordinatorPort; }
+
+  public int getAgents() { return agents; }
+
+  public int getAgentIndex() { return agentIndex; }
+
+  public int getAgentCount() { return agentCount; }
+
+  public String getResultsJson() { return resultsJson; }
+
+  public String getResultsCsv() { return resultsCsv; }
+
+  public String getBackpressure() { return backpressure; }
+
+  public int getKvPort() { return kvPort; }
+
+  public int getHttpPort() { return httpPort; }
+
+  public boolean isMock() { return mock; }
+
+  public long getMockLatency() { return mockLatency; }
+
+  public int getMetricsPort() { return metricsPort; }
+
   @Override
   public String toString() {
     return "GlobalConfig{" + "nodes=" + nodes + ", bucket=" + bucket
       + ", password=" + password + ", numThreads=" + numThreads
       + ", numClients=" + numClients + ", numDocs=" + numDocs
-      + ", sampling=" + samplingCount + ", ramp=" + ramp + "}";
+      + ", sampling=" + samplingCount + ", ramp=" + ramp
+      + ", duration=" + duration + "}";
   }
 }
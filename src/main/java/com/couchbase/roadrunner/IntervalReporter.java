@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The IntervalReporter periodically collects the interval histograms from
+ * the dispatcher, prints throughput and latency for the last interval and
+ * the whole run so far, and optionally appends the intervals to a
+ * HdrHistogram log file and publishes them to the metrics endpoint.
+ */
+final class IntervalReporter implements Runnable {
+
+	private static final Logger LOGGER =
+			LoggerFactory.getLogger(IntervalReporter.class.getName());
+
+	/** Interval max values are logged in milliseconds. */
+	private static final double MAX_VALUE_UNIT_RATIO = 1000.0;
+
+	private final RunResults dispatcher;
+
+	private final long intervalSeconds;
+
+	private final ScheduledExecutorService scheduler;
+
+	private final Map<String, Histogram> cumulative;
+
+	private final List<Interval> intervals;
+
+	private Map<String, long[]> lastOutcomes;
+
+	private PrintStream logStream;
+
+	private HistogramLogWriter logWriter;
+
+	private MetricsEndpoint metrics;
+
+	private long startTimestamp;
+
+	private long lastTimestamp;
+
+	private long lastTotalOps;
+
+	/**
+	 * Create the IntervalReporter.
+	 *
+	 * @param config the global configuration object.
+	 * @param dispatcher the dispatcher (or coordinator) to collect the measures from.
+	 */
+	public IntervalReporter(GlobalConfig config, RunResults dispatcher) throws IOException {
+		this.dispatcher = dispatcher;
+		this.intervalSeconds = config.getReportInterval();
+		this.cumulative = new HashMap<>();
+		this.intervals = new ArrayList<>();
+		this.lastOutcomes = new HashMap<>();
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "IntervalReporter");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (!config.getHistogramLog().isEmpty()) {
+			this.logStream = new PrintStream(new FileOutputStream(config.getHistogramLog()), false);
+			this.logWriter = new HistogramLogWriter(logStream);
+		}
+		if (config.getMetricsPort() > 0) {
+			this.metrics = new MetricsEndpoint(config);
+		}
+	}
+
+	/**
+	 * Start reporting in the background.
+	 */
+	public void start() {
+		startTimestamp = System.currentTimeMillis();
+		lastTimestamp = startTimestamp;
+		lastTotalOps = dispatcher.getTotalOps();
+		if (logWriter != null) {
+			logWriter.outputComment("[Logged with RoadRunner]");
+			logWriter.outputLogFormatVersion();
+			logWriter.outputStartTime(startTimestamp);
+			logWriter.setBaseTime(startTimestamp);
+			logWriter.outputLegend();
+		}
+		if (metrics != null) {
+			metrics.start();
+		}
+		// an exception would cancel all following intervals
+		scheduler.scheduleAtFixedRate(() -> {
+			try {
+				run();
+			} catch (RuntimeException ex) {
+				LOGGER.warn("Could not report the interval", ex);
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Stop reporting and report the final (partial) interval.
+	 */
+	public void stop() throws InterruptedException {
+		scheduler.shutdown();
+		scheduler.awaitTermination(1, TimeUnit.MINUTES);
+		run();
+		if (logStream != null) {
+			logStream.close();
+		}
+		if (metrics != null) {
+			metrics.stop();
+		}
+	}
+
+	@Override
+	public synchronized void run() {
+		long now = System.currentTimeMillis();
+		double seconds = Math.max(now - lastTimestamp, 1) / 1000.0;
+		long totalOps = dispatcher.getTotalOps();
+
+		LOGGER.info(String.format("[%ds] %d ops in interval, %.0f ops/s",
+				TimeUnit.MILLISECONDS.toSeconds(now - startTimestamp), totalOps - lastTotalOps,
+				(totalOps - lastTotalOps) / seconds));
+		intervals.add(new Interval((now - startTimestamp) / 1000.0, totalOps - lastTotalOps,
+				(totalOps - lastTotalOps) / seconds));
+
+		Map<String, long[]> outcomes = dispatcher.getOutcomes();
+		for (Map.Entry<String, long[]> entry : new TreeMap<>(outcomes).entrySet()) {
+			long[] interval = entry.getValue().clone();
+			long[] last = lastOutcomes.get(entry.getKey());
+			for (int i = 0; last != null && i < interval.length; i++) {
+				interval[i] -= last[i];
+			}
+			String counts = OutcomeCounters.format(interval);
+			if (!counts.isEmpty()) {
+				LOGGER.info("  " + entry.getKey() + " outcomes: " + counts);
+			}
+		}
+		lastOutcomes = outcomes;
+
+		Map<String, Histogram> intervalMeasures = dispatcher.getIntervalMeasures();
+		for (Map.Entry<String, Histogram> entry : intervalMeasures.entrySet()) {
+			Histogram interval = entry.getValue();
+			Histogram total = cumulative.get(entry.getKey());
+			if (total == null) {
+				total = Workload.newHistogram();
+				cumulative.put(entry.getKey(), total);
+			}
+			total.add(interval);
+
+			LOGGER.info(String.format("  %s: %.0f measured ops/s, interval (us) %s, cumulative (us) %s",
+					entry.getKey(), interval.getTotalCount() / seconds, summary(interval), summary(total)));
+
+			if (logWriter != null) {
+				interval.setTag(entry.getKey());
+				logWriter.outputIntervalHistogram((lastTimestamp - startTimestamp) / 1000.0,
+						(now - startTimestamp) / 1000.0, interval, MAX_VALUE_UNIT_RATIO);
+			}
+		}
+
+		if (metrics != null) {
+			metrics.publish(totalOps, dispatcher.getInFlightOps(), outcomes, intervalMeasures, cumulative);
+		}
+
+		lastTimestamp = now;
+		lastTotalOps = totalOps;
+	}
+
+	/**
+	 * @return the throughput of the intervals reported so far.
+	 */
+	public synchronized List<Interval> getIntervals() {
+		return new ArrayList<>(intervals);
+	}
+
+	private static String summary(Histogram h) {
+		return "p50=" + h.getValueAtPercentile(50.0)
+				+ " p99=" + h.getValueAtPercentile(99.0)
+				+ " p99.9=" + h.getValueAtPercentile(99.9)
+				+ " max=" + h.getMaxValue();
+	}
+
+	/**
+	 * The throughput of one reported interval.
+	 */
+	static final class Interval {
+
+		private final double endSeconds;
+
+		private final long ops;
+
+		private final double opsPerSecond;
+
+		Interval(double endSeconds, long ops, double opsPerSecond) {
+			this.endSeconds = endSeconds;
+			this.ops = ops;
+			this.opsPerSecond = opsPerSecond;
+		}
+
+		/**
+		 * @return the end of the interval, in seconds since the start of the run.
+		 */
+		public double getEndSeconds() {
+			return endSeconds;
+		}
+
+		public long getOps() {
+			return ops;
+		}
+
+		public double getOpsPerSecond() {
+			return opsPerSecond;
+		}
+	}
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.couchbase.client.core.env.DefaultCoreEnvironment;
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.Workload;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.HdrHistogram.Histogram;
+
+/**
+ * The MetricsEndpoint serves the live measures of the run over HTTP in the
+ * Prometheus text format, so long runs can be watched on the same
+ * dashboards as the cluster.
+ *
+ * The page is rendered by the {@link IntervalReporter} from what it
+ * collects every report interval anyway. A scrape only writes out the last
+ * rendered page, it never reaches into the workers.
+ */
+final class MetricsEndpoint {
+
+	/** Quantiles of the interval latencies, the max is reported as 1. */
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	private final HttpServer server;
+
+	private final int requestBufferSize;
+
+	private volatile byte[] page = new byte[0];
+
+	/**
+	 * Create the endpoint, it serves nothing until started.
+	 *
+	 * @param config the global configuration object.
+	 */
+	MetricsEndpoint(GlobalConfig config) throws IOException {
+		this.requestBufferSize = config.getRequestBufferSize() > 0
+				? config.getRequestBufferSize() : DefaultCoreEnvironment.REQUEST_BUFFER_SIZE;
+		this.server = HttpServer.create(new InetSocketAddress(config.getMetricsPort()), 0);
+		this.server.createContext("/metrics", this::scrape);
+	}
+
+	void start() {
+		server.start();
+	}
+
+	void stop() {
+		server.stop(0);
+	}
+
+	/**
+	 * Render the page the following scrapes get.
+	 *
+	 * @param totalOps the ops completed so far.
+	 * @param inFlightOps the ops issued and not completed yet.
+	 * @param outcomes the outcomes so far per operation type.
+	 * @param intervals the histograms of the last interval per operation type.
+	 * @param cumulative the histograms of the whole run per operation type.
+	 */
+	void publish(long totalOps, long inFlightOps, Map<String, long[]> outcomes, Map<String, Histogram> intervals,
+			Map<String, Histogram> cumulative) {
+		StringBuilder out = new StringBuilder(4096);
+
+		header(out, "roadrunner_ops_total", "counter", "Ops completed.");
+		out.append("roadrunner_ops_total ").append(totalOps).append('\n');
+
+		header(out, "roadrunner_ops_in_flight", "gauge", "Ops issued and not completed yet.");
+		out.append("roadrunner_ops_in_flight ").append(inFlightOps).append('\n');
+
+		Map<String, long[]> sorted = new TreeMap<>(outcomes);
+		header(out, "roadrunner_outcomes_total", "counter",
+				"Outcomes per operation type, backpressure-retry counts every retry of an op.");
+		for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+			for (Outcome outcome : Outcome.values()) {
+				out.append("roadrunner_outcomes_total{operation=\"").append(escape(entry.getKey()))
+						.append("\",outcome=\"").append(outcome.getName()).append("\"} ")
+						.append(entry.getValue()[outcome.ordinal()]).append('\n');
+			}
+		}
+
+		header(out, "roadrunner_request_buffer_capacity", "gauge",
+				"Size of the request ring buffer of every client environment.");
+		out.append("roadrunner_request_buffer_capacity ").append(requestBufferSize).append('\n');
+
+		header(out, "roadrunner_request_buffer_full_total", "counter",
+				"Ops rejected by a full request ring buffer, retried or failed.");
+		for (Map.Entry<String, long[]> entry : sorted.entrySet()) {
+			long[] counts = entry.getValue();
+			out.append("roadrunner_request_buffer_full_total{operation=\"").append(escape(entry.getKey()))
+					.append("\"} ").append(counts[Outcome.BACKPRESSURE_RETRY.ordinal()]
+							+ counts[Outcome.BACKPRESSURE_REJECTED.ordinal()]).append('\n');
+		}
+
+		Map<String, Histogram> totals = new TreeMap<>(cumulative);
+		header(out, "roadrunner_latency_microseconds", "summary",
+				"Latency of the measured ops, quantiles over the last report interval.");
+		for (Map.Entry<String, Histogram> entry : totals.entrySet()) {
+			String identifier = entry.getKey();
+			if (identifier.endsWith(Workload.BACKOFF_SUFFIX)) {
+				continue;
+			}
+			String labels = identifier.endsWith(Workload.ERROR_SUFFIX)
+					? "operation=\"" + escape(strip(identifier, Workload.ERROR_SUFFIX)) + "\",result=\"error\""
+					: "operation=\"" + escape(identifier) + "\",result=\"success\"";
+			summary(out, "roadrunner_latency_microseconds", labels, intervals.get(identifier), entry.getValue());
+		}
+
+		header(out, "roadrunner_backoff_microseconds", "summary",
+				"Delays before backpressure retries, quantiles over the last report interval.");
+		for (Map.Entry<String, Histogram> entry : totals.entrySet()) {
+			String identifier = entry.getKey();
+			if (identifier.endsWith(Workload.BACKOFF_SUFFIX)) {
+				summary(out, "roadrunner_backoff_microseconds",
+						"operation=\"" + escape(strip(identifier, Workload.BACKOFF_SUFFIX)) + "\"",
+						intervals.get(identifier), entry.getValue());
+			}
+		}
+
+		page = out.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private void scrape(HttpExchange exchange) throws IOException {
+		byte[] body = page;
+		exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private static void header(StringBuilder out, String name, String type, String help) {
+		out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+	}
+
+	/**
+	 * The quantiles come from the last interval, NaN if nothing was recorded
+	 * in it, the count and sum from the whole run.
+	 */
+	private static void summary(StringBuilder out, String name, String labels, Histogram interval,
+			Histogram total) {
+		for (double quantile : QUANTILES) {
+			out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ");
+			if (interval == null || interval.getTotalCount() == 0) {
+				out.append("NaN");
+			} else {
+				out.append(interval.getValueAtPercentile(quantile * 100.0));
+			}
+			out.append('\n');
+		}
+		out.append(name).append("_sum{").append(labels).append("} ")
+				.append(Math.round(total.getMean() * total.getTotalCount())).append('\n');
+		out.append(name).append("_count{").append(labels).append("} ")
+				.append(total.getTotalCount()).append('\n');
+	}
+
+	private static String strip(String identifier, String suffix) {
+		return identifier.substring(0, identifier.length() - suffix.length());
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.couchbase.client.java.env.DefaultCouchbaseEnvironment;
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Writes the results of a run in machine readable form: a JSON document
+ * with the configuration, the JVM and host, the op counts and outcomes, the throughput
+ * per reported interval and the full histogram of every operation, and a
+ * CSV summary with one row per operation.
+ *
+ * Latencies are in microseconds. The histograms are in the compressed,
+ * base64 encoded HdrHistogram format (as in histogram logs), so runs can
+ * be merged or compared at any percentile afterwards.
+ */
+final class ResultsWriter {
+
+  /** Percentiles in the summaries, the histograms hold all of them. */
+  static final double[] PERCENTILES = {50.0, 75.0, 90.0, 95.0, 99.0, 99.9, 99.99};
+
+  /** Options which must not end up in the results. */
+  private static final String[] SECRET_FIELDS = {"password"};
+
+  private final GlobalConfig config;
+
+  private final RunResults results;
+
+  private final long elapsedMs;
+
+  private final ObjectMapper mapper;
+
+  ResultsWriter(GlobalConfig config, RunResults results, long elapsedMs) {
+    this.config = config;
+    this.results = results;
+    this.elapsedMs = elapsedMs;
+    this.mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+  }
+
+  void writeJson(File file) throws IOException {
+    mapper.writeValue(file, toJson());
+  }
+
+  void writeCsv(File file) throws IOException {
+    try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+      writeCsv(out);
+    }
+  }
+
+  void writeCsv(Writer out) throws IOException {
+    out.write("operation,count,warmup,min,mean");
+    for (double percentile : PERCENTILES) {
+      out.write(",p" + percentileName(percentile));
+    }
+    out.write(",max");
+    for (Outcome outcome : Outcome.values()) {
+      out.write("," + outcome.getName());
+    }
+    out.write("\n");
+    Map<String, Histogram> warmup = results.getWarmupMeasures();
+    Map<String, long[]> outcomes = results.getOutcomes();
+    for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(results.getMeasures()).entrySet()) {
+      Histogram histogram = entry.getValue();
+      out.write(csvField(entry.getKey()));
+      out.write("," + histogram.getTotalCount());
+      out.write("," + (warmup.containsKey(entry.getKey()) ? warmup.get(entry.getKey()).getTotalCount() : 0));
+      out.write("," + histogram.getMinValue());
+      out.write("," + String.format(Locale.ROOT, "%.1f", histogram.getMean()));
+      for (double percentile : PERCENTILES) {
+        out.write("," + histogram.getValueAtPercentile(percentile));
+      }
+      out.write("," + histogram.getMaxValue());
+      long[] counts = outcomes.get(entry.getKey());
+      for (Outcome outcome : Outcome.values()) {
+        out.write("," + (counts == null ? 0 : counts[outcome.ordinal()]));
+      }
+      out.write("\n");
+    }
+  }
+
+  /**
+   * The throughput after warmup: the ops completed and the time spent
+   * during the warmup of the phases are both left out.
+   */
+  static double opsPerSecond(RunResults results, long elapsedMs) {
+    return (results.getTotalOps() - results.getWarmupOps()) * 1000.0
+      / Math.max(elapsedMs - results.getWarmupMillis(), 1);
+  }
+
+  JsonNode toJson() {
+    ObjectNode root = mapper.createObjectNode();
+    root.put("timestamp", System.currentTimeMillis());
+    root.put("elapsedMs", elapsedMs);
+    root.set("config", config());
+    root.set("environment", environment());
+
+    root.put("totalOps", results.getTotalOps());
+    root.put("measuredOps", results.getMeasuredOps());
+    Map<String, long[]> outcomes = results.getOutcomes();
+    long errors = 0;
+    for (long[] counts : outcomes.values()) {
+      errors += OutcomeCounters.errors(counts);
+    }
+    root.put("errors", errors);
+    root.put("warmupOps", results.getWarmupOps());
+    root.put("opsPerSecond", opsPerSecond(results, elapsedMs));
+
+    ObjectNode operations = root.putObject("operations");
+    Map<String, Histogram> warmup = results.getWarmupMeasures();
+    for (Map.Entry<String, Histogram> entry : new TreeMap<String, Histogram>(results.getMeasures()).entrySet()) {
+      ObjectNode operation = operations.putObject(entry.getKey());
+      Histogram histogram = entry.getValue();
+      operation.put("count", histogram.getTotalCount());
+      operation.put("warmupCount", warmup.containsKey(entry.getKey())
+        ? warmup.get(entry.getKey()).getTotalCount() : 0);
+      operation.put("min", histogram.getMinValue());
+      operation.put("mean", histogram.getMean());
+      operation.put("stdDev", histogram.getStdDeviation());
+      operation.put("max", histogram.getMaxValue());
+      ObjectNode percentiles = operation.putObject("percentiles");
+      for (double percentile : PERCENTILES) {
+        percentiles.put(percentileName(percentile), histogram.getValueAtPercentile(percentile));
+      }
+      operation.put("histogram", encode(histogram));
+    }
+
+    ObjectNode outcomesNode = root.putObject("outcomes");
+    for (Map.Entry<String, long[]> entry : new TreeMap<String, long[]>(outcomes).entrySet()) {
+      ObjectNode operation = outcomesNode.putObject(entry.getKey());
+      for (Outcome outcome : Outcome.values()) {
+        operation.put(outcome.getName(), entry.getValue()[outcome.ordinal()]);
+      }
+    }
+
+    ObjectNode rows = root.putObject("queryRows");
+    for (Map.Entry<String, Long> entry : new TreeMap<String, Long>(results.getQueryRows()).entrySet()) {
+      rows.put(entry.getKey(), entry.getValue());
+    }
+
+    ArrayNode throughput = root.putArray("throughput");
+    for (IntervalReporter.Interval interval : results.getThroughput()) {
+      ObjectNode sample = throughput.addObject();
+      sample.put("endSeconds", interval.getEndSeconds());
+      sample.put("ops", interval.getOps());
+      sample.put("opsPerSecond", interval.getOpsPerSecond());
+    }
+
+    ArrayNode threads = root.putArray("threadElapsedMs");
+    for (long threadMs : results.getThreadElapsedMillis()) {
+      threads.add(threadMs);
+    }
+    return root;
+  }
+
+  /**
+   * The effective configuration, defaults included.
+   */
+  private ObjectNode config() {
+    ObjectNode node = mapper.createObjectNode();
+    for (Field field : GlobalConfig.class.getDeclaredFields()) {
+      if (Modifier.isStatic(field.getModifiers()) || isSecret(field.getName())) {
+        continue;
+      }
+      field.setAccessible(true);
+      try {
+        node.set(field.getName(), mapper.valueToTree(field.get(config)));
+      } catch (IllegalAccessException ex) {
+        throw new IllegalStateException(ex);
+      }
+    }
+    return node;
+  }
+
+  private static boolean isSecret(String name) {
+    for (String secret : SECRET_FIELDS) {
+      if (secret.equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private ObjectNode environment() {
+    ObjectNode node = mapper.createObjectNode();
+    node.put("javaVersion", System.getProperty("java.version"));
+    node.put("javaVendor", System.getProperty("java.vendor"));
+    node.put("vmName", System.getProperty("java.vm.name"));
+    node.put("vmVersion", System.getProperty("java.vm.version"));
+    ArrayNode vmArgs = node.putArray("vmArgs");
+    for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+      vmArgs.add(arg);
+    }
+    ArrayNode collectors = node.putArray("garbageCollectors");
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      collectors.add(collector.getName());
+    }
+    node.put("maxHeapBytes", Runtime.getRuntime().maxMemory());
+    node.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+    node.put("osName", System.getProperty("os.name"));
+    node.put("osVersion", System.getProperty("os.version"));
+    node.put("osArch", System.getProperty("os.arch"));
+    try {
+      node.put("hostName", InetAddress.getLocalHost().getHostName());
+    } catch (IOException ex) {
+      node.putNull("hostName");
+    }
+    node.put("client", DefaultCouchbaseEnvironment.SDK_PACKAGE_NAME_AND_VERSION);
+    return node;
+  }
+
+  /**
+   * @return the histogram in the compressed, base64 encoded HdrHistogram format.
+   */
+  static String encode(Histogram histogram) {
+    ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+    int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+    return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+  }
+
+  /**
+   * Names percentiles without trailing zeros, as in "50" or "99.9".
+   */
+  private static String percentileName(double percentile) {
+    return percentile == Math.rint(percentile)
+      ? String.valueOf((long) percentile) : String.valueOf(percentile);
+  }
+
+  private static String csvField(String value) {
+    if (value.contains(",") || value.contains("\"")) {
+      return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+    return value;
+  }
+}
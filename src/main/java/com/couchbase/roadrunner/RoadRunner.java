@@ -19,10 +19,14 @@
 
 package com.couchbase.roadrunner;
 
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
+import com.couchbase.roadrunner.mock.MockCluster;
+import com.couchbase.roadrunner.workloads.KeyEncoder;
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
 import org.HdrHistogram.Histogram;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -72,6 +76,48 @@ public final class RoadRunner {
 	public static final String OPT_CLASS_NAME = "class";
 	public static final String OPT_MINTHINKTIME = "min-thinktime";
 	public static final String OPT_MAXTHINKTIME = "max-thinktime";
+	public static final String OPT_REPORT_INTERVAL = "report-interval";
+	public static final String OPT_HISTOGRAM_LOG = "histogram-log";
+	public static final String OPT_TARGET_OPS = "target-ops";
+	public static final String OPT_CO_CORRECTION = "co-correction";
+	public static final String OPT_DURATION = "duration";
+	public static final String OPT_KEY_DISTRIBUTION = "key-distribution";
+	public static final String OPT_KEY_FORMAT = "key-format";
+	public static final String OPT_PAYLOAD_POOL = "payload-pool";
+	public static final String OPT_SCHEMA = "schema";
+	public static final String OPT_ZERO_COPY = "zero-copy";
+	public static final String OPT_MAX_IN_FLIGHT = "max-in-flight";
+	public static final String OPT_ENGINE = "engine";
+	public static final String OPT_SHARED_ENV = "shared-env";
+	public static final String OPT_IO_POOL_SIZE = "io-pool-size";
+	public static final String OPT_COMPUTATION_POOL_SIZE = "computation-pool-size";
+	public static final String OPT_KV_ENDPOINTS = "kv-endpoints";
+	public static final String OPT_REQUEST_BUFFER_SIZE = "request-buffer-size";
+	public static final String OPT_WAIT_STRATEGY = "wait-strategy";
+	public static final String OPT_OP_MIX = "op-mix";
+	public static final String OPT_OP_TIMEOUT = "op-timeout";
+	public static final String OPT_SUBDOC_RATIO = "subdoc-ratio";
+	public static final String OPT_SUBDOC_MIX = "subdoc-mix";
+	public static final String OPT_SUBDOC_PATHS = "subdoc-paths";
+	public static final String OPT_QUERY_FILE = "query-file";
+	public static final String OPT_QUERY_CONCURRENCY = "query-concurrency";
+	public static final String OPT_QUERY_ADHOC = "query-adhoc";
+	public static final String OPT_SCAN_CONSISTENCY = "scan-consistency";
+	public static final String OPT_WORKLOAD_FILE = "workload-file";
+	public static final String OPT_NUM_OPS = "num-ops";
+	public static final String OPT_COORDINATOR = "coordinator";
+	public static final String OPT_AGENTS = "agents";
+	public static final String OPT_AGENT = "agent";
+	public static final String OPT_AGENT_INDEX = "agent-index";
+	public static final String OPT_AGENT_COUNT = "agent-count";
+	public static final String OPT_RESULTS_JSON = "results-json";
+	public static final String OPT_RESULTS_CSV = "results-csv";
+	public static final String OPT_BACKPRESSURE = "backpressure";
+	public static final String OPT_KV_PORT = "kv-port";
+	public static final String OPT_HTTP_PORT = "http-port";
+	public static final String OPT_MOCK = "mock";
+	public static final String OPT_MOCK_LATENCY = "mock-latency";
+	public static final String OPT_METRICS_PORT = "metrics-port";
 
 	public static final String DEFAULT_NODES = "127.0.0.1";
 	public static final String DEFAULT_BUCKET = "default";
@@ -88,6 +134,43 @@ public final class RoadRunner {
 	public static final String DEFAULT_MIN_THINKTIME = "1";
 	public static final String DEFAULT_MAX_THINKTIME = "1000";
 	public static final String DEFAULT_BATCHSIZE = "100";
+	public static final String DEFAULT_REPORT_INTERVAL = "10";
+	public static final String DEFAULT_HISTOGRAM_LOG = "";
+	public static final String DEFAULT_TARGET_OPS = "0";
+	public static final String DEFAULT_DURATION = "0";
+	public static final String DEFAULT_KEY_DISTRIBUTION = "sequential";
+	public static final String DEFAULT_KEY_FORMAT = "padded";
+	public static final String DEFAULT_PAYLOAD_POOL = "0";
+	public static final String DEFAULT_SCHEMA = "";
+	public static final String DEFAULT_MAX_IN_FLIGHT = "0";
+	public static final String DEFAULT_ENGINE = "threaded";
+	public static final String DEFAULT_IO_POOL_SIZE = "0";
+	public static final String DEFAULT_COMPUTATION_POOL_SIZE = "0";
+	public static final String DEFAULT_KV_ENDPOINTS = "4";
+	public static final String DEFAULT_REQUEST_BUFFER_SIZE = "0";
+	public static final String DEFAULT_WAIT_STRATEGY = "";
+	public static final String DEFAULT_OP_MIX = "";
+	public static final String DEFAULT_OP_TIMEOUT = "1000";
+	public static final String DEFAULT_SUBDOC_RATIO = "0";
+	public static final String DEFAULT_SUBDOC_MIX = "get=40,exists=10,counter=20,dict-upsert=20,array-append=10";
+	public static final String DEFAULT_SUBDOC_PATHS =
+			"get=productFamilyId,exists=partition,counter=counter,dict-upsert=lastSyncedTime,array-append=history";
+	public static final String DEFAULT_QUERY_FILE = "";
+	public static final String DEFAULT_QUERY_CONCURRENCY = "1";
+	public static final String DEFAULT_SCAN_CONSISTENCY = "not-bounded";
+	public static final String DEFAULT_WORKLOAD_FILE = "";
+	public static final String DEFAULT_NUM_OPS = "0";
+	public static final String DEFAULT_COORDINATOR = "0";
+	public static final String DEFAULT_AGENTS = "1";
+	public static final String DEFAULT_AGENT_INDEX = "0";
+	public static final String DEFAULT_AGENT_COUNT = "1";
+	public static final String DEFAULT_RESULTS_JSON = "";
+	public static final String DEFAULT_RESULTS_CSV = "";
+	public static final String DEFAULT_BACKPRESSURE = "backoff";
+	public static final String DEFAULT_KV_PORT = "11210";
+	public static final String DEFAULT_HTTP_PORT = "8091";
+	public static final String DEFAULT_MOCK_LATENCY = "0";
+	public static final String DEFAULT_METRICS_PORT = "0";
 
 	private RoadRunner() {
 	}
@@ -115,8 +198,55 @@ public final class RoadRunner {
 			System.exit(0);
 		}
 
+		String[] runArgs = args;
+		AgentConnection agent = null;
+		if (params.hasOption(OPT_AGENT)) {
+			if (params.hasOption(OPT_METRICS_PORT)) {
+				LOGGER.error("Agents stream their measures to the coordinator, pass --metrics-port to it instead");
+				System.exit(-1);
+			}
+			try {
+				agent = AgentConnection.connect(params.getOptionValue(OPT_AGENT));
+				runArgs = agent.getArgs();
+				params = parseCommandLine(runArgs);
+			} catch (Exception ex) {
+				LOGGER.error("Exception while joining the coordinator!", ex);
+				System.exit(-1);
+			}
+		}
+
 		GlobalConfig config = new GlobalConfig(params);
-		WorkloadDispatcher dispatcher = new WorkloadDispatcher(config);
+		if (config.getCoordinatorPort() > 0) {
+			coordinate(config, runArgs);
+			return;
+		}
+
+		MockCluster mock = null;
+		if (config.isMock()) {
+			try {
+				mock = new MockCluster(config.getBucket(), config.getMockLatency());
+				mock.start(0, 0);
+				runArgs = mockArgs(mock, runArgs);
+				config = new GlobalConfig(parseCommandLine(runArgs));
+			} catch (Exception ex) {
+				LOGGER.error("Exception while starting the mock cluster!", ex);
+				System.exit(-1);
+			}
+		}
+
+		WorkloadDispatcher dispatcher;
+		if (config.getWorkloadFile().isEmpty()) {
+			dispatcher = new WorkloadDispatcher(config);
+		} else {
+			try {
+				dispatcher = new WorkloadDispatcher(config, WorkloadPhase.fromFile(config.getWorkloadFile(), runArgs));
+			} catch (Exception ex) {
+				LOGGER.error("Exception while reading the workload file!", ex);
+				System.exit(-1);
+				return;
+			}
+		}
+		dispatcher.setAgent(agent);
 
 		LOGGER.info("Running with Config: " + config.toString());
 
@@ -140,37 +270,106 @@ public final class RoadRunner {
 
 		LOGGER.debug("Finished Workload");
 
-		LOGGER.info("==== RESULTS ====");
-
 		dispatcher.prepareMeasures();
+		if (agent != null) {
+			try {
+				agent.sendResult(dispatcher);
+				agent.close();
+			} catch (IOException ex) {
+				LOGGER.error("Exception while sending the results to the coordinator!", ex);
+			}
+		}
+
+		printResults(dispatcher, workloadStopwatch.elapsed(TimeUnit.MILLISECONDS));
+		exportResults(config, dispatcher, workloadStopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+		if (mock != null) {
+			try {
+				mock.stop();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 
-		long totalOps = dispatcher.getTotalOps();
-		long measuredOps = dispatcher.getMeasuredOps();
+	/**
+	 * Point the command line at the mock cluster. The first occurrence of
+	 * an option wins, so the prepended ones override the nodes and ports.
+	 *
+	 * @param mock the started mock cluster.
+	 * @param args the command line.
+	 * @return the command line connecting to the mock cluster.
+	 */
+	static String[] mockArgs(MockCluster mock, String[] args) {
+		String[] mockArgs = new String[args.length + 6];
+		mockArgs[0] = "--" + OPT_NODES;
+		mockArgs[1] = mock.getHost();
+		mockArgs[2] = "--" + OPT_KV_PORT;
+		mockArgs[3] = Integer.toString(mock.getKvPort());
+		mockArgs[4] = "--" + OPT_HTTP_PORT;
+		mockArgs[5] = Integer.toString(mock.getHttpPort());
+		System.arraycopy(args, 0, mockArgs, 6, args.length);
+		return mockArgs;
+	}
+
+	/**
+	 * Run as coordinator of a distributed run and print the merged results
+	 * of all agents.
+	 */
+	private static void coordinate(GlobalConfig config, String[] args) {
+		Stopwatch workloadStopwatch = new Stopwatch().start();
+		try {
+			Coordinator coordinator = new Coordinator(config, args);
+			coordinator.run();
+			workloadStopwatch.stop();
+			printResults(coordinator, workloadStopwatch.elapsed(TimeUnit.MILLISECONDS));
+			exportResults(config, coordinator, workloadStopwatch.elapsed(TimeUnit.MILLISECONDS));
+		} catch (Exception ex) {
+			LOGGER.error("Error while coordinating the agents: ", ex);
+			System.exit(-1);
+		}
+	}
+
+	private static void printResults(RunResults results, long elapsedMs) {
+		LOGGER.info("==== RESULTS ====");
+
+		long totalOps = results.getTotalOps();
+		long measuredOps = results.getMeasuredOps();
 
 		LOGGER.info("Operations: measured " + measuredOps + " ops out of total "
 				+ totalOps + "ops");
 
-		Map<String, List<Stopwatch>> measures = dispatcher.getMeasures();
-		for (Map.Entry<String, List<Stopwatch>> entry : measures.entrySet()) {
-			Histogram h = new Histogram(10 * 60 * 1000 * 1000, 5);
-			for (Stopwatch watch : entry.getValue()) {
-				h.recordValue(watch.elapsed(TimeUnit.MICROSECONDS));
-			}
-
+		Map<String, Histogram> measures = results.getMeasures();
+		for (Map.Entry<String, Histogram> entry : measures.entrySet()) {
+			Histogram h = entry.getValue();
 			LOGGER.info("Percentile (microseconds) for \"" + entry.getKey() + "\" Workload:");
-			LOGGER.info("   50%:" + (Math.round(h.getValueAtPercentile(0.5) * 100) / 100)
-					+ "   75%:" + (Math.round(h.getValueAtPercentile(0.75) * 100) / 100)
-					+ "   95%:" + (Math.round(h.getValueAtPercentile(0.95) * 100) / 100)
-					+ "   99%:" + (Math.round(h.getValueAtPercentile(0.99) * 100) / 100));
+			LOGGER.info("   50%:" + h.getValueAtPercentile(50.0)
+					+ "   75%:" + h.getValueAtPercentile(75.0)
+					+ "   95%:" + h.getValueAtPercentile(95.0)
+					+ "   99%:" + h.getValueAtPercentile(99.0));
+		}
+
+		for (Map.Entry<String, long[]> entry : results.getOutcomes().entrySet()) {
+			LOGGER.info("Outcomes for \"" + entry.getKey() + "\": " + OutcomeCounters.format(entry.getValue()));
 		}
 
-		LOGGER.info("Elapsed: " + workloadStopwatch.elapsed(TimeUnit.MILLISECONDS) + "ms");
+		for (Map.Entry<String, Histogram> entry : results.getWarmupMeasures().entrySet()) {
+			LOGGER.info("Excluded " + entry.getValue().getTotalCount() + " \"" + entry.getKey()
+					+ "\" ops started during ramp-up");
+		}
+
+		for (Map.Entry<String, Long> entry : results.getQueryRows().entrySet()) {
+			LOGGER.info("Rows for \"" + entry.getKey() + "\": " + entry.getValue()
+					+ " (" + (entry.getValue() * 1000 / Math.max(elapsedMs, 1)) + " rows/s)");
+		}
+
+		LOGGER.info("Elapsed: " + elapsedMs + "ms");
+		LOGGER.info(String.format("Throughput: %.0f ops/s after ramp-up",
+				ResultsWriter.opsPerSecond(results, elapsedMs)));
 
-		List<Stopwatch> elapsedThreads = dispatcher.getThreadElapsed();
 		long shortestThread = 0;
 		long longestThread = 0;
-		for (Stopwatch threadWatch : elapsedThreads) {
-			long threadMs = threadWatch.elapsed(TimeUnit.MILLISECONDS);
+		for (long threadMs : results.getThreadElapsedMillis()) {
 			if (longestThread == 0 || threadMs > longestThread) {
 				longestThread = threadMs;
 			}
@@ -183,6 +382,23 @@ public final class RoadRunner {
 		LOGGER.info("Longest Thread: " + longestThread + "ms");
 	}
 
+	private static void exportResults(GlobalConfig config, RunResults results, long elapsedMs) {
+		ResultsWriter writer = new ResultsWriter(config, results, elapsedMs);
+		try {
+			if (!config.getResultsJson().isEmpty()) {
+				writer.writeJson(new File(config.getResultsJson()));
+				LOGGER.info("Wrote the results to " + config.getResultsJson());
+			}
+			if (!config.getResultsCsv().isEmpty()) {
+				writer.writeCsv(new File(config.getResultsCsv()));
+				LOGGER.info("Wrote the results summary to " + config.getResultsCsv());
+			}
+		} catch (IOException ex) {
+			LOGGER.error("Exception while writing the results!", ex);
+			System.exit(-1);
+		}
+	}
+
 	/**
 	 * Parse the command line.
 	 *
@@ -232,6 +448,15 @@ public final class RoadRunner {
 		options.addOption("B", OPT_BATCHSIZE, true,
 				"Batch size (default \"" + DEFAULT_BATCHSIZE + "\")");
 
+		options.addOption("m", OPT_MAX_IN_FLIGHT, true,
+				"Ops kept in flight per worker instead of waiting for whole batches, 0 runs batch by batch (default \""
+						+ DEFAULT_MAX_IN_FLIGHT + "\")");
+
+		options.addOption("E", OPT_ENGINE, true,
+				"threaded: worker threads per client, reactive: one non-blocking pipeline per client, "
+						+ "virtual: one blocking virtual thread per simulated user "
+						+ "(default \"" + DEFAULT_ENGINE + "\")");
+
 		options.addOption("g", OPT_READRATIO , true,
 				"Read Ratio  (default: \"" + DEFAULT_READ_RATIO + "\")");
 
@@ -242,17 +467,141 @@ public final class RoadRunner {
 				"% Sample Rate (default \"" + DEFAULT_SAMPLING + "%\")");
 
 		options.addOption("R", OPT_RAMP, true,
-				"Ramp-Up time in seconds - ignored ops (default: \"" + DEFAULT_RAMP + "\")");
+				"Ramp-Up time in seconds - ops started during it are excluded from the results (default: \"" + DEFAULT_RAMP + "\")");
+
+		options.addOption("D", OPT_DURATION, true,
+				"Measured run time in seconds after ramp-up, 0 bounds the run by the number of docs instead (default: \"" + DEFAULT_DURATION + "\")");
+
+		options.addOption("S", OPT_SCHEMA, true,
+				"JSON schema file to generate documents from instead of a sample class (default: none)");
+
+		options.addOption("X", OPT_ZERO_COPY, false,
+				"Write from pooled direct buffers and keep read responses in the network buffers instead of copying them");
+
+		options.addOption("k", OPT_KEY_DISTRIBUTION, true,
+				"Key access distribution of the run phase: sequential, uniform, zipfian[:theta], scrambled[:theta], "
+						+ "latest[:theta] or hotspot[:keys:ops] (default \"" + DEFAULT_KEY_DISTRIBUTION + "\")");
 
 		options.addOption("C", OPT_CLASS_NAME, true,
 				"Class name from the sample classes (default \"" + DEFAULT_CLASS + "\")");
 
+		options.addOption("Y", OPT_PAYLOAD_POOL, true,
+				"Number of distinct documents to pre-render at startup, 0 renders one per write (default \"" + DEFAULT_PAYLOAD_POOL + "\")");
+
 		options.addOption("z", OPT_MINTHINKTIME, true,
 				"Minimum think time (default \"" + DEFAULT_MIN_THINKTIME + "\")");
 
 		options.addOption("Z", OPT_MAXTHINKTIME, true,
 				"Maximum think time (default \"" + DEFAULT_MAX_THINKTIME + "\")");
 
+		options.addOption("i", OPT_REPORT_INTERVAL, true,
+				"Seconds between live latency reports, 0 disables them (default \"" + DEFAULT_REPORT_INTERVAL + "\")");
+
+		options.addOption("l", OPT_HISTOGRAM_LOG, true,
+				"File to write the interval histograms to in HdrHistogram log format (default: none)");
+
+		options.addOption("T", OPT_TARGET_OPS, true,
+				"Target ops/s across all workers, runs open-loop when set (default \"" + DEFAULT_TARGET_OPS + "\" = closed-loop)");
+
+		options.addOption("O", OPT_CO_CORRECTION, false,
+				"With a target rate, measure from the actual start and correct for coordinated omission at recording time");
+
+		options.addOption(null, OPT_KEY_FORMAT, true,
+				"Document ids: padded (the key index in " + KeyEncoder.DIGITS + " digits) or hashed (the scrambled index "
+						+ "in hex, spreading neighbouring keys) (default \"" + DEFAULT_KEY_FORMAT + "\")");
+
+		options.addOption(null, OPT_SHARED_ENV, false,
+				"Share one client environment (IO and computation pools) across all CouchbaseClient objects");
+
+		options.addOption(null, OPT_IO_POOL_SIZE, true,
+				"Client IO pool size, 0 uses the SDK default (default \"" + DEFAULT_IO_POOL_SIZE + "\")");
+
+		options.addOption(null, OPT_COMPUTATION_POOL_SIZE, true,
+				"Client computation pool size, 0 uses the SDK default (default \"" + DEFAULT_COMPUTATION_POOL_SIZE + "\")");
+
+		options.addOption(null, OPT_KV_ENDPOINTS, true,
+				"KV connections per node (default \"" + DEFAULT_KV_ENDPOINTS + "\")");
+
+		options.addOption(null, OPT_REQUEST_BUFFER_SIZE, true,
+				"Size of the client request ring buffer, 0 uses the SDK default (default \"" + DEFAULT_REQUEST_BUFFER_SIZE + "\")");
+
+		options.addOption(null, OPT_WAIT_STRATEGY, true,
+				"Request ring buffer wait strategy: blocking, lite-blocking, sleeping, yielding or busy-spin (default: SDK default)");
+
+		options.addOption(null, OPT_OP_MIX, true,
+				"Weighted run phase operations, e.g. \"get=70,replace=20,counter=10\" (default: the write, read and sub-document ratios)");
+
+		options.addOption(null, OPT_OP_TIMEOUT, true,
+				"Milliseconds after which an op fails with a timeout (default \"" + DEFAULT_OP_TIMEOUT + "\")");
+
+		options.addOption(null, OPT_SUBDOC_RATIO, true,
+				"Sub-document Ratio, with the write and read ratios at most 100 (default \"" + DEFAULT_SUBDOC_RATIO + "\")");
+
+		options.addOption(null, OPT_SUBDOC_MIX, true,
+				"Weights of the sub-document ops get, exists, counter, dict-upsert and array-append (default \"" + DEFAULT_SUBDOC_MIX + "\")");
+
+		options.addOption(null, OPT_SUBDOC_PATHS, true,
+				"Document path each sub-document op works on (default \"" + DEFAULT_SUBDOC_PATHS + "\")");
+
+		options.addOption(null, OPT_QUERY_FILE, true,
+				"JSON file with the N1QL statements to run next to the KV ops in the run phase (default: none)");
+
+		options.addOption(null, OPT_QUERY_CONCURRENCY, true,
+				"Queries in flight across all clients (default \"" + DEFAULT_QUERY_CONCURRENCY + "\")");
+
+		options.addOption(null, OPT_QUERY_ADHOC, false,
+				"Run the statements adhoc instead of preparing them once and reusing the plan");
+
+		options.addOption(null, OPT_SCAN_CONSISTENCY, true,
+				"Query scan consistency: not-bounded, request-plus or statement-plus (default \"" + DEFAULT_SCAN_CONSISTENCY + "\")");
+
+		options.addOption(null, OPT_NUM_OPS, true,
+				"Run phase ops across all workers, 0 runs one op per document (default \"" + DEFAULT_NUM_OPS + "\")");
+
+		options.addOption(null, OPT_WORKLOAD_FILE, true,
+				"JSON file with a sequence of phases overriding the command line options (default: none)");
+
+		options.addOption(null, OPT_COORDINATOR, true,
+				"Coordinate a distributed run from this port instead of running the workload (default: off)");
+
+		options.addOption(null, OPT_AGENTS, true,
+				"Number of agents the coordinator waits for (default \"" + DEFAULT_AGENTS + "\")");
+
+		options.addOption(null, OPT_AGENT, true,
+				"Run as agent of the coordinator at host:port, taking the command line from it (default: off)");
+
+		options.addOption(null, OPT_AGENT_INDEX, true,
+				"Share of the key space and rates this process runs, set by the coordinator (default \"" + DEFAULT_AGENT_INDEX + "\")");
+
+		options.addOption(null, OPT_AGENT_COUNT, true,
+				"Number of processes sharing the key space and rates, set by the coordinator (default \"" + DEFAULT_AGENT_COUNT + "\")");
+
+		options.addOption(null, OPT_BACKPRESSURE, true,
+				"What to do with ops rejected by the full request ring buffer: immediate, backoff[:min-us:max-us], "
+						+ "aimd[:min-us:max-us] or fail-fast (default \"" + DEFAULT_BACKPRESSURE + "\")");
+
+		options.addOption(null, OPT_KV_PORT, true,
+				"Key/value port to bootstrap from (default \"" + DEFAULT_KV_PORT + "\")");
+
+		options.addOption(null, OPT_HTTP_PORT, true,
+				"HTTP port to bootstrap from when the key/value port doesn't serve the config (default \"" + DEFAULT_HTTP_PORT + "\")");
+
+		options.addOption(null, OPT_MOCK, false,
+				"Run against an in-process mock cluster instead of the nodes, to measure the client side alone");
+
+		options.addOption(null, OPT_MOCK_LATENCY, true,
+				"Artificial latency of the mock cluster in microseconds (default \"" + DEFAULT_MOCK_LATENCY + "\")");
+
+		options.addOption(null, OPT_METRICS_PORT, true,
+				"Serve live metrics in Prometheus text format on this port, refreshed every report interval "
+						+ "(default \"" + DEFAULT_METRICS_PORT + "\" = off)");
+
+		options.addOption(null, OPT_RESULTS_JSON, true,
+				"Write the results with the full histograms as JSON to this file (default: none)");
+
+		options.addOption(null, OPT_RESULTS_CSV, true,
+				"Write a summary of the results per operation as CSV to this file (default: none)");
+
 		options.addOption("h", OPT_HELP, false,
 				"Print this help message");
 
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.util.List;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+/**
+ * The measures of a run, collected either from the local handlers or
+ * merged from the agents of a distributed run.
+ */
+interface RunResults {
+
+  long getTotalOps();
+
+  long getMeasuredOps();
+
+  /**
+   * @return the ops completed during the warmup of a phase, left out of the throughput.
+   */
+  long getWarmupOps();
+
+  /**
+   * @return the warmup time of the phases run, left out of the throughput.
+   */
+  long getWarmupMillis();
+
+  /**
+   * @return the ops issued and not completed yet.
+   */
+  long getInFlightOps();
+
+  /**
+   * @return the outcomes per operation type, indexed by {@link com.couchbase.roadrunner.workloads.Outcome#ordinal()}.
+   */
+  Map<String, long[]> getOutcomes();
+
+  /**
+   * Collect what was recorded since the last call.
+   *
+   * @return the interval histograms per operation type.
+   */
+  Map<String, Histogram> getIntervalMeasures();
+
+  Map<String, Histogram> getMeasures();
+
+  Map<String, Histogram> getWarmupMeasures();
+
+  /**
+   * @return the rows returned by the query workload, per statement.
+   */
+  Map<String, Long> getQueryRows();
+
+  /**
+   * @return the throughput of every reported interval, empty if nothing was reported.
+   */
+  List<IntervalReporter.Interval> getThroughput();
+
+  /**
+   * @return the run time of every worker, in milliseconds.
+   */
+  List<Long> getThreadElapsedMillis();
+}
@@ -26,20 +26,25 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
-import com.couchbase.roadrunner.workloads.DocumentGenerator;
+import com.couchbase.roadrunner.events.FlightRecorderEvents;
+import com.couchbase.roadrunner.workloads.OperationSchedule;
+import com.couchbase.roadrunner.workloads.OutcomeCounters;
+import com.couchbase.roadrunner.workloads.RunWindow;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.couchbase.client.java.Cluster;
-import com.couchbase.client.java.CouchbaseCluster;
+import com.couchbase.client.java.env.CouchbaseEnvironment;
 import com.google.common.base.Stopwatch;
 
 /**
  * The WorkloadDispatcher is responsible for initializing the Clients, their
  * corresponding workers and initializing the workload.
  */
-final class WorkloadDispatcher {
+final class WorkloadDispatcher implements RunResults {
 
   /** Configure a reusable logger. */
   static final Logger LOGGER =
@@ -47,13 +52,25 @@ final class WorkloadDispatcher {
 
   /** The global configuration object. */
   private final GlobalConfig config;
-  private final Cluster cluster;
-  private DocumentGenerator documentGenerator;
+
+  /** The environment shared by all handlers, null if each creates its own. */
+  private CouchbaseEnvironment sharedEnvironment;
+
+  /** The phases of the run, in order. */
+  private final List<WorkloadPhase> phases;
+
+  /** The connection to the coordinator, null unless running as agent. */
+  private AgentConnection agent;
+
+  /** Reports the intervals when running standalone, null otherwise. */
+  private IntervalReporter reporter;
 
   /** Links to the clientHandlers for each CouchabaseClient. */
   private List<ClientHandler> clientHandlers;
 
-  Map<String, List<Stopwatch>> mergedMeasures;
+  Map<String, Histogram> mergedMeasures;
+
+  Map<String, Histogram> warmupMeasures;
 
   /**
    * Create the WorkloadDispatcher object.
@@ -61,11 +78,31 @@ final class WorkloadDispatcher {
    * @param config The global configuration object with all settings.
    */
   public WorkloadDispatcher(final GlobalConfig config) {
+    this(config, WorkloadPhase.single(config));
+  }
+
+  /**
+   * Create the WorkloadDispatcher object for a sequence of phases.
+   *
+   * @param config The global configuration object with the connection settings.
+   * @param phases The phases to run one after the other.
+   */
+  public WorkloadDispatcher(final GlobalConfig config, final List<WorkloadPhase> phases) {
     this.config = config;
-    this.cluster = CouchbaseCluster.create(config.getNodes());
+    this.phases = phases;
     this.clientHandlers = new ArrayList<ClientHandler>();
-    this.mergedMeasures = new HashMap<String, List<Stopwatch>>();
-    this.documentGenerator = new DocumentGenerator(config.getClassName());
+    this.mergedMeasures = new HashMap<String, Histogram>();
+    this.warmupMeasures = new HashMap<String, Histogram>();
+  }
+
+  /**
+   * Run as agent of a distributed run: wait for the coordinator at the
+   * start of every phase and stream the measures to it.
+   *
+   * @param agent the connection to the coordinator.
+   */
+  public void setAgent(AgentConnection agent) {
+    this.agent = agent;
   }
 
   /**
@@ -73,64 +110,152 @@ final class WorkloadDispatcher {
    */
   public void init() throws Exception {
     try {
-      int offset = 0;
+      for (WorkloadPhase phase : phases) {
+        phase.prepare();
+      }
+      if (config.isSharedEnvironment()) {
+        sharedEnvironment = ClientHandler.createEnvironment(config);
+      }
+      // agents of a distributed run each take their slice of the key space
+      int docsPerAgent = (int)Math.floor(config.getNumDocs()/config.getAgentCount());
+      int offset = config.getAgentIndex() * docsPerAgent;
       int docsPerHandler = (int)Math.floor(
-          config.getNumDocs()/config.getNumClients());
+          docsPerAgent/config.getNumClients());
       for (int i=0;i<config.getNumClients();i++) {
-        clientHandlers.add(new ClientHandler(config, "ClientHandler-"+(i+1), docsPerHandler, offset, this.documentGenerator));
+        clientHandlers.add(new ClientHandler(config, "ClientHandler-"+(i+1), docsPerHandler, offset,
+            phases.get(0).getDocumentGenerator(), sharedEnvironment));
         offset = offset + docsPerHandler;
       }
     } catch (Exception e) {
-      cluster.disconnect();
+      shutdownEnvironment();
       throw e;
     }
   }
 
   /**
-   * Distribute and run the workload against the ClientHandlers.
+   * Distribute and run the workload against the ClientHandlers, phase by
+   * phase over the same connections.
    */
   public void dispatchWorkload() throws Exception {
     try {
-      for(ClientHandler handler : clientHandlers) {
-        handler.executeWorkload(this.documentGenerator);
+      if (agent != null && config.getReportInterval() > 0) {
+        agent.startStreaming(this, config.getReportInterval());
+      } else if (config.getReportInterval() > 0) {
+        reporter = new IntervalReporter(config, this);
+        reporter.start();
       }
-      while (getTotalOps() != config.getNumDocs()) {
-        try {
-          Thread.sleep(1000);
-        } catch (InterruptedException ex) {
-
+      for (int i = 0; i < phases.size(); i++) {
+        WorkloadPhase phase = phases.get(i);
+        if (agent != null) {
+          agent.awaitStart(i);
+        }
+        if (phase.getName() != null) {
+          LOGGER.info("Running phase \"" + phase.getName() + "\" with Config: " + phase.getConfig());
+        }
+        Object event = FlightRecorderEvents.beginPhase();
+        runPhase(phase);
+        GlobalConfig phaseConfig = phase.getConfig();
+        FlightRecorderEvents.endPhase(event, i, phase.getName(), phaseConfig.getPhase(),
+          phaseConfig.getEngine(), phaseConfig.getNumThreads(), getTotalOps());
+        if (reporter != null) {
+          reporter.run();
         }
+        for (ClientHandler handler : clientHandlers) {
+          handler.completeWorkload();
+        }
+        phase.getDocumentGenerator().close();
+      }
+      if (reporter != null) {
+        reporter.stop();
+      }
+      if (agent != null) {
+        agent.stopStreaming(this);
       }
 
       for(ClientHandler handler : clientHandlers) {
         handler.cleanup();
       }
     } finally {
-      cluster.disconnect();
+      shutdownEnvironment();
+    }
+  }
+
+  /**
+   * Start the workers of a phase and wait for them to complete.
+   */
+  private void runPhase(WorkloadPhase phase) throws Exception {
+    GlobalConfig phaseConfig = phase.getConfig();
+    OperationSchedule schedule = null;
+    if (phaseConfig.getTargetOps() > 0 && (phaseConfig.isReactive() || phaseConfig.isVirtual())) {
+      LOGGER.warn("The " + phaseConfig.getEngine() + " engine runs closed-loop, ignoring the target rate");
+    } else if (phaseConfig.getTargetOps() > 0) {
+      long targetOps = phaseConfig.getTargetOps() / phaseConfig.getAgentCount();
+      LOGGER.info("Running open-loop at " + targetOps + " ops/s");
+      schedule = new OperationSchedule(targetOps);
+    }
+    RunWindow window = new RunWindow(phaseConfig.getRamp(), phaseConfig.getDuration());
+    for(ClientHandler handler : clientHandlers) {
+      handler.executeWorkload(phase, schedule, window);
+    }
+    while (!isCompleted()) {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException ex) {
+
+      }
+    }
+  }
+
+  private void shutdownEnvironment() {
+    if (sharedEnvironment != null) {
+      sharedEnvironment.shutdown();
     }
   }
 
+  /**
+   * A phase is done when the workers of all handlers are.
+   */
+  private boolean isCompleted() {
+    for (ClientHandler handler : clientHandlers) {
+      if (!handler.isFinished()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   public void prepareMeasures() {
     storeMeasures();
   }
 
   private void storeMeasures() {
     for(ClientHandler handler : clientHandlers) {
-      Map<String, List<Stopwatch>> measures = handler.getMeasures();
-      for (Map.Entry<String, List<Stopwatch>> entry : measures.entrySet()) {
-        if(mergedMeasures.containsKey(entry.getKey())) {
-          mergedMeasures.get(entry.getKey()).addAll(entry.getValue());
-        } else {
-          mergedMeasures.put(entry.getKey(), entry.getValue());
-        }
-      }
+      Workload.mergeMeasures(mergedMeasures, handler.getMeasures());
+      Workload.mergeMeasures(warmupMeasures, handler.getWarmupMeasures());
+    }
+  }
+
+  /**
+   * Collect what all handlers recorded since the last call.
+   *
+   * @return the merged interval histograms per operation type.
+   */
+  public Map<String, Histogram> getIntervalMeasures() {
+    Map<String, Histogram> intervals = new HashMap<String, Histogram>();
+    for(ClientHandler handler : clientHandlers) {
+      handler.mergeIntervalMeasures(intervals);
     }
+    return intervals;
   }
 
-  public Map<String, List<Stopwatch>> getMeasures() {
+  public Map<String, Histogram> getMeasures() {
     return mergedMeasures;
   }
 
+  public Map<String, Histogram> getWarmupMeasures() {
+    return warmupMeasures;
+  }
+
   public long getTotalOps() {
     long totalOps = 0;
     for (ClientHandler handler : clientHandlers) {
@@ -139,6 +264,30 @@ final class WorkloadDispatcher {
     return totalOps;
   }
 
+  public long getWarmupOps() {
+    long warmupOps = 0;
+    for (ClientHandler handler : clientHandlers) {
+      warmupOps += handler.getWarmupOps();
+    }
+    return warmupOps;
+  }
+
+  public long getWarmupMillis() {
+    long warmupMillis = 0;
+    for (WorkloadPhase phase : phases) {
+      warmupMillis += TimeUnit.SECONDS.toMillis(phase.getConfig().getRamp());
+    }
+    return warmupMillis;
+  }
+
+  public long getInFlightOps() {
+    long inFlightOps = 0;
+    for (ClientHandler handler : clientHandlers) {
+      inFlightOps += handler.getInFlightOps();
+    }
+    return inFlightOps;
+  }
+
   public long getMeasuredOps() {
     long measuredOps = 0;
     for (ClientHandler handler : clientHandlers) {
@@ -147,10 +296,41 @@ final class WorkloadDispatcher {
     return measuredOps;
   }
 
-  public List<Stopwatch> getThreadElapsed() {
-    List<Stopwatch> elapsed = new ArrayList<Stopwatch>();
+  public Map<String, long[]> getOutcomes() {
+    Map<String, long[]> outcomes = new HashMap<String, long[]>();
+    for (ClientHandler handler : clientHandlers) {
+      OutcomeCounters.merge(outcomes, handler.getOutcomes());
+    }
+    return outcomes;
+  }
+
+  /**
+   * @return the rows returned by the query workload, per statement.
+   */
+  public Map<String, Long> getQueryRows() {
+    Map<String, Long> rows = new HashMap<String, Long>();
+    for (ClientHandler handler : clientHandlers) {
+      for (Map.Entry<String, Long> entry : handler.getQueryRows().entrySet()) {
+        Long merged = rows.get(entry.getKey());
+        rows.put(entry.getKey(), merged == null ? entry.getValue() : merged + entry.getValue());
+      }
+    }
+    return rows;
+  }
+
+  public List<IntervalReporter.Interval> getThroughput() {
+    if (reporter == null) {
+      return new ArrayList<IntervalReporter.Interval>();
+    }
+    return reporter.getIntervals();
+  }
+
+  public List<Long> getThreadElapsedMillis() {
+    List<Long> elapsed = new ArrayList<Long>();
     for(ClientHandler handler : clientHandlers) {
-      elapsed.addAll(handler.getThreadElapsed());
+      for (Stopwatch threadWatch : handler.getThreadElapsed()) {
+        elapsed.add(threadWatch.elapsed(TimeUnit.MILLISECONDS));
+      }
     }
     return elapsed;
   }
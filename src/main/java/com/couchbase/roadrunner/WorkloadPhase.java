@@ -0,0 +1,207 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.couchbase.roadrunner.workloads.DocumentGenerator;
+import com.couchbase.roadrunner.workloads.KeyChooser;
+import com.couchbase.roadrunner.workloads.KeyChoosers;
+import com.couchbase.roadrunner.workloads.QueryTemplate;
+import com.couchbase.roadrunner.workloads.SchemaDocumentGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.commons.cli.ParseException;
+
+/**
+ * A phase of a run: the configuration it runs with, its document generator
+ * and its N1QL statements.
+ *
+ * Runs without a workload file have a single unnamed phase configured by
+ * the command line. A workload file describes a sequence of named phases,
+ * each overriding command line options by their long name:
+ * <pre>
+ * {"phases": [
+ *   {"name": "load", "phase": "load"},
+ *   {"name": "warm", "op-mix": "get=100", "duration": 60},
+ *   {"name": "steady", "op-mix": "get=70,set=30", "key-distribution": "zipfian",
+ *    "target-ops": 50000, "num-threads": 16, "duration": 600},
+ *   {"name": "spike", "op-mix": "get=70,set=30", "target-ops": 150000, "num-ops": 9000000}
+ * ]}
+ * </pre>
+ * Flags are switched on with true. The options of the connection and the
+ * key space are shared by all phases and cannot be overridden.
+ */
+final class WorkloadPhase {
+
+  /** Options every phase shares, since the handlers stay connected between phases. */
+  private static final Set<String> SHARED_OPTIONS = new HashSet<String>(Arrays.asList(
+      RoadRunner.OPT_NODES, RoadRunner.OPT_BUCKET, RoadRunner.OPT_PASSWORD, RoadRunner.OPT_NUM_CLIENTS,
+      RoadRunner.OPT_NUM_DOCS, RoadRunner.OPT_SHARED_ENV, RoadRunner.OPT_IO_POOL_SIZE,
+      RoadRunner.OPT_COMPUTATION_POOL_SIZE, RoadRunner.OPT_KV_ENDPOINTS, RoadRunner.OPT_REQUEST_BUFFER_SIZE,
+      RoadRunner.OPT_WAIT_STRATEGY, RoadRunner.OPT_WORKLOAD_FILE, RoadRunner.OPT_REPORT_INTERVAL,
+      RoadRunner.OPT_HISTOGRAM_LOG, RoadRunner.OPT_COORDINATOR, RoadRunner.OPT_AGENTS, RoadRunner.OPT_AGENT,
+      RoadRunner.OPT_AGENT_INDEX, RoadRunner.OPT_AGENT_COUNT, RoadRunner.OPT_RESULTS_JSON,
+      RoadRunner.OPT_RESULTS_CSV, RoadRunner.OPT_KV_PORT, RoadRunner.OPT_HTTP_PORT, RoadRunner.OPT_MOCK,
+      RoadRunner.OPT_MOCK_LATENCY, RoadRunner.OPT_KEY_FORMAT, RoadRunner.OPT_METRICS_PORT));
+
+  private final String name;
+
+  private final GlobalConfig config;
+
+  private DocumentGenerator documentGenerator;
+
+  /** Picks the run phase keys of all workers, null if each walks its own slice. */
+  private KeyChooser keyChooser;
+
+  /** The first key of this process, the agent's share in a distributed run. */
+  private long keyBase;
+
+  private List<QueryTemplate> queryTemplates;
+
+  WorkloadPhase(String name, GlobalConfig config) {
+    this.name = name;
+    this.config = config;
+  }
+
+  /**
+   * Read the phases of a workload file.
+   *
+   * @param workloadFile the path of the workload file.
+   * @param args the command line the phases override.
+   * @return the phases in file order.
+   */
+  static List<WorkloadPhase> fromFile(String workloadFile, String[] args) throws IOException, ParseException {
+    return fromJson(new ObjectMapper().readTree(new File(workloadFile)), args);
+  }
+
+  static List<WorkloadPhase> fromJson(JsonNode workload, String[] args) throws ParseException {
+    JsonNode phases = workload.get("phases");
+    if (phases == null || !phases.isArray() || phases.size() == 0) {
+      throw new IllegalArgumentException("Expected a non-empty \"phases\" array in the workload file");
+    }
+    List<WorkloadPhase> parsed = new ArrayList<WorkloadPhase>();
+    for (JsonNode phase : phases) {
+      String name = phase.hasNonNull("name") ? phase.get("name").asText() : "phase-" + (parsed.size() + 1);
+      List<String> phaseArgs = new ArrayList<String>();
+      for (Iterator<Map.Entry<String, JsonNode>> fields = phase.fields(); fields.hasNext();) {
+        Map.Entry<String, JsonNode> field = fields.next();
+        if ("name".equals(field.getKey())) {
+          continue;
+        }
+        if (SHARED_OPTIONS.contains(field.getKey())) {
+          throw new IllegalArgumentException("Option \"" + field.getKey() + "\" is shared by all phases, "
+            + "set it on the command line");
+        }
+        if (field.getValue().isBoolean()) {
+          if (field.getValue().asBoolean()) {
+            phaseArgs.add("--" + field.getKey());
+          }
+        } else {
+          phaseArgs.add("--" + field.getKey());
+          phaseArgs.add(field.getValue().asText());
+        }
+      }
+      // the first occurrence of an option wins, so the phase goes before the command line
+      phaseArgs.addAll(Arrays.asList(args));
+      GlobalConfig config = new GlobalConfig(RoadRunner.parseCommandLine(
+        phaseArgs.toArray(new String[phaseArgs.size()])));
+      parsed.add(new WorkloadPhase(name, config));
+    }
+    return parsed;
+  }
+
+  /**
+   * The single phase of a run without workload file.
+   */
+  static List<WorkloadPhase> single(GlobalConfig config) {
+    return Collections.singletonList(new WorkloadPhase(null, config));
+  }
+
+  /**
+   * Create the document generator and read the statements of the phase.
+   */
+  void prepare() throws Exception {
+    if (config.getSchema().isEmpty()) {
+      this.documentGenerator = new DocumentGenerator(config.getClassName(), config.getPayloadPool());
+    } else {
+      this.documentGenerator = SchemaDocumentGenerator.fromFile(config.getSchema(), config.getPayloadPool());
+    }
+    if (!config.getQueryFile().isEmpty() && "run".equals(config.getPhase())) {
+      this.queryTemplates = QueryTemplate.fromFile(config.getQueryFile());
+    }
+    if ("run".equals(config.getPhase())) {
+      // the keys the handlers of this process were given, see WorkloadDispatcher
+      long docsPerAgent = config.getNumDocs() / config.getAgentCount();
+      long keyCount = docsPerAgent / config.getNumClients() * config.getNumClients();
+      this.keyBase = config.getAgentIndex() * docsPerAgent;
+      this.keyChooser = KeyChoosers.createShared(config.getKeyDistribution(), Math.max(keyCount, 1));
+    }
+  }
+
+  /**
+   * @return the name of the phase, null for the single phase of a run without workload file.
+   */
+  String getName() {
+    return name;
+  }
+
+  GlobalConfig getConfig() {
+    return config;
+  }
+
+  DocumentGenerator getDocumentGenerator() {
+    return documentGenerator;
+  }
+
+  /**
+   * @return the key chooser shared by the workers of the run phase, null if each walks its own slice.
+   */
+  KeyChooser getKeyChooser() {
+    return keyChooser;
+  }
+
+  long getKeyBase() {
+    return keyBase;
+  }
+
+  /**
+   * @return the N1QL statements to run next to the KV ops, null for none.
+   */
+  List<QueryTemplate> getQueryTemplates() {
+    return queryTemplates;
+  }
+
+  /**
+   * @return the name measures of the phase are recorded under.
+   */
+  String measureName(String identifier) {
+    return name == null ? identifier : name + "/" + identifier;
+  }
+}
@@ -0,0 +1,69 @@
+package com.couchbase.roadrunner.customConverter;
+
+import com.couchbase.client.core.message.kv.MutationToken;
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.java.document.AbstractDocument;
+
+/**
+ * A JSON document which keeps its content in a (reference counted) {@link ByteBuf}.
+ *
+ * Whoever holds the document owns one reference to its content and has to
+ * release it once done, both for documents built to be written and for
+ * documents returned by reads.
+ */
+public class ByteBufJsonDocument extends AbstractDocument<ByteBuf> {
+
+	/**
+	 * Creates a {@link ByteBufJsonDocument} which the document id.
+	 *
+	 * @param id the per-bucket unique document id.
+	 * @return a {@link ByteBufJsonDocument}.
+	 */
+	public static ByteBufJsonDocument create(String id) {
+		return new ByteBufJsonDocument(id, 0, null, 0, null);
+	}
+
+	/**
+	 * Creates a {@link ByteBufJsonDocument} which the document id and JSON content.
+	 *
+	 * @param id the per-bucket unique document id.
+	 * @param content the content of the document, ownership of one reference is passed to the document.
+	 * @return a {@link ByteBufJsonDocument}.
+	 */
+	public static ByteBufJsonDocument create(String id, ByteBuf content) {
+		return new ByteBufJsonDocument(id, 0, content, 0, null);
+	}
+
+	/**
+	 * Creates a {@link ByteBufJsonDocument} which the document id, JSON content, CAS value and expiration time.
+	 *
+	 * @param id the per-bucket unique document id.
+	 * @param content the content of the document.
+	 * @param cas the CAS (compare and swap) value for optimistic concurrency.
+	 * @param expiry the expiration time of the document.
+	 * @return a {@link ByteBufJsonDocument}.
+	 */
+	public static ByteBufJsonDocument create(String id, int expiry, ByteBuf content, long cas) {
+		return new ByteBufJsonDocument(id, expiry, content, cas, null);
+	}
+
+	/**
+	 * Creates a {@link ByteBufJsonDocument} which the document id, JSON content, CAS value, expiration time and
+	 * mutation token.
+	 *
+	 * @param id the per-bucket unique document id.
+	 * @param content the content of the document.
+	 * @param cas the CAS (compare and swap) value for optimistic concurrency.
+	 * @param expiry the expiration time of the document.
+	 * @param mutationToken the mutation token of the document.
+	 * @return a {@link ByteBufJsonDocument}.
+	 */
+	public static ByteBufJsonDocument create(String id, int expiry, ByteBuf content, long cas,
+											 MutationToken mutationToken) {
+		return new ByteBufJsonDocument(id, expiry, content, cas, mutationToken);
+	}
+
+	private ByteBufJsonDocument(String id, int expiry, ByteBuf content, long cas, MutationToken mutationToken) {
+		super(id, expiry, content, cas, mutationToken);
+	}
+}
@@ -0,0 +1,59 @@
+package com.couchbase.roadrunner.customConverter;
+
+import com.couchbase.client.core.lang.Tuple;
+import com.couchbase.client.core.lang.Tuple2;
+import com.couchbase.client.core.message.ResponseStatus;
+import com.couchbase.client.core.message.kv.MutationToken;
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.java.error.TranscodingException;
+import com.couchbase.client.java.transcoder.AbstractTranscoder;
+import com.couchbase.client.java.transcoder.TranscoderUtils;
+
+/**
+ * Transcodes {@link ByteBufJsonDocument}s without copying the content.
+ *
+ * Encoding hands the SDK a retained duplicate of the document content, so
+ * a pooled direct buffer can be written by many requests. Decoding keeps
+ * the response buffer instead of copying it out, the caller has to release it.
+ */
+public class ByteBufJsonTranscoder extends AbstractTranscoder<ByteBufJsonDocument, ByteBuf> {
+
+	@Override
+	protected Tuple2<ByteBuf, Integer> doEncode(ByteBufJsonDocument document) throws Exception {
+		return Tuple.create(
+				document.content().duplicate().retain(),
+				TranscoderUtils.JSON_COMPAT_FLAGS
+		);
+	}
+
+	@Override
+	protected ByteBufJsonDocument doDecode(String id, ByteBuf content, long cas, int expiry, int flags,
+										   ResponseStatus status) throws Exception {
+		if (!TranscoderUtils.hasJsonFlags(flags)) {
+			throw new TranscodingException("Flags (0x" + Integer.toHexString(flags) + ") indicate non-JSON document for "
+					+ "id " + id + ", could not decode.");
+		}
+		return newDocument(id, expiry, content, cas);
+	}
+
+	@Override
+	protected boolean shouldAutoReleaseOnDecode() {
+		return false;
+	}
+
+	@Override
+	public ByteBufJsonDocument newDocument(String id, int expiry, ByteBuf content, long cas) {
+		return ByteBufJsonDocument.create(id, expiry, content, cas);
+	}
+
+	@Override
+	public ByteBufJsonDocument newDocument(String id, int expiry, ByteBuf content, long cas,
+										   MutationToken mutationToken) {
+		return ByteBufJsonDocument.create(id, expiry, content, cas, mutationToken);
+	}
+
+	@Override
+	public Class<ByteBufJsonDocument> documentType() {
+		return ByteBufJsonDocument.class;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * An op rejected because the request ring buffer of the client was full.
+ */
+@Name("com.couchbase.roadrunner.Backpressure")
+@Label("Backpressure")
+@Category("RoadRunner")
+@Description("An op rejected by a full request ring buffer, and the delay before it is retried")
+@StackTrace(false)
+final class BackpressureEvent extends jdk.jfr.Event {
+
+	@Label("Workload")
+	String workload;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Retry")
+	@Description("The number of times the op was rejected before")
+	int retry;
+
+	@Label("Backoff")
+	@Description("The delay before the retry, -1 if the op failed")
+	@Timespan(Timespan.NANOSECONDS)
+	long backoff;
+}
@@ -0,0 +1,224 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.events;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Emits the RoadRunner events to Java Flight Recorder, so a recording shows
+ * the ops, stalls and phases of the run on the same timeline as the GC,
+ * safepoints and socket IO of the JVM.
+ *
+ * Events are only built while a recording has them enabled, the begin
+ * methods return null otherwise and the end methods ignore null. On a JVM
+ * without the Flight Recorder API nothing is emitted at all: the events are
+ * handed out as plain objects and only {@link Recorder} refers to their
+ * types, so callers still load on Java 8.
+ */
+public final class FlightRecorderEvents {
+
+	private static final boolean AVAILABLE = isAvailable();
+
+	private FlightRecorderEvents() {
+	}
+
+	private static boolean isAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Start a sampled op.
+	 *
+	 * @return the event, null if operation events are not recorded.
+	 */
+	public static Object beginOperation() {
+		return AVAILABLE ? Recorder.beginOperation() : null;
+	}
+
+	/**
+	 * Complete a sampled op.
+	 *
+	 * @param event the event of the op, may be null.
+	 * @param workload the name of the worker.
+	 * @param operation the operation type.
+	 * @param outcome the outcome of the op.
+	 * @param startNanos the {@link System#nanoTime()} its latency is taken from.
+	 */
+	public static void endOperation(Object event, String workload, String operation, String outcome,
+			long startNanos) {
+		if (event != null) {
+			Recorder.endOperation(event, workload, operation, outcome, startNanos);
+		}
+	}
+
+	/**
+	 * Start waiting for the ops in flight.
+	 *
+	 * @return the event, null if stalls are not recorded.
+	 */
+	public static Object beginStall() {
+		return AVAILABLE ? Recorder.beginStall() : null;
+	}
+
+	/**
+	 * Stop waiting for the ops in flight, the stall is only committed if it
+	 * took longer than the threshold of the recording.
+	 *
+	 * @param event the event of the stall, may be null.
+	 * @param workload the name of the worker.
+	 * @param kind "batch" or "window".
+	 * @param ops the size of the batch or window.
+	 */
+	public static void endStall(Object event, String workload, String kind, int ops) {
+		if (event != null) {
+			Recorder.endStall(event, workload, kind, ops);
+		}
+	}
+
+	/**
+	 * An op was rejected by a full request ring buffer.
+	 *
+	 * @param workload the name of the worker.
+	 * @param operation the operation type.
+	 * @param retry the number of rejections of the op before this one.
+	 * @param backoffNanos the delay before the retry, -1 if the op fails.
+	 */
+	public static void backpressure(String workload, String operation, int retry, long backoffNanos) {
+		if (AVAILABLE) {
+			Recorder.backpressure(workload, operation, retry, backoffNanos);
+		}
+	}
+
+	/**
+	 * Start a phase of the run.
+	 *
+	 * @return the event, null if phases are not recorded.
+	 */
+	public static Object beginPhase() {
+		return AVAILABLE ? Recorder.beginPhase() : null;
+	}
+
+	/**
+	 * Complete a phase of the run.
+	 *
+	 * @param event the event of the phase, may be null.
+	 * @param index the position of the phase in the run.
+	 * @param name the name of the phase, null if it has none.
+	 * @param phase load or run.
+	 * @param engine the engine the phase ran on.
+	 * @param threads the worker threads (or users) per handler.
+	 * @param ops the ops completed in the phase.
+	 */
+	public static void endPhase(Object event, int index, String name, String phase, String engine,
+			int threads, long ops) {
+		if (event != null) {
+			Recorder.endPhase(event, index, name, phase, engine, threads, ops);
+		}
+	}
+
+	/**
+	 * Builds and commits the events. It is only loaded once the Flight
+	 * Recorder API is known to be there.
+	 */
+	private static final class Recorder {
+
+		static Object beginOperation() {
+			OperationEvent event = new OperationEvent();
+			if (!event.isEnabled()) {
+				return null;
+			}
+			event.begin();
+			return event;
+		}
+
+		static void endOperation(Object handle, String workload, String operation, String outcome,
+				long startNanos) {
+			OperationEvent event = (OperationEvent) handle;
+			event.end();
+			if (event.shouldCommit()) {
+				event.workload = workload;
+				event.operation = operation;
+				event.outcome = outcome;
+				event.latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+				event.commit();
+			}
+		}
+
+		static Object beginStall() {
+			StallEvent event = new StallEvent();
+			if (!event.isEnabled()) {
+				return null;
+			}
+			event.begin();
+			return event;
+		}
+
+		static void endStall(Object handle, String workload, String kind, int ops) {
+			StallEvent event = (StallEvent) handle;
+			event.end();
+			if (event.shouldCommit()) {
+				event.workload = workload;
+				event.kind = kind;
+				event.ops = ops;
+				event.commit();
+			}
+		}
+
+		static void backpressure(String workload, String operation, int retry, long backoffNanos) {
+			BackpressureEvent event = new BackpressureEvent();
+			if (event.shouldCommit()) {
+				event.workload = workload;
+				event.operation = operation;
+				event.retry = retry;
+				event.backoff = backoffNanos;
+				event.commit();
+			}
+		}
+
+		static Object beginPhase() {
+			PhaseEvent event = new PhaseEvent();
+			if (!event.isEnabled()) {
+				return null;
+			}
+			event.begin();
+			return event;
+		}
+
+		static void endPhase(Object handle, int index, String name, String phase, String engine,
+				int threads, long ops) {
+			PhaseEvent event = (PhaseEvent) handle;
+			event.end();
+			if (event.shouldCommit()) {
+				event.index = index;
+				event.name = name;
+				event.phase = phase;
+				event.engine = engine;
+				event.threads = threads;
+				event.ops = ops;
+				event.commit();
+			}
+		}
+	}
+}
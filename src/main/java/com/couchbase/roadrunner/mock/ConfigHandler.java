@@ -0,0 +1,92 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.mock;
+
+import java.nio.charset.StandardCharsets;
+
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.Unpooled;
+import com.couchbase.client.deps.io.netty.channel.ChannelFutureListener;
+import com.couchbase.client.deps.io.netty.channel.ChannelHandlerContext;
+import com.couchbase.client.deps.io.netty.channel.SimpleChannelInboundHandler;
+import com.couchbase.client.deps.io.netty.handler.codec.http.DefaultFullHttpResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.http.DefaultHttpContent;
+import com.couchbase.client.deps.io.netty.handler.codec.http.DefaultHttpResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.http.FullHttpRequest;
+import com.couchbase.client.deps.io.netty.handler.codec.http.FullHttpResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpHeaders;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpResponse;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpResponseStatus;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpVersion;
+
+/**
+ * Serves the bucket config over HTTP, for clients which bootstrap without
+ * the carrier config: once on the terse and verbose config URIs, and as a
+ * never ending stream (the config never changes) on the streaming ones.
+ */
+final class ConfigHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+	/** Separates the configs of a streaming response. */
+	private static final String STREAM_DELIMITER = "\n\n\n\n";
+
+	private final MockCluster cluster;
+
+	ConfigHandler(MockCluster cluster) {
+		this.cluster = cluster;
+	}
+
+	@Override
+	protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+		String path = request.getUri();
+		int query = path.indexOf('?');
+		if (query >= 0) {
+			path = path.substring(0, query);
+		}
+		String bucket = cluster.getBucket();
+		if (path.equals("/pools/default/b/" + bucket) || path.equals("/pools/default/buckets/" + bucket)) {
+			ByteBuf content = Unpooled.copiedBuffer(config(), StandardCharsets.UTF_8);
+			FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+			response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+			response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, content.readableBytes());
+			ctx.writeAndFlush(response);
+		} else if (path.equals("/pools/default/bs/" + bucket)
+				|| path.equals("/pools/default/bucketsStreaming/" + bucket)) {
+			HttpResponse response = new DefaultHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK);
+			response.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
+			response.headers().set(HttpHeaders.Names.TRANSFER_ENCODING, HttpHeaders.Values.CHUNKED);
+			ctx.write(response);
+			ctx.writeAndFlush(new DefaultHttpContent(
+					Unpooled.copiedBuffer(config() + STREAM_DELIMITER, StandardCharsets.UTF_8)));
+		} else {
+			FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.NOT_FOUND);
+			response.headers().set(HttpHeaders.Names.CONTENT_LENGTH, 0);
+			ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+		}
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+		ctx.close();
+	}
+
+	private String config() {
+		return cluster.bucketConfig(cluster.getHost());
+	}
+}
@@ -0,0 +1,247 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.channel.ChannelHandlerContext;
+import com.couchbase.client.deps.io.netty.channel.ChannelInboundHandlerAdapter;
+import com.couchbase.client.deps.io.netty.util.ReferenceCountUtil;
+
+/**
+ * Serves the key/value operations of the Java SDK over the memcached binary
+ * protocol: the SASL and HELLO handshake, the carrier config, and the
+ * document operations on top of the {@link OffHeapStore}.
+ *
+ * Every request arrives as one frame (see {@link MockCluster}). Without
+ * artificial latency the responses are flushed once per read batch, with it
+ * they are written after the latency on the event loop, which keeps them in
+ * order.
+ */
+final class MemcachedHandler extends ChannelInboundHandlerAdapter {
+
+	static final int HEADER_SIZE = 24;
+
+	private static final byte REQUEST_MAGIC = (byte) 0x80;
+	private static final byte RESPONSE_MAGIC = (byte) 0x81;
+
+	private static final byte GET = 0x00;
+	private static final byte SET = 0x01;
+	private static final byte ADD = 0x02;
+	private static final byte REPLACE = 0x03;
+	private static final byte DELETE = 0x04;
+	private static final byte INCREMENT = 0x05;
+	private static final byte DECREMENT = 0x06;
+	private static final byte NOOP = 0x0a;
+	private static final byte APPEND = 0x0e;
+	private static final byte PREPEND = 0x0f;
+	private static final byte STAT = 0x10;
+	private static final byte TOUCH = 0x1c;
+	private static final byte GET_AND_TOUCH = 0x1d;
+	private static final byte HELLO = 0x1f;
+	private static final byte SASL_LIST_MECHS = 0x20;
+	private static final byte SASL_AUTH = 0x21;
+	private static final byte SASL_STEP = 0x22;
+	private static final byte GET_LOCKED = (byte) 0x94;
+	private static final byte UNLOCK = (byte) 0x95;
+	private static final byte GET_CLUSTER_CONFIG = (byte) 0xb5;
+
+	private static final short SUCCESS = 0x00;
+	private static final short KEY_NOT_FOUND = 0x01;
+	private static final short KEY_EXISTS = 0x02;
+	private static final short NOT_STORED = 0x05;
+	private static final short DELTA_BAD_VALUE = 0x06;
+	private static final short UNKNOWN_COMMAND = 0x81;
+	private static final short TEMPORARY_FAILURE = 0x86;
+
+	/** A counter expiry which means not to create the counter. */
+	private static final int NO_CREATE = 0xffffffff;
+
+	private static final byte[] MECHANISMS = "PLAIN".getBytes(StandardCharsets.UTF_8);
+
+	private final MockCluster cluster;
+
+	private final OffHeapStore store;
+
+	private final long latencyNanos;
+
+	MemcachedHandler(MockCluster cluster) {
+		this.cluster = cluster;
+		this.store = cluster.getStore();
+		this.latencyNanos = cluster.getLatencyNanos();
+	}
+
+	@Override
+	public void channelRead(ChannelHandlerContext ctx, Object msg) {
+		ByteBuf request = (ByteBuf) msg;
+		try {
+			ByteBuf response = handle(ctx, request);
+			if (response == null) {
+				return;
+			} else if (latencyNanos > 0) {
+				ctx.executor().schedule(() -> ctx.writeAndFlush(response), latencyNanos, TimeUnit.NANOSECONDS);
+			} else {
+				ctx.write(response);
+			}
+		} finally {
+			ReferenceCountUtil.release(request);
+		}
+	}
+
+	@Override
+	public void channelReadComplete(ChannelHandlerContext ctx) {
+		ctx.flush();
+	}
+
+	@Override
+	public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+		ctx.close();
+	}
+
+	private ByteBuf handle(ChannelHandlerContext ctx, ByteBuf request) {
+		if (request.getByte(0) != REQUEST_MAGIC) {
+			ctx.close();
+			return null;
+		}
+		byte opcode = request.getByte(1);
+		int keyLength = request.getUnsignedShort(2);
+		int extrasLength = request.getUnsignedByte(4);
+		int bodyLength = request.getInt(8);
+		int opaque = request.getInt(12);
+		long cas = request.getLong(16);
+		ByteBuf extras = request.slice(HEADER_SIZE, extrasLength);
+		ByteBuf key = request.slice(HEADER_SIZE + extrasLength, keyLength);
+		int valueOffset = HEADER_SIZE + extrasLength + keyLength;
+		ByteBuf value = request.slice(valueOffset, bodyLength - extrasLength - keyLength);
+
+		ByteBuf response = ctx.alloc().buffer();
+		response.writerIndex(HEADER_SIZE);
+		long result;
+		switch (opcode) {
+			case GET:
+			case GET_AND_TOUCH:
+			case GET_LOCKED:
+				int expiry = extrasLength >= 4 ? extras.getInt(0) : 0;
+				result = opcode == GET_AND_TOUCH ? store.touch(key, expiry) : 0;
+				if (result >= 0) {
+					result = store.read(key, response, opcode == GET_LOCKED ? Math.max(expiry, 1) : 0);
+				}
+				return result < 0 && result != OffHeapStore.LOCKED_CAS
+						? error(response, opcode, opaque, result)
+						: header(response, opcode, SUCCESS, 4, 0, opaque, result);
+			case SET:
+			case ADD:
+			case REPLACE:
+				result = store.store(mode(opcode), key, value, extras.getInt(0), extras.getInt(4), cas);
+				return mutation(response, opcode, opaque, result);
+			case APPEND:
+			case PREPEND:
+				result = store.store(mode(opcode), key, value, 0, 0, cas);
+				return mutation(response, opcode, opaque, result);
+			case DELETE:
+				return mutation(response, opcode, opaque, store.remove(key, cas));
+			case TOUCH:
+				return mutation(response, opcode, opaque, store.touch(key, extras.getInt(0)));
+			case UNLOCK:
+				return mutation(response, opcode, opaque, store.unlock(key, cas));
+			case INCREMENT:
+			case DECREMENT:
+				long delta = extras.getLong(0);
+				int counterExpiry = extras.getInt(16);
+				result = store.counter(key, opcode == INCREMENT ? delta : -delta, extras.getLong(8),
+						counterExpiry != NO_CREATE, counterExpiry == NO_CREATE ? 0 : counterExpiry, response);
+				return result < 0
+						? error(response, opcode, opaque, result)
+						: header(response, opcode, SUCCESS, 0, 0, opaque, result);
+			case NOOP:
+			case HELLO:
+			case SASL_AUTH:
+			case SASL_STEP:
+			case STAT:
+				return header(response, opcode, SUCCESS, 0, 0, opaque, 0);
+			case SASL_LIST_MECHS:
+				response.writeBytes(MECHANISMS);
+				return header(response, opcode, SUCCESS, 0, 0, opaque, 0);
+			case GET_CLUSTER_CONFIG:
+				response.writeBytes(cluster.bucketConfig("$HOST").getBytes(StandardCharsets.UTF_8));
+				return header(response, opcode, SUCCESS, 0, 0, opaque, 0);
+			default:
+				return header(response, opcode, UNKNOWN_COMMAND, 0, 0, opaque, 0);
+		}
+	}
+
+	private static OffHeapStore.Mode mode(byte opcode) {
+		switch (opcode) {
+			case SET:
+				return OffHeapStore.Mode.SET;
+			case ADD:
+				return OffHeapStore.Mode.ADD;
+			case REPLACE:
+				return OffHeapStore.Mode.REPLACE;
+			case APPEND:
+				return OffHeapStore.Mode.APPEND;
+			default:
+				return OffHeapStore.Mode.PREPEND;
+		}
+	}
+
+	private static ByteBuf mutation(ByteBuf response, byte opcode, int opaque, long result) {
+		return result < 0
+				? error(response, opcode, opaque, result)
+				: header(response, opcode, SUCCESS, 0, 0, opaque, result);
+	}
+
+	private static ByteBuf error(ByteBuf response, byte opcode, int opaque, long result) {
+		short status;
+		if (result == OffHeapStore.NOT_FOUND) {
+			status = KEY_NOT_FOUND;
+		} else if (result == OffHeapStore.EXISTS) {
+			status = KEY_EXISTS;
+		} else if (result == OffHeapStore.NOT_STORED) {
+			status = NOT_STORED;
+		} else if (result == OffHeapStore.BAD_VALUE) {
+			status = DELTA_BAD_VALUE;
+		} else {
+			status = TEMPORARY_FAILURE;
+		}
+		response.writerIndex(HEADER_SIZE);
+		return header(response, opcode, status, 0, 0, opaque, 0);
+	}
+
+	/**
+	 * Fill in the header of a response whose extras, key and value have been
+	 * written after it.
+	 */
+	private static ByteBuf header(ByteBuf response, byte opcode, short status, int extrasLength, int keyLength,
+								  int opaque, long cas) {
+		response.setByte(0, RESPONSE_MAGIC);
+		response.setByte(1, opcode);
+		response.setShort(2, keyLength);
+		response.setByte(4, extrasLength);
+		response.setByte(5, 0);
+		response.setShort(6, status);
+		response.setInt(8, response.writerIndex() - HEADER_SIZE);
+		response.setInt(12, opaque);
+		response.setLong(16, cas);
+		return response;
+	}
+}
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.mock;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.deps.io.netty.bootstrap.ServerBootstrap;
+import com.couchbase.client.deps.io.netty.buffer.PooledByteBufAllocator;
+import com.couchbase.client.deps.io.netty.channel.Channel;
+import com.couchbase.client.deps.io.netty.channel.ChannelInitializer;
+import com.couchbase.client.deps.io.netty.channel.ChannelOption;
+import com.couchbase.client.deps.io.netty.channel.EventLoopGroup;
+import com.couchbase.client.deps.io.netty.channel.nio.NioEventLoopGroup;
+import com.couchbase.client.deps.io.netty.channel.socket.SocketChannel;
+import com.couchbase.client.deps.io.netty.channel.socket.nio.NioServerSocketChannel;
+import com.couchbase.client.deps.io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpObjectAggregator;
+import com.couchbase.client.deps.io.netty.handler.codec.http.HttpServerCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single node stand-in for a Couchbase cluster with one bucket, good
+ * enough for the Java SDK to bootstrap against and run the key/value
+ * workloads. It measures the load generator and the client rather than a
+ * server: documents are kept off-heap in an {@link OffHeapStore}, and every
+ * response can be held back by a fixed artificial latency.
+ *
+ * Views, N1QL, replicas and sub-document operations are not served.
+ */
+public class MockCluster {
+
+	private static final Logger LOGGER =
+			LoggerFactory.getLogger(MockCluster.class.getName());
+
+	private static final String HOST = "127.0.0.1";
+
+	private static final int NUM_VBUCKETS = 1024;
+
+	/** Room for the largest document the server takes, plus the header. */
+	private static final int MAX_FRAME_SIZE = 32 * 1024 * 1024;
+
+	private static final int STORE_SEGMENTS = 64;
+
+	private final String bucket;
+
+	private final long latencyNanos;
+
+	private final OffHeapStore store;
+
+	private final String uuid;
+
+	private EventLoopGroup group;
+
+	private Channel kvChannel;
+
+	private Channel httpChannel;
+
+	/**
+	 * @param bucket the name of the bucket to serve.
+	 * @param latencyMicros the artificial latency of every key/value response.
+	 */
+	public MockCluster(String bucket, long latencyMicros) {
+		this.bucket = bucket;
+		this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+		this.store = new OffHeapStore(STORE_SEGMENTS);
+		this.uuid = UUID.randomUUID().toString().replace("-", "");
+	}
+
+	/**
+	 * Start listening on the loopback interface.
+	 *
+	 * @param kvPort the key/value port, 0 for any free one.
+	 * @param httpPort the config port, 0 for any free one.
+	 */
+	public void start(int kvPort, int httpPort) throws InterruptedException {
+		group = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors());
+		MockCluster cluster = this;
+		kvChannel = bootstrap().childHandler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel channel) {
+				channel.pipeline()
+					.addLast(new LengthFieldBasedFrameDecoder(MAX_FRAME_SIZE, 8, 4, MemcachedHandler.HEADER_SIZE - 12, 0))
+					.addLast(new MemcachedHandler(cluster));
+			}
+		}).bind(HOST, kvPort).sync().channel();
+		httpChannel = bootstrap().childHandler(new ChannelInitializer<SocketChannel>() {
+			@Override
+			protected void initChannel(SocketChannel channel) {
+				channel.pipeline()
+					.addLast(new HttpServerCodec())
+					.addLast(new HttpObjectAggregator(MAX_FRAME_SIZE))
+					.addLast(new ConfigHandler(cluster));
+			}
+		}).bind(HOST, httpPort).sync().channel();
+		LOGGER.info("Mock cluster serving bucket \"" + bucket + "\" on " + HOST + ", key/value port " + getKvPort()
+				+ ", http port " + getHttpPort());
+	}
+
+	/**
+	 * Close all connections and stop listening.
+	 */
+	public void stop() throws InterruptedException {
+		if (group != null) {
+			group.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+			group = null;
+		}
+	}
+
+	private ServerBootstrap bootstrap() {
+		return new ServerBootstrap()
+			.group(group)
+			.channel(NioServerSocketChannel.class)
+			.childOption(ChannelOption.TCP_NODELAY, true)
+			.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT);
+	}
+
+	public String getHost() {
+		return HOST;
+	}
+
+	public int getKvPort() {
+		return ((InetSocketAddress) kvChannel.localAddress()).getPort();
+	}
+
+	public int getHttpPort() {
+		return ((InetSocketAddress) httpChannel.localAddress()).getPort();
+	}
+
+	public String getBucket() {
+		return bucket;
+	}
+
+	public OffHeapStore getStore() {
+		return store;
+	}
+
+	long getLatencyNanos() {
+		return latencyNanos;
+	}
+
+	/**
+	 * The config of the bucket: a single node owning every vbucket.
+	 *
+	 * @param host the host name of the node, "$HOST" to have the client
+	 *        fill in the one it connected to.
+	 * @return the config as JSON.
+	 */
+	String bucketConfig(String host) {
+		int kvPort = getKvPort();
+		int httpPort = getHttpPort();
+		StringBuilder vbuckets = new StringBuilder();
+		for (int i = 0; i < NUM_VBUCKETS; i++) {
+			vbuckets.append(i == 0 ? "[0]" : ",[0]");
+		}
+		return "{\"rev\":1,\"name\":\"" + bucket + "\",\"uuid\":\"" + uuid + "\",\"nodeLocator\":\"vbucket\","
+				+ "\"uri\":\"/pools/default/buckets/" + bucket + "?bucket_uuid=" + uuid + "\","
+				+ "\"streamingUri\":\"/pools/default/bucketsStreaming/" + bucket + "?bucket_uuid=" + uuid + "\","
+				+ "\"bucketCapabilities\":[\"cccp\"],"
+				+ "\"nodes\":[{\"hostname\":\"" + host + ":" + httpPort + "\",\"ports\":{\"direct\":" + kvPort + "}}],"
+				+ "\"nodesExt\":[{\"hostname\":\"" + host + "\",\"thisNode\":true,"
+				+ "\"services\":{\"mgmt\":" + httpPort + ",\"kv\":" + kvPort + "}}],"
+				+ "\"vBucketServerMap\":{\"hashAlgorithm\":\"CRC\",\"numReplicas\":0,"
+				+ "\"serverList\":[\"" + host + ":" + kvPort + "\"],\"vBucketMap\":[" + vbuckets + "]}}";
+	}
+
+	/**
+	 * Run the mock cluster on its own, to benchmark against it from another
+	 * process.
+	 *
+	 * @param args the bucket, the key/value and http ports and the latency in microseconds.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		if (args.length < 3) {
+			System.err.println("Usage: MockCluster <bucket> <kv-port> <http-port> [latency-us]");
+			System.exit(1);
+		}
+		MockCluster cluster = new MockCluster(args[0], args.length > 3 ? Long.parseLong(args[3]) : 0);
+		cluster.start(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+		Thread.currentThread().join();
+	}
+}
@@ -0,0 +1,626 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.mock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.Unpooled;
+
+/**
+ * The documents of the mock cluster, kept off the heap so a large data set
+ * doesn't show up in the garbage collection of the load generator it runs
+ * next to.
+ *
+ * The store is split into segments with a lock each. A segment keeps its
+ * documents as records appended to direct memory chunks, and finds them
+ * through an open addressing hash table which also lives in direct
+ * memory. A changed document is appended as a new record, and the chunks
+ * are compacted once most of them is garbage.
+ *
+ * All operations return the new CAS of the document, or one of the
+ * negative result codes.
+ */
+public class OffHeapStore {
+
+	public static final long NOT_FOUND = Long.MIN_VALUE;
+	public static final long EXISTS = Long.MIN_VALUE + 1;
+	public static final long LOCKED = Long.MIN_VALUE + 2;
+	public static final long NOT_STORED = Long.MIN_VALUE + 3;
+	public static final long BAD_VALUE = Long.MIN_VALUE + 4;
+
+	/** The CAS of a locked document, as seen by anyone but the lock holder. */
+	public static final long LOCKED_CAS = -1;
+
+	/** Expiry times up to this many seconds are relative, larger ones are absolute. */
+	private static final int RELATIVE_EXPIRY_LIMIT = (int) TimeUnit.DAYS.toSeconds(30);
+
+	/** Locks are released after at most this many seconds. */
+	private static final int MAX_LOCK_TIME = 30;
+
+	public enum Mode { SET, ADD, REPLACE, APPEND, PREPEND }
+
+	private final Segment[] segments;
+
+	private final AtomicLong casSequence = new AtomicLong();
+
+	/**
+	 * @param segments the number of independently locked segments, a power of two.
+	 */
+	public OffHeapStore(int segments) {
+		if (Integer.bitCount(segments) != 1) {
+			throw new IllegalArgumentException("The number of segments must be a power of two, got " + segments);
+		}
+		this.segments = new Segment[segments];
+		for (int i = 0; i < segments; i++) {
+			this.segments[i] = new Segment();
+		}
+	}
+
+	/**
+	 * Store a document.
+	 *
+	 * @param mode how to store it.
+	 * @param key the document id.
+	 * @param value the content, or what to append or prepend to it.
+	 * @param flags the flags to store along, ignored when appending or prepending.
+	 * @param expiry the expiry time, ignored when appending or prepending.
+	 * @param cas the CAS the document must have, 0 for any.
+	 * @return the new CAS or a result code.
+	 */
+	public long store(Mode mode, ByteBuf key, ByteBuf value, int flags, int expiry, long cas) {
+		int hash = hash(key);
+		return segment(hash).store(mode, hash, key, value, flags, expiry, cas, casSequence.incrementAndGet());
+	}
+
+	/**
+	 * Read a document.
+	 *
+	 * @param key the document id.
+	 * @param out where to write the flags (4 bytes) followed by the content.
+	 * @param lockSeconds lock the document for this many seconds, 0 not to lock it.
+	 * @return the CAS or a result code.
+	 */
+	public long read(ByteBuf key, ByteBuf out, int lockSeconds) {
+		int hash = hash(key);
+		return segment(hash).read(hash, key, out, lockSeconds, casSequence.incrementAndGet());
+	}
+
+	/**
+	 * @return the new CAS or a result code.
+	 */
+	public long remove(ByteBuf key, long cas) {
+		int hash = hash(key);
+		return segment(hash).remove(hash, key, cas, casSequence.incrementAndGet());
+	}
+
+	/**
+	 * @return the new CAS or a result code.
+	 */
+	public long touch(ByteBuf key, int expiry) {
+		int hash = hash(key);
+		return segment(hash).touch(hash, key, expiry, casSequence.incrementAndGet());
+	}
+
+	/**
+	 * @return the CAS or a result code.
+	 */
+	public long unlock(ByteBuf key, long cas) {
+		int hash = hash(key);
+		return segment(hash).unlock(hash, key, cas);
+	}
+
+	/**
+	 * Add to a counter document, which keeps its value as decimal digits.
+	 *
+	 * @param key the document id.
+	 * @param delta what to add, negative to subtract (a counter never goes below 0).
+	 * @param initial the value of a new counter.
+	 * @param create create the counter if it doesn't exist.
+	 * @param expiry the expiry time of a new counter.
+	 * @param out where to write the new value (8 bytes).
+	 * @return the new CAS or a result code.
+	 */
+	public long counter(ByteBuf key, long delta, long initial, boolean create, int expiry, ByteBuf out) {
+		int hash = hash(key);
+		return segment(hash).counter(hash, key, delta, initial, create, expiry, out, casSequence.incrementAndGet());
+	}
+
+	/**
+	 * @return the number of documents.
+	 */
+	public long size() {
+		long size = 0;
+		for (Segment segment : segments) {
+			size += segment.size();
+		}
+		return size;
+	}
+
+	/**
+	 * @return the direct memory held by the records, including garbage.
+	 */
+	public long memoryUsed() {
+		long used = 0;
+		for (Segment segment : segments) {
+			used += segment.memoryUsed();
+		}
+		return used;
+	}
+
+	private Segment segment(int hash) {
+		return segments[(hash >>> 16) & (segments.length - 1)];
+	}
+
+	/**
+	 * Murmur3 style hash of the key bytes, never 0 or -1 since those mark
+	 * empty and removed slots.
+	 */
+	private static int hash(ByteBuf key) {
+		int h = 0x9747b28c;
+		for (int i = key.readerIndex(); i < key.writerIndex(); i++) {
+			int k = key.getByte(i) * 0xcc9e2d51;
+			k = Integer.rotateLeft(k, 15) * 0x1b873593;
+			h = Integer.rotateLeft(h ^ k, 13) * 5 + 0xe6546b64;
+		}
+		h ^= key.readableBytes();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h == Segment.EMPTY || h == Segment.REMOVED ? 1 : h;
+	}
+
+	private static long expiryMillis(int expiry, long now) {
+		if (expiry == 0) {
+			return 0;
+		}
+		return expiry <= RELATIVE_EXPIRY_LIMIT ? now + TimeUnit.SECONDS.toMillis(expiry) : TimeUnit.SECONDS.toMillis(expiry);
+	}
+
+	/**
+	 * One lock's worth of documents.
+	 */
+	private static final class Segment {
+
+		static final int EMPTY = 0;
+		static final int REMOVED = -1;
+
+		private static final int SLOT_SIZE = 12;
+		private static final int INITIAL_SLOTS = 1024;
+		private static final int CHUNK_SIZE = 1 << 20;
+
+		// record layout
+		private static final int KEY_LENGTH = 0;
+		private static final int VALUE_LENGTH = 4;
+		private static final int FLAGS = 8;
+		private static final int CAS = 12;
+		private static final int EXPIRES = 20;
+		private static final int LOCKED_UNTIL = 28;
+		private static final int HEADER = 36;
+
+		/** Slots of hash (int) and record address (long). */
+		private ByteBuffer index;
+		private int slots;
+		private int count;
+		private int removed;
+
+		private final List<ByteBuffer> chunks = new ArrayList<>();
+		private ByteBuffer current;
+		private long usedBytes;
+		private long liveBytes;
+
+		Segment() {
+			this.slots = INITIAL_SLOTS;
+			this.index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+		}
+
+		synchronized long store(Mode mode, int hash, ByteBuf key, ByteBuf value, int flags, int expiry, long cas,
+								long newCas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			long address = slot < 0 ? -1 : address(slot);
+			if (address < 0) {
+				if (mode != Mode.SET && mode != Mode.ADD) {
+					return mode == Mode.REPLACE ? NOT_FOUND : NOT_STORED;
+				} else if (cas != 0) {
+					return NOT_FOUND;
+				}
+				insert(hash, key, value, 0, value.readableBytes(), null, 0, 0, flags, expiryMillis(expiry, now), newCas);
+				return newCas;
+			}
+			long result = checkMutation(address, cas, now);
+			if (result != 0) {
+				return result;
+			} else if (mode == Mode.ADD) {
+				return EXISTS;
+			}
+			ByteBuffer chunk = chunk(address);
+			int offset = offset(address);
+			if (mode == Mode.APPEND || mode == Mode.PREPEND) {
+				int length = chunk.getInt(offset + VALUE_LENGTH);
+				int at = offset + HEADER + chunk.getInt(offset + KEY_LENGTH);
+				replace(slot, hash, key, value, mode == Mode.PREPEND ? 0 : length, length, chunk, at,
+						chunk.getInt(offset + FLAGS), chunk.getLong(offset + EXPIRES), newCas);
+			} else {
+				replace(slot, hash, key, value, 0, value.readableBytes(), null, 0, flags, expiryMillis(expiry, now), newCas);
+			}
+			return newCas;
+		}
+
+		synchronized long read(int hash, ByteBuf key, ByteBuf out, int lockSeconds, long newCas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			if (slot < 0) {
+				return NOT_FOUND;
+			}
+			ByteBuffer chunk = chunk(address(slot));
+			int offset = offset(address(slot));
+			boolean locked = chunk.getLong(offset + LOCKED_UNTIL) > now;
+			long cas = chunk.getLong(offset + CAS);
+			if (lockSeconds > 0) {
+				if (locked) {
+					return LOCKED;
+				}
+				int seconds = Math.min(lockSeconds, MAX_LOCK_TIME);
+				chunk.putLong(offset + LOCKED_UNTIL, now + TimeUnit.SECONDS.toMillis(seconds));
+				chunk.putLong(offset + CAS, newCas);
+				cas = newCas;
+			} else if (locked) {
+				cas = LOCKED_CAS;
+			}
+			out.writeInt(chunk.getInt(offset + FLAGS));
+			int valueOffset = offset + HEADER + chunk.getInt(offset + KEY_LENGTH);
+			write(chunk, valueOffset, chunk.getInt(offset + VALUE_LENGTH), out);
+			return cas;
+		}
+
+		synchronized long remove(int hash, ByteBuf key, long cas, long newCas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			if (slot < 0) {
+				return NOT_FOUND;
+			}
+			long result = checkMutation(address(slot), cas, now);
+			if (result != 0) {
+				return result;
+			}
+			free(slot);
+			return newCas;
+		}
+
+		synchronized long touch(int hash, ByteBuf key, int expiry, long newCas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			if (slot < 0) {
+				return NOT_FOUND;
+			}
+			ByteBuffer chunk = chunk(address(slot));
+			int offset = offset(address(slot));
+			if (chunk.getLong(offset + LOCKED_UNTIL) > now) {
+				return LOCKED;
+			}
+			chunk.putLong(offset + EXPIRES, expiryMillis(expiry, now));
+			chunk.putLong(offset + CAS, newCas);
+			return newCas;
+		}
+
+		synchronized long unlock(int hash, ByteBuf key, long cas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			if (slot < 0) {
+				return NOT_FOUND;
+			}
+			ByteBuffer chunk = chunk(address(slot));
+			int offset = offset(address(slot));
+			if (chunk.getLong(offset + LOCKED_UNTIL) <= now || chunk.getLong(offset + CAS) != cas) {
+				return LOCKED;
+			}
+			chunk.putLong(offset + LOCKED_UNTIL, 0);
+			return cas;
+		}
+
+		synchronized long counter(int hash, ByteBuf key, long delta, long initial, boolean create, int expiry,
+								  ByteBuf out, long newCas) {
+			long now = System.currentTimeMillis();
+			int slot = find(hash, key, now);
+			long value;
+			ByteBuf digits;
+			if (slot < 0) {
+				if (!create) {
+					return NOT_FOUND;
+				}
+				value = initial;
+				digits = ascii(value);
+				insert(hash, key, digits, 0, digits.readableBytes(), null, 0, 0, 0, expiryMillis(expiry, now), newCas);
+			} else {
+				long result = checkMutation(address(slot), 0, now);
+				if (result != 0) {
+					return result;
+				}
+				ByteBuffer chunk = chunk(address(slot));
+				int offset = offset(address(slot));
+				value = parse(chunk, offset + HEADER + chunk.getInt(offset + KEY_LENGTH), chunk.getInt(offset + VALUE_LENGTH));
+				if (value < 0) {
+					return BAD_VALUE;
+				}
+				value = delta < 0 ? Math.max(value + delta, 0) : value + delta;
+				digits = ascii(value);
+				replace(slot, hash, key, digits, 0, digits.readableBytes(), null, 0,
+						chunk.getInt(offset + FLAGS), chunk.getLong(offset + EXPIRES), newCas);
+			}
+			out.writeLong(value);
+			return newCas;
+		}
+
+		synchronized long size() {
+			return count;
+		}
+
+		synchronized long memoryUsed() {
+			return usedBytes;
+		}
+
+		/**
+		 * A mutation needs the document to be unlocked, or the CAS it was
+		 * locked with, and the given CAS if there is one.
+		 *
+		 * @return 0 if the mutation may go ahead, a result code otherwise.
+		 */
+		private long checkMutation(long address, long cas, long now) {
+			ByteBuffer chunk = chunk(address);
+			int offset = offset(address);
+			long current = chunk.getLong(offset + CAS);
+			if (chunk.getLong(offset + LOCKED_UNTIL) > now && cas != current) {
+				return LOCKED;
+			}
+			return cas != 0 && cas != current ? EXISTS : 0;
+		}
+
+		/**
+		 * @return the slot of the live document with the key, -1 if there is none.
+		 */
+		private int find(int hash, ByteBuf key, long now) {
+			int mask = slots - 1;
+			for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+				int slotHash = index.getInt(slot * SLOT_SIZE);
+				if (slotHash == EMPTY) {
+					return -1;
+				}
+				if (slotHash == hash && matches(address(slot), key)) {
+					long expires = chunk(address(slot)).getLong(offset(address(slot)) + EXPIRES);
+					if (expires != 0 && expires <= now) {
+						free(slot);
+						return -1;
+					}
+					return slot;
+				}
+			}
+		}
+
+		private boolean matches(long address, ByteBuf key) {
+			ByteBuffer chunk = chunk(address);
+			int offset = offset(address);
+			int length = key.readableBytes();
+			if (chunk.getInt(offset + KEY_LENGTH) != length) {
+				return false;
+			}
+			for (int i = 0; i < length; i++) {
+				if (chunk.get(offset + HEADER + i) != key.getByte(key.readerIndex() + i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * Append a record for a new document and index it.
+		 */
+		private void insert(int hash, ByteBuf key, ByteBuf value, int valueAt, int valueLength, ByteBuffer rest,
+							int restAt, int restLength, int flags, long expires, long cas) {
+			if ((count + removed + 1) * 4 >= slots * 3) {
+				resize();
+			}
+			long address = append(key, value, valueAt, valueLength, rest, restAt, restLength, flags, expires, cas);
+			int mask = slots - 1;
+			int slot = hash & mask;
+			while (index.getInt(slot * SLOT_SIZE) != EMPTY && index.getInt(slot * SLOT_SIZE) != REMOVED) {
+				slot = (slot + 1) & mask;
+			}
+			if (index.getInt(slot * SLOT_SIZE) == REMOVED) {
+				removed--;
+			}
+			index.putInt(slot * SLOT_SIZE, hash);
+			index.putLong(slot * SLOT_SIZE + 4, address);
+			count++;
+		}
+
+		/**
+		 * Append a new record for an existing document and point its slot at
+		 * it. The new content is the given value spliced into the rest at
+		 * valueAt, which makes appending and prepending a single copy.
+		 */
+		private void replace(int slot, int hash, ByteBuf key, ByteBuf value, int valueAt, int length, ByteBuffer rest,
+							 int restAt, int flags, long expires, long cas) {
+			liveBytes -= recordSize(address(slot));
+			long address = append(key, value, valueAt, value.readableBytes(), rest, restAt, rest == null ? 0 : length,
+					flags, expires, cas);
+			index.putLong(slot * SLOT_SIZE + 4, address);
+			compactIfWasteful();
+		}
+
+		private void free(int slot) {
+			liveBytes -= recordSize(address(slot));
+			index.putInt(slot * SLOT_SIZE, REMOVED);
+			count--;
+			removed++;
+			compactIfWasteful();
+		}
+
+		private long append(ByteBuf key, ByteBuf value, int valueAt, int valueLength, ByteBuffer rest, int restAt,
+							int restLength, int flags, long expires, long cas) {
+			int keyLength = key.readableBytes();
+			int size = HEADER + keyLength + valueLength + restLength;
+			if (current == null || current.remaining() < size) {
+				current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, size));
+				chunks.add(current);
+			}
+			int offset = current.position();
+			current.putInt(keyLength);
+			current.putInt(valueLength + restLength);
+			current.putInt(flags);
+			current.putLong(cas);
+			current.putLong(expires);
+			current.putLong(0);
+			for (int i = 0; i < keyLength; i++) {
+				current.put(key.getByte(key.readerIndex() + i));
+			}
+			// rest[0, valueAt) + value + rest[valueAt, restLength)
+			for (int i = 0; i < valueAt && rest != null; i++) {
+				current.put(rest.get(restAt + i));
+			}
+			for (int i = 0; i < valueLength; i++) {
+				current.put(value.getByte(value.readerIndex() + i));
+			}
+			for (int i = valueAt; i < restLength && rest != null; i++) {
+				current.put(rest.get(restAt + i));
+			}
+			usedBytes += size;
+			liveBytes += size;
+			return ((long) (chunks.size() - 1) << 32) | offset;
+		}
+
+		/**
+		 * Copy the live records into fresh chunks once more than half of the
+		 * memory is taken by replaced and removed documents.
+		 */
+		private void compactIfWasteful() {
+			if (usedBytes < 4L * CHUNK_SIZE || usedBytes < 2 * liveBytes) {
+				return;
+			}
+			List<ByteBuffer> old = new ArrayList<>(chunks);
+			chunks.clear();
+			current = null;
+			usedBytes = 0;
+			liveBytes = 0;
+			for (int slot = 0; slot < slots; slot++) {
+				int slotHash = index.getInt(slot * SLOT_SIZE);
+				if (slotHash != EMPTY && slotHash != REMOVED) {
+					index.putLong(slot * SLOT_SIZE + 4, copy(old, index.getLong(slot * SLOT_SIZE + 4)));
+				}
+			}
+		}
+
+		private long copy(List<ByteBuffer> from, long address) {
+			ByteBuffer chunk = from.get((int) (address >>> 32));
+			int offset = (int) address;
+			int size = HEADER + chunk.getInt(offset + KEY_LENGTH) + chunk.getInt(offset + VALUE_LENGTH);
+			if (current == null || current.remaining() < size) {
+				current = ByteBuffer.allocateDirect(Math.max(CHUNK_SIZE, size));
+				chunks.add(current);
+			}
+			int newOffset = current.position();
+			ByteBuffer record = chunk.duplicate();
+			record.limit(offset + size).position(offset);
+			current.put(record);
+			usedBytes += size;
+			liveBytes += size;
+			return ((long) (chunks.size() - 1) << 32) | newOffset;
+		}
+
+		/**
+		 * Double the index (or rehash it in place of the removed slots).
+		 */
+		private void resize() {
+			ByteBuffer old = index;
+			int oldSlots = slots;
+			if ((count + 1) * 2 >= slots) {
+				slots *= 2;
+			}
+			index = ByteBuffer.allocateDirect(slots * SLOT_SIZE);
+			removed = 0;
+			int mask = slots - 1;
+			for (int i = 0; i < oldSlots; i++) {
+				int hash = old.getInt(i * SLOT_SIZE);
+				if (hash == EMPTY || hash == REMOVED) {
+					continue;
+				}
+				int slot = hash & mask;
+				while (index.getInt(slot * SLOT_SIZE) != EMPTY) {
+					slot = (slot + 1) & mask;
+				}
+				index.putInt(slot * SLOT_SIZE, hash);
+				index.putLong(slot * SLOT_SIZE + 4, old.getLong(i * SLOT_SIZE + 4));
+			}
+		}
+
+		private long address(int slot) {
+			return index.getLong(slot * SLOT_SIZE + 4);
+		}
+
+		private ByteBuffer chunk(long address) {
+			return chunks.get((int) (address >>> 32));
+		}
+
+		private static int offset(long address) {
+			return (int) address;
+		}
+
+		private int recordSize(long address) {
+			ByteBuffer chunk = chunk(address);
+			int offset = offset(address);
+			return HEADER + chunk.getInt(offset + KEY_LENGTH) + chunk.getInt(offset + VALUE_LENGTH);
+		}
+
+		private static void write(ByteBuffer chunk, int offset, int length, ByteBuf out) {
+			ByteBuffer value = chunk.duplicate();
+			value.limit(offset + length).position(offset);
+			out.writeBytes(value);
+		}
+
+		/**
+		 * @return the decimal value, -1 if the content is no number.
+		 */
+		private static long parse(ByteBuffer chunk, int offset, int length) {
+			if (length == 0 || length > 20) {
+				return -1;
+			}
+			long value = 0;
+			for (int i = 0; i < length; i++) {
+				byte digit = chunk.get(offset + i);
+				if (digit < '0' || digit > '9') {
+					return -1;
+				}
+				value = value * 10 + (digit - '0');
+			}
+			return value;
+		}
+
+		private static ByteBuf ascii(long value) {
+			return Unpooled.copiedBuffer(Long.toString(value), StandardCharsets.US_ASCII);
+		}
+	}
+}
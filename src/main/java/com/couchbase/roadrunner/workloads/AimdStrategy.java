@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adapts the ops a worker keeps in flight the way TCP adapts its window:
+ * the limit grows by one op per limit's worth of completed ops (additive
+ * increase) and halves when an op is rejected (multiplicative decrease).
+ * A full ring buffer rejects all ops in flight at about the same time, so
+ * like TCP it halves at most once per window: only after at least a
+ * limit's worth of ops completed since the last decrease. Rejected ops
+ * are retried after a backoff.
+ *
+ * The limit is enforced when the worker issues an op, so it applies to
+ * the threaded and virtual engines. The reactive engine only backs off.
+ * Waiting goes through a lock rather than a monitor, which would pin a
+ * virtual thread to its carrier.
+ */
+public class AimdStrategy implements BackpressureStrategy {
+
+	private final int maxLimit;
+
+	private final BackpressureStrategy backoff;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition belowLimit = lock.newCondition();
+
+	private double limit;
+
+	private int inFlight;
+
+	/** Ops completed since the limit was last halved. */
+	private long completedSinceDecrease;
+
+	/**
+	 * @param maxLimit the highest the limit grows.
+	 * @param backoff the delays to retry rejected ops after.
+	 */
+	public AimdStrategy(int maxLimit, BackpressureStrategy backoff) {
+		this.maxLimit = Math.max(maxLimit, 1);
+		this.backoff = backoff;
+		this.limit = this.maxLimit;
+		this.completedSinceDecrease = this.maxLimit;
+	}
+
+	@Override
+	public void acquire() {
+		lock.lock();
+		try {
+			while (inFlight >= (int) limit) {
+				belowLimit.awaitUninterruptibly();
+			}
+			inFlight++;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void release() {
+		lock.lock();
+		try {
+			inFlight--;
+			completedSinceDecrease++;
+			limit = Math.min(limit + 1 / limit, maxLimit);
+			belowLimit.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public long backoffNanos(int retry) {
+		lock.lock();
+		try {
+			if (completedSinceDecrease >= (int) limit) {
+				limit = Math.max(limit / 2, 1);
+				completedSinceDecrease = 0;
+			}
+		} finally {
+			lock.unlock();
+		}
+		return backoff.backoffNanos(retry);
+	}
+
+	/**
+	 * @return the current limit of ops in flight.
+	 */
+	public int getLimit() {
+		lock.lock();
+		try {
+			return (int) limit;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.document.StringDocument;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import rx.Observable;
+
+/**
+ * Appends (or prepends) a short entry to a log kept next to the document,
+ * creating the log on first use so the JSON documents stay intact.
+ */
+public class AppendOperation implements Operation {
+
+	/** Suffix of the log keys. */
+	static final String KEY_SUFFIX = "::log";
+
+	private static final String ENTRY = "entry;";
+
+	private final boolean prepend;
+
+	public AppendOperation(boolean prepend) {
+		this.prepend = prepend;
+	}
+
+	@Override
+	public String getName() {
+		return prepend ? "prepend" : "append";
+	}
+
+	@Override
+	public Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key) {
+		StringDocument entry = StringDocument.create(key + KEY_SUFFIX, ENTRY);
+		return (prepend ? bucket.prepend(entry) : bucket.append(entry))
+				.onErrorResumeNext(throwable -> throwable instanceof DocumentDoesNotExistException
+						? bucket.upsert(entry)
+						: Observable.error(throwable));
+	}
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates {@link BackpressureStrategy}s from their command line description.
+ *
+ * The description is the name of the strategy, optionally followed by its
+ * parameters separated with ":":
+ * <ul>
+ *   <li>immediate: retry right away</li>
+ *   <li>backoff[:min us:max us]: retry after an exponentially growing, jittered delay</li>
+ *   <li>aimd[:min us:max us]: back off, and halve the ops in flight on every rejection</li>
+ *   <li>fail-fast: fail the op</li>
+ * </ul>
+ */
+public final class BackpressureStrategies {
+
+	/** Delay before the first retry, in microseconds. */
+	static final long DEFAULT_MIN_BACKOFF = 10;
+
+	/** Longest delay between two retries, in microseconds. */
+	static final long DEFAULT_MAX_BACKOFF = 10000;
+
+	private BackpressureStrategies() {
+	}
+
+	/**
+	 * Create the strategy for the given description.
+	 *
+	 * @param spec the strategy and its parameters.
+	 * @param maxInFlight the most ops a worker keeps in flight.
+	 * @return the strategy.
+	 */
+	public static BackpressureStrategy create(String spec, int maxInFlight) {
+		String[] parts = spec.split(":");
+		String name = parts[0].trim().toLowerCase();
+		switch (name) {
+			case "immediate":
+				return new ImmediateRetryStrategy();
+			case "backoff":
+				return backoff(parts);
+			case "aimd":
+				return new AimdStrategy(maxInFlight, backoff(parts));
+			case "fail-fast":
+				return new FailFastStrategy();
+			default:
+				throw new IllegalArgumentException("Unknown backpressure strategy: " + spec);
+		}
+	}
+
+	private static ExponentialBackoffStrategy backoff(String[] parts) {
+		return new ExponentialBackoffStrategy(
+				TimeUnit.MICROSECONDS.toNanos(parameter(parts, 1, DEFAULT_MIN_BACKOFF)),
+				TimeUnit.MICROSECONDS.toNanos(parameter(parts, 2, DEFAULT_MAX_BACKOFF)));
+	}
+
+	private static long parameter(String[] parts, int index, long defaultValue) {
+		return parts.length > index ? Long.parseLong(parts[index].trim()) : defaultValue;
+	}
+}
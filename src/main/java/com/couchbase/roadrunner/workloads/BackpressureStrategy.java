@@ -0,0 +1,52 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+/**
+ * Decides what a worker does when the request ring buffer of the client
+ * is full and an op is turned away with a backpressure error.
+ *
+ * A strategy belongs to one worker, but its methods are called from the
+ * worker thread and the callback threads alike.
+ */
+public interface BackpressureStrategy {
+
+	/** Returned by {@link #backoffNanos(int)} to fail the op instead of retrying it. */
+	long FAIL = -1;
+
+	/**
+	 * Called by the worker before it issues an op, may block to limit the
+	 * ops in flight.
+	 */
+	void acquire();
+
+	/**
+	 * Called when an op issued after {@link #acquire()} terminated.
+	 */
+	void release();
+
+	/**
+	 * An op was turned away.
+	 *
+	 * @param retry how often the op has been retried already.
+	 * @return the time to wait before retrying it in nanoseconds, or {@link #FAIL}.
+	 */
+	long backoffNanos(int retry);
+}
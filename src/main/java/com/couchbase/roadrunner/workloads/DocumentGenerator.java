@@ -1,9 +1,27 @@
 package com.couchbase.roadrunner.workloads;
 
+import java.io.IOException;
 import java.lang.reflect.Constructor;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.PooledByteBufAllocator;
+import com.couchbase.roadrunner.customConverter.ByteBufJsonDocument;
 import com.couchbase.roadrunner.customConverter.ByteJsonDocument;
 import com.couchbase.roadrunner.customConverter.JacksonConverter;
 import com.couchbase.roadrunner.sampleClasses.Device;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.DoubleNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.LongNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -12,24 +30,206 @@ public class DocumentGenerator {
 	private static final Logger LOGGER =
 			LoggerFactory.getLogger(DocumentGenerator.class.getName());
 
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/** Varied numbers are drawn below the power of ten above the rendered value, or this. */
+	private static final long VALUE_BOUND = 1000;
+
+	private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+
 	private JacksonConverter converter;
 	private String className;
+	private Constructor<?> ctor;
+
+	/** Pre-rendered payloads, or null to render a fresh one per document. */
+	private byte[][] payloads;
+
+	/** Direct buffer copies of the payloads, created on first use. */
+	private volatile ByteBuf[] bufferPayloads;
 
 	public DocumentGenerator(String className) {
+		this(className, 0);
+	}
+
+	/**
+	 * For subclasses which render documents themselves, see {@link #render()}.
+	 */
+	protected DocumentGenerator() {
+	}
+
+	/**
+	 * Create the generator.
+	 *
+	 * @param className the sample class to render documents from.
+	 * @param poolSize the number of distinct payloads to render up front, 0 to render one per document.
+	 */
+	public DocumentGenerator(String className, int poolSize) {
 		this.className = className;
 		this.converter = new JacksonConverter();
+		try {
+			//todo use config and populate class realistically
+			Class<?> clazz = Class.forName("com.couchbase.roadrunner.sampleClasses." + className);
+			this.ctor = clazz.getConstructors()[0];
+		} catch (ClassNotFoundException | RuntimeException ex) {
+			throw new IllegalArgumentException("Unable to load sample class " + className, ex);
+		}
+		preRender(poolSize);
+	}
+
+	/**
+	 * Render the payload pool, if one is wanted.
+	 *
+	 * @param poolSize the number of distinct payloads to render, 0 for none.
+	 */
+	protected void preRender(int poolSize) {
+		if (poolSize > 0) {
+			this.payloads = new byte[poolSize][];
+			for (int i = 0; i < poolSize; i++) {
+				this.payloads[i] = render(i);
+			}
+			LOGGER.info("Pre-rendered " + poolSize + " payloads");
+		}
 	}
 
 	public ByteJsonDocument getDocument(String id) {
+		if (payloads != null) {
+			return ByteJsonDocument.create(id, payloads[ThreadLocalRandom.current().nextInt(payloads.length)]);
+		}
+		return ByteJsonDocument.create(id, render());
+	}
+
+	/**
+	 * Returns a document backed by a pooled direct buffer.
+	 *
+	 * The caller owns one reference to the content and has to release it once
+	 * the operation is done. With a payload pool the content is a duplicate
+	 * of a shared buffer, so nothing is rendered or copied per document.
+	 *
+	 * @param id the document id.
+	 * @return the document.
+	 */
+	public ByteBufJsonDocument getBufferDocument(String id) {
+		if (payloads != null) {
+			ByteBuf[] buffers = getBufferPayloads();
+			ByteBuf shared = buffers[ThreadLocalRandom.current().nextInt(buffers.length)];
+			return ByteBufJsonDocument.create(id, shared.duplicate().retain());
+		}
+		return ByteBufJsonDocument.create(id, toDirectBuffer(render()));
+	}
+
+	private ByteBuf[] getBufferPayloads() {
+		ByteBuf[] buffers = bufferPayloads;
+		if (buffers == null) {
+			synchronized (this) {
+				buffers = bufferPayloads;
+				if (buffers == null) {
+					buffers = new ByteBuf[payloads.length];
+					for (int i = 0; i < payloads.length; i++) {
+						buffers[i] = toDirectBuffer(payloads[i]);
+					}
+					bufferPayloads = buffers;
+				}
+			}
+		}
+		return buffers;
+	}
+
+	/**
+	 * Release the direct buffer copies of the payloads once the phase is
+	 * done. Documents still in flight hold their own references, so their
+	 * buffers are only freed once those are released as well.
+	 */
+	public synchronized void close() {
+		ByteBuf[] buffers = bufferPayloads;
+		bufferPayloads = null;
+		if (buffers != null) {
+			for (ByteBuf buffer : buffers) {
+				buffer.release();
+			}
+		}
+	}
+
+	private static ByteBuf toDirectBuffer(byte[] content) {
+		ByteBuf buffer = PooledByteBufAllocator.DEFAULT.directBuffer(content.length);
+		buffer.writeBytes(content);
+		return buffer;
+	}
+
+	/**
+	 * Render a single payload.
+	 *
+	 * @return the payload.
+	 */
+	protected byte[] render() {
+		try {
+			Object instance = ctor.newInstance();
+			return this.converter.toBytes(instance);
+		} catch (ReflectiveOperationException ex) {
+			throw new IllegalStateException("Unable to create an instance of " + className, ex);
+		}
+	}
+
+	/**
+	 * Render the given payload of the pool. Instances of a sample class
+	 * barely differ, so the values of the rendered document are replaced
+	 * with ones seeded by the slot: every slot gets distinct content of the
+	 * same shape and size.
+	 *
+	 * @param slot the index of the payload in the pool.
+	 * @return the payload.
+	 */
+	protected byte[] render(int slot) {
+		Random random = new Random(slot);
 		try {
-				//todo use config and populate class realistically
-				Class<?> clazz = Class.forName("com.couchbase.roadrunner.sampleClasses." + className);
-				Constructor<?> ctor = clazz.getConstructors()[0];
-				Object instance = ctor.newInstance();
-				return ByteJsonDocument.create(id, this.converter.toBytes(instance));
-			} catch (Exception ex) {
-				LOGGER.error("Unable to generate document " + ex);
-		}
-		return null;
+			JsonNode document = MAPPER.readTree(render());
+			return MAPPER.writeValueAsBytes(vary(document, random));
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to vary the document of " + className, ex);
+		}
+	}
+
+	/**
+	 * Only the magnitude of a rendered value bounds its varied ones, so a
+	 * slot renders the same content even if the sample class doesn't.
+	 */
+	private static long bound(long value) {
+		long bound = VALUE_BOUND;
+		while (bound <= value && bound <= Long.MAX_VALUE / 10) {
+			bound *= 10;
+		}
+		return bound;
+	}
+
+	private static JsonNode vary(JsonNode value, Random random) {
+		if (value.isObject()) {
+			ObjectNode varied = MAPPER.createObjectNode();
+			Iterator<Map.Entry<String, JsonNode>> fields = value.fields();
+			while (fields.hasNext()) {
+				Map.Entry<String, JsonNode> field = fields.next();
+				varied.set(field.getKey(), vary(field.getValue(), random));
+			}
+			return varied;
+		} else if (value.isArray()) {
+			ArrayNode varied = MAPPER.createArrayNode();
+			for (JsonNode element : value) {
+				varied.add(vary(element, random));
+			}
+			return varied;
+		} else if (value.isIntegralNumber()) {
+			long varied = (long) (random.nextDouble() * bound(Math.abs(value.asLong())));
+			return value.canConvertToInt() && varied <= Integer.MAX_VALUE
+					? IntNode.valueOf((int) varied) : LongNode.valueOf(varied);
+		} else if (value.isNumber()) {
+			return DoubleNode.valueOf(random.nextDouble() * bound((long) Math.abs(value.asDouble())));
+		} else if (value.isTextual()) {
+			char[] text = value.asText().toCharArray();
+			for (int i = 0; i < text.length; i++) {
+				text[i] = ALPHABET.charAt(random.nextInt(ALPHABET.length()));
+			}
+			return TextNode.valueOf(new String(text));
+		} else if (value.isBoolean()) {
+			return BooleanNode.valueOf(random.nextBoolean());
+		}
+		return value;
 	}
 }
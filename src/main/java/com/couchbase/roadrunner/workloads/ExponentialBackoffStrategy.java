@@ -0,0 +1,61 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries a rejected op after a delay which doubles with every retry, up
+ * to a maximum. The delay is picked at random between the minimum and the
+ * current bound, so the ops rejected together don't all come back at
+ * once.
+ */
+public class ExponentialBackoffStrategy implements BackpressureStrategy {
+
+	private final long minNanos;
+
+	private final long maxNanos;
+
+	/**
+	 * @param minNanos the delay before the first retry.
+	 * @param maxNanos the longest delay between two retries.
+	 */
+	public ExponentialBackoffStrategy(long minNanos, long maxNanos) {
+		if (minNanos <= 0 || maxNanos < minNanos) {
+			throw new IllegalArgumentException("The backoff needs 0 < min <= max, got " + minNanos + " and " + maxNanos);
+		}
+		this.minNanos = minNanos;
+		this.maxNanos = maxNanos;
+	}
+
+	@Override
+	public void acquire() {
+	}
+
+	@Override
+	public void release() {
+	}
+
+	@Override
+	public long backoffNanos(int retry) {
+		long bound = retry < Long.SIZE && minNanos <= maxNanos >> retry ? minNanos << retry : maxNanos;
+		return ThreadLocalRandom.current().nextLong(minNanos, bound + 1);
+	}
+}
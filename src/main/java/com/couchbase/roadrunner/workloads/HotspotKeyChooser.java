@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Sends a given fraction of the ops to a given fraction of the keys at the
+ * start of the range, and spreads the rest uniformly over the other keys.
+ */
+public class HotspotKeyChooser implements KeyChooser {
+
+	private final long keyCount;
+
+	private final long hotKeys;
+
+	private final double hotOpFraction;
+
+	/**
+	 * @param keyCount the number of keys.
+	 * @param hotKeyFraction the fraction of the keys which are hot (0-1).
+	 * @param hotOpFraction the fraction of the ops which go to the hot keys (0-1).
+	 */
+	public HotspotKeyChooser(long keyCount, double hotKeyFraction, double hotOpFraction) {
+		if (hotKeyFraction < 0 || hotKeyFraction > 1 || hotOpFraction < 0 || hotOpFraction > 1) {
+			throw new IllegalArgumentException("Hotspot fractions must be between 0 and 1");
+		}
+		this.keyCount = keyCount;
+		this.hotKeys = Math.max(1, Math.min(keyCount, (long) (keyCount * hotKeyFraction)));
+		this.hotOpFraction = hotOpFraction;
+	}
+
+	@Override
+	public long nextKey(long opNumber) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (hotKeys == keyCount || random.nextDouble() < hotOpFraction) {
+			return random.nextLong(hotKeys);
+		}
+		return hotKeys + random.nextLong(keyCount - hotKeys);
+	}
+}
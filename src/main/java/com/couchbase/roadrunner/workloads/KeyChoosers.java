@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+/**
+ * Creates {@link KeyChooser}s from their command line description.
+ *
+ * The description is the name of the distribution, optionally followed by
+ * its parameters separated with ":":
+ * <ul>
+ *   <li>sequential</li>
+ *   <li>uniform</li>
+ *   <li>zipfian[:theta]</li>
+ *   <li>scrambled[:theta]</li>
+ *   <li>latest[:theta]</li>
+ *   <li>hotspot[:hot key fraction:hot op fraction], e.g. hotspot:0.2:0.8</li>
+ * </ul>
+ */
+public final class KeyChoosers {
+
+	private KeyChoosers() {
+	}
+
+	/**
+	 * Create the chooser for the given description.
+	 *
+	 * @param spec the distribution and its parameters.
+	 * @param keyCount the number of keys to choose from.
+	 * @return the key chooser.
+	 */
+	public static KeyChooser create(String spec, long keyCount) {
+		String[] parts = spec.split(":");
+		String name = parts[0].trim().toLowerCase();
+		switch (name) {
+			case "sequential":
+				return new SequentialKeyChooser(keyCount);
+			case "uniform":
+				return new UniformKeyChooser(keyCount);
+			case "zipfian":
+				return new ZipfianKeyChooser(keyCount, parameter(parts, 1, ZipfianKeyChooser.DEFAULT_THETA));
+			case "scrambled":
+				return new ScrambledZipfianKeyChooser(keyCount, parameter(parts, 1, ZipfianKeyChooser.DEFAULT_THETA));
+			case "latest":
+				return new LatestKeyChooser(keyCount, parameter(parts, 1, ZipfianKeyChooser.DEFAULT_THETA));
+			case "hotspot":
+				return new HotspotKeyChooser(keyCount, parameter(parts, 1, 0.2), parameter(parts, 2, 0.8));
+			default:
+				throw new IllegalArgumentException("Unknown key distribution: " + spec);
+		}
+	}
+
+	/**
+	 * Create the chooser all workers of a phase share, so the distribution
+	 * covers the whole key space instead of repeating within every
+	 * worker's slice.
+	 *
+	 * @param spec the distribution and its parameters.
+	 * @param keyCount the number of keys of the phase.
+	 * @return the key chooser, null for sequential, which walks every worker through its own slice.
+	 */
+	public static KeyChooser createShared(String spec, long keyCount) {
+		if ("sequential".equals(spec.split(":")[0].trim().toLowerCase())) {
+			return null;
+		}
+		return create(spec, keyCount);
+	}
+
+	private static double parameter(String[] parts, int index, double defaultValue) {
+		return parts.length > index ? Double.parseDouble(parts[index]) : defaultValue;
+	}
+}
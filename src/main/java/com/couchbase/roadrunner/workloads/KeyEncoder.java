@@ -0,0 +1,162 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Turns key indexes into document ids without going through a
+ * StringBuilder: the prefix is encoded once, the digits are written into a
+ * reused buffer behind it, and the id is created from the buffer in a
+ * single copy.
+ *
+ * An encoder is not thread safe, every worker has its own.
+ *
+ * The formats are
+ * <ul>
+ *   <li>padded: the index in decimal, zero-padded to {@link #DIGITS} digits</li>
+ *   <li>hashed: the index scrambled by a 64 bit mix function, in 16 hex
+ *       digits, so neighbouring keys don't share long common prefixes</li>
+ * </ul>
+ * Both are fixed width and map distinct indexes to distinct ids.
+ */
+public final class KeyEncoder {
+
+	/** Width of the padded indexes, wider ones take as many digits as they need. */
+	public static final int DIGITS = 10;
+
+	private static final int HEX_DIGITS = 16;
+
+	/** Longest decimal long, without sign. */
+	private static final int MAX_DIGITS = 19;
+
+	private static final byte[] DIGIT_PAIRS = new byte[200];
+
+	private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for (int i = 0; i < 100; i++) {
+			DIGIT_PAIRS[i * 2] = (byte) ('0' + i / 10);
+			DIGIT_PAIRS[i * 2 + 1] = (byte) ('0' + i % 10);
+		}
+	}
+
+	private final byte[] buffer;
+
+	private final int prefixLength;
+
+	private final boolean hashed;
+
+	/** Latin-1 for an ASCII prefix, which makes creating the id a plain copy. */
+	private final Charset charset;
+
+	/**
+	 * Create the encoder for the given format.
+	 *
+	 * @param prefix the prefix of all ids.
+	 * @param format padded or hashed.
+	 * @return the key encoder.
+	 */
+	public static KeyEncoder create(String prefix, String format) {
+		switch (format.trim().toLowerCase()) {
+			case "padded":
+				return new KeyEncoder(prefix, false);
+			case "hashed":
+				return new KeyEncoder(prefix, true);
+			default:
+				throw new IllegalArgumentException("Unknown key format: " + format);
+		}
+	}
+
+	KeyEncoder(String prefix, boolean hashed) {
+		byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+		this.prefixLength = prefixBytes.length;
+		this.buffer = new byte[prefixLength + Math.max(MAX_DIGITS, HEX_DIGITS)];
+		System.arraycopy(prefixBytes, 0, buffer, 0, prefixLength);
+		this.hashed = hashed;
+		this.charset = prefixBytes.length == prefix.length() ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * @param index the key index, not negative.
+	 * @return the document id.
+	 */
+	public String encode(long index) {
+		return new String(buffer, 0, write(index), charset);
+	}
+
+	/**
+	 * Write the id of the key index into the buffer.
+	 *
+	 * @return the length of the id.
+	 */
+	private int write(long index) {
+		if (hashed) {
+			long hash = mix(index);
+			int end = prefixLength + HEX_DIGITS;
+			for (int i = end - 1; i >= prefixLength; i--) {
+				buffer[i] = HEX[(int) (hash & 0xf)];
+				hash >>>= 4;
+			}
+			return end;
+		}
+		int end = prefixLength + Math.max(DIGITS, digits(index));
+		int position = end;
+		long value = index;
+		while (value >= 100) {
+			int pair = (int) (value % 100) * 2;
+			value /= 100;
+			buffer[--position] = DIGIT_PAIRS[pair + 1];
+			buffer[--position] = DIGIT_PAIRS[pair];
+		}
+		int pair = (int) value * 2;
+		buffer[--position] = DIGIT_PAIRS[pair + 1];
+		if (value >= 10) {
+			buffer[--position] = DIGIT_PAIRS[pair];
+		}
+		while (position > prefixLength) {
+			buffer[--position] = '0';
+		}
+		return end;
+	}
+
+	private static int digits(long value) {
+		int digits = 1;
+		for (long bound = 10; value >= bound && digits < MAX_DIGITS; bound *= 10) {
+			digits++;
+		}
+		return digits;
+	}
+
+	/**
+	 * The 64 bit finalizer of MurmurHash3, a bijection, so distinct indexes
+	 * keep distinct ids.
+	 */
+	static long mix(long value) {
+		long h = value;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,47 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Favours the latest keys: a zipfian distance is taken back from a position
+ * which moves on by one key with every op of all the workers sharing the
+ * chooser, so the keys just passed are the most popular ones.
+ */
+public class LatestKeyChooser implements KeyChooser {
+
+	private final long keyCount;
+
+	private final ZipfianKeyChooser zipfian;
+
+	private final AtomicLong position;
+
+	public LatestKeyChooser(long keyCount, double theta) {
+		this.keyCount = keyCount;
+		this.zipfian = new ZipfianKeyChooser(keyCount, theta);
+		this.position = new AtomicLong();
+	}
+
+	@Override
+	public long nextKey(long opNumber) {
+		return Math.floorMod(position.getAndIncrement() - zipfian.nextKey(opNumber), keyCount);
+	}
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import com.couchbase.client.java.AsyncBucket;
+import rx.Observable;
+
+/**
+ * A kind of operation of the run phase mix.
+ *
+ * Implementations are shared by all workers of a run, so they must be
+ * thread-safe. The returned observable must not do any work before it is
+ * subscribed: it is resubscribed when the client pushes back. Custom
+ * operations are named by their class in the mix and need a public no-arg
+ * constructor.
+ */
+public interface Operation {
+
+	/**
+	 * @return the name latencies of this operation are recorded under.
+	 */
+	String getName();
+
+	/**
+	 * Run the operation against a document.
+	 *
+	 * @param bucket the bucket to run against.
+	 * @param documents the generator for document contents.
+	 * @param key the document id.
+	 * @return the pending operation.
+	 */
+	Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key);
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.couchbase.roadrunner.GlobalConfig;
+
+/**
+ * Picks the operation of each run phase op according to the weights of the
+ * mix, so the kinds interleave instead of running in blocks.
+ *
+ * The mix is given as comma separated "name=weight" pairs, for example
+ * "get=70,replace=20,counter=10". Names are the built-in operations (set,
+ * get, replace, remove, touch, counter, append, prepend, get-and-lock,
+ * get-replica), a single sub-document operation ("subdoc-get", ...),
+ * "subdoc" for the whole sub-document mix, or the class name of a custom
+ * {@link Operation}.
+ *
+ * Picking uses Vose's alias method over {@link ThreadLocalRandom}, so it
+ * takes two random numbers per op regardless of the number of operations
+ * and never contends between threads.
+ */
+public class OperationMix {
+
+	private final Operation[] operations;
+
+	private final double[] probability;
+
+	private final int[] alias;
+
+	/**
+	 * Create the mix from weighted operations.
+	 *
+	 * @param weights the weight of each operation, must not all be 0.
+	 */
+	public OperationMix(Map<Operation, Double> weights) {
+		int size = weights.size();
+		if (size == 0) {
+			throw new IllegalArgumentException("The operation mix is empty");
+		}
+		this.operations = weights.keySet().toArray(new Operation[size]);
+		this.probability = new double[size];
+		this.alias = new int[size];
+
+		double total = 0;
+		for (double weight : weights.values()) {
+			total += weight;
+		}
+		double[] scaled = new double[size];
+		Deque<Integer> small = new ArrayDeque<>();
+		Deque<Integer> large = new ArrayDeque<>();
+		int i = 0;
+		for (double weight : weights.values()) {
+			scaled[i] = weight * size / total;
+			(scaled[i] < 1.0 ? small : large).push(i);
+			i++;
+		}
+		while (!small.isEmpty() && !large.isEmpty()) {
+			int less = small.pop();
+			int more = large.pop();
+			probability[less] = scaled[less];
+			alias[less] = more;
+			scaled[more] = scaled[more] + scaled[less] - 1.0;
+			(scaled[more] < 1.0 ? small : large).push(more);
+		}
+		// what is left is 1.0 up to rounding errors
+		while (!large.isEmpty()) {
+			probability[large.pop()] = 1.0;
+		}
+		while (!small.isEmpty()) {
+			probability[small.pop()] = 1.0;
+		}
+	}
+
+	/**
+	 * Build the mix of a run from the configuration. Without an explicit
+	 * mix the write, read and sub-document ratios are used as weights.
+	 *
+	 * @param config the global configuration object.
+	 * @return the mix, or null if no operation has a weight.
+	 */
+	public static OperationMix create(GlobalConfig config) {
+		String spec = config.getOpMix();
+		if (spec.isEmpty()) {
+			spec = "set=" + config.getWriteratio() + ",get=" + config.getReadratio()
+					+ ",subdoc=" + config.getSubdocRatio();
+		}
+		Map<Operation, Double> weights = new LinkedHashMap<>();
+		Map<String, String> subdocPaths = parsePairs(config.getSubdocPaths());
+		for (Map.Entry<String, String> entry : parsePairs(spec).entrySet()) {
+			double weight = Double.parseDouble(entry.getValue());
+			if (weight <= 0) {
+				continue;
+			}
+			if ("subdoc".equals(entry.getKey())) {
+				// spread the weight over the sub-document mix
+				SubdocMix subdocMix = new SubdocMix(config.getSubdocMix(), config.getSubdocPaths());
+				double subdocTotal = 0;
+				for (double subdocWeight : subdocMix.getWeights().values()) {
+					subdocTotal += subdocWeight;
+				}
+				for (Map.Entry<Operation, Double> subdoc : subdocMix.getWeights().entrySet()) {
+					weights.put(subdoc.getKey(), weight * subdoc.getValue() / subdocTotal);
+				}
+			} else {
+				weights.put(createOperation(entry.getKey(), config.isZeroCopy(), subdocPaths), weight);
+			}
+		}
+		return weights.isEmpty() ? null : new OperationMix(weights);
+	}
+
+	/**
+	 * Create an operation by its name in the mix.
+	 */
+	static Operation createOperation(String name, boolean zeroCopy, Map<String, String> subdocPaths) {
+		switch (name) {
+			case "set":
+				return new SetOperation(zeroCopy);
+			case "get":
+				return new GetOperation(zeroCopy);
+			case "replace":
+				return new ReplaceOperation();
+			case "remove":
+				return new RemoveOperation();
+			case "touch":
+				return new TouchOperation();
+			case "counter":
+				return new CounterOperation();
+			case "append":
+				return new AppendOperation(false);
+			case "prepend":
+				return new AppendOperation(true);
+			case "get-and-lock":
+				return new GetAndLockOperation();
+			case "get-replica":
+				return new ReplicaGetOperation();
+			default:
+				if (name.startsWith("subdoc-")) {
+					return SubdocMix.create(name.substring("subdoc-".length()), subdocPaths);
+				}
+				return loadOperation(name);
+		}
+	}
+
+	private static Operation loadOperation(String className) {
+		try {
+			return Class.forName(className).asSubclass(Operation.class).getDeclaredConstructor().newInstance();
+		} catch (ClassNotFoundException ex) {
+			throw new IllegalArgumentException("Unknown operation: " + className);
+		} catch (ClassCastException | ReflectiveOperationException ex) {
+			throw new IllegalArgumentException("Cannot create operation " + className, ex);
+		}
+	}
+
+	/**
+	 * Parse comma separated "name=value" pairs, keeping their order.
+	 */
+	static Map<String, String> parsePairs(String pairs) {
+		Map<String, String> parsed = new LinkedHashMap<>();
+		for (String pair : pairs.split(",")) {
+			if (pair.trim().isEmpty()) {
+				continue;
+			}
+			String[] parts = pair.split("=", 2);
+			if (parts.length != 2) {
+				throw new IllegalArgumentException("Expected name=value but got: " + pair);
+			}
+			parsed.put(parts[0].trim(), parts[1].trim());
+		}
+		return parsed;
+	}
+
+	/**
+	 * Pick the next operation according to the weights.
+	 *
+	 * @return the operation.
+	 */
+	public Operation next() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int column = random.nextInt(operations.length);
+		return random.nextDouble() < probability[column] ? operations[column] : operations[alias[column]];
+	}
+}
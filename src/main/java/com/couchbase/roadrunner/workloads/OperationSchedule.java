@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A global constant-throughput schedule shared by all open-loop workers.
+ *
+ * Every call to {@link #next()} hands out the intended start time of the
+ * next operation, spaced evenly so that all workers together issue the
+ * target number of ops per second, independent of how fast the cluster
+ * responds.
+ */
+public class OperationSchedule {
+
+	private final long startNanos;
+
+	private final long intervalNanos;
+
+	private final AtomicLong sequence;
+
+	/**
+	 * Create a schedule starting now.
+	 *
+	 * @param opsPerSecond the target throughput across all workers.
+	 */
+	public OperationSchedule(long opsPerSecond) {
+		if (opsPerSecond <= 0) {
+			throw new IllegalArgumentException("Target throughput must be positive: " + opsPerSecond);
+		}
+		this.intervalNanos = Math.max(1, TimeUnit.SECONDS.toNanos(1) / opsPerSecond);
+		this.startNanos = System.nanoTime();
+		this.sequence = new AtomicLong();
+	}
+
+	/**
+	 * @return the intended start ({@link System#nanoTime()} based) of the next operation.
+	 */
+	public long next() {
+		return startNanos + sequence.getAndIncrement() * intervalNanos;
+	}
+
+	/**
+	 * @return the interval between two consecutive operations in nanoseconds.
+	 */
+	public long getIntervalNanos() {
+		return intervalNanos;
+	}
+
+	/**
+	 * Park the calling thread until the given time has been reached.
+	 *
+	 * @param deadlineNanos the {@link System#nanoTime()} to wait for.
+	 */
+	public static void awaitTime(long deadlineNanos) {
+		long remaining;
+		while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remaining);
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeoutException;
+
+import com.couchbase.client.core.BackpressureException;
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.client.java.error.TemporaryLockFailureException;
+import com.couchbase.client.java.error.subdoc.PathNotFoundException;
+
+/**
+ * How an operation ended. Backpressure retries are counted on top, once
+ * for every time an op was turned away by the full request ring buffer
+ * and retried, an op which is not retried ends as rejected.
+ */
+public enum Outcome {
+
+	SUCCESS("success"),
+	TIMEOUT("timeout"),
+	BACKPRESSURE_RETRY("backpressure-retry"),
+	BACKPRESSURE_REJECTED("backpressure-rejected"),
+	TEMP_FAILURE("temp-failure"),
+	NOT_FOUND("not-found"),
+	CAS_MISMATCH("cas-mismatch"),
+	OTHER("other");
+
+	private final String name;
+
+	Outcome(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name outcomes are reported under.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return true if an op with this outcome ended with an error.
+	 */
+	public boolean isError() {
+		return this != SUCCESS && this != BACKPRESSURE_RETRY;
+	}
+
+	/**
+	 * Classify the error an operation ended with.
+	 *
+	 * @param error the error.
+	 * @return the outcome.
+	 */
+	public static Outcome of(Throwable error) {
+		if (error instanceof TimeoutException) {
+			return TIMEOUT;
+		} else if (error instanceof TemporaryFailureException || error instanceof TemporaryLockFailureException) {
+			return TEMP_FAILURE;
+		} else if (error instanceof DocumentDoesNotExistException || error instanceof PathNotFoundException) {
+			return NOT_FOUND;
+		} else if (error instanceof CASMismatchException) {
+			return CAS_MISMATCH;
+		} else if (error instanceof BackpressureException) {
+			return BACKPRESSURE_REJECTED;
+		}
+		return OTHER;
+	}
+}
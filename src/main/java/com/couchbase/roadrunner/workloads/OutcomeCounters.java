@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the outcomes per operation type.
+ *
+ * Every op is counted, sampled or not, from the callback threads, so the
+ * counters are striped {@link LongAdder}s and recording never allocates
+ * once an operation type has been seen.
+ */
+public class OutcomeCounters {
+
+	private static final Outcome[] OUTCOMES = Outcome.values();
+
+	private final Map<String, LongAdder[]> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * Count an outcome of an operation.
+	 *
+	 * @param identifier the operation type.
+	 * @param outcome the outcome.
+	 */
+	public void record(String identifier, Outcome outcome) {
+		LongAdder[] adders = counters.get(identifier);
+		if (adders == null) {
+			LongAdder[] created = new LongAdder[OUTCOMES.length];
+			for (int i = 0; i < created.length; i++) {
+				created[i] = new LongAdder();
+			}
+			adders = counters.putIfAbsent(identifier, created);
+			if (adders == null) {
+				adders = created;
+			}
+		}
+		adders[outcome.ordinal()].increment();
+	}
+
+	/**
+	 * @return the counts so far per operation type, indexed by {@link Outcome#ordinal()}.
+	 */
+	public Map<String, long[]> snapshot() {
+		Map<String, long[]> snapshot = new HashMap<>();
+		for (Map.Entry<String, LongAdder[]> entry : counters.entrySet()) {
+			long[] counts = new long[OUTCOMES.length];
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = entry.getValue()[i].sum();
+			}
+			snapshot.put(entry.getKey(), counts);
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Add counts per operation type to the given map.
+	 *
+	 * @param into the map to add to.
+	 * @param from the counts to add.
+	 */
+	public static void merge(Map<String, long[]> into, Map<String, long[]> from) {
+		for (Map.Entry<String, long[]> entry : from.entrySet()) {
+			long[] merged = into.get(entry.getKey());
+			if (merged == null) {
+				merged = new long[OUTCOMES.length];
+				into.put(entry.getKey(), merged);
+			}
+			for (int i = 0; i < merged.length; i++) {
+				merged[i] += entry.getValue()[i];
+			}
+		}
+	}
+
+	/**
+	 * @param counts counts indexed by {@link Outcome#ordinal()}.
+	 * @return the ops which ended with an error.
+	 */
+	public static long errors(long[] counts) {
+		long errors = 0;
+		for (Outcome outcome : OUTCOMES) {
+			if (outcome.isError()) {
+				errors += counts[outcome.ordinal()];
+			}
+		}
+		return errors;
+	}
+
+	/**
+	 * Formats the non-zero counts, as in "success=1200 timeout=3".
+	 *
+	 * @param counts counts indexed by {@link Outcome#ordinal()}.
+	 * @return the formatted counts.
+	 */
+	public static String format(long[] counts) {
+		StringBuilder formatted = new StringBuilder();
+		for (Outcome outcome : OUTCOMES) {
+			if (counts[outcome.ordinal()] != 0) {
+				if (formatted.length() > 0) {
+					formatted.append(' ');
+				}
+				formatted.append(outcome.getName()).append('=').append(counts[outcome.ordinal()]);
+			}
+		}
+		return formatted.toString();
+	}
+}
@@ -0,0 +1,188 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.query.N1qlParams;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * A parameterized N1QL statement of the query workload.
+ *
+ * Templates are read from a JSON file holding an array of statements:
+ * <pre>
+ * [
+ *   {"name": "by-key", "statement": "SELECT * FROM `default` USE KEYS $1", "params": ["$key"]},
+ *   {"name": "by-partition", "statement": "SELECT META().id FROM `default` WHERE partition = $1 LIMIT 20",
+ *    "params": ["$int:0:1024"]}
+ * ]
+ * </pre>
+ * Positional parameters are bound per execution: "$key" to a document id
+ * and "$index" to its key number (both picked by the key distribution),
+ * "$int:min:max" to a random number in [min, max). Any other value is
+ * passed as is.
+ */
+public class QueryTemplate {
+
+	private static final String KEY = "$key";
+
+	private static final String INDEX = "$index";
+
+	private static final String INT = "$int:";
+
+	private final String name;
+
+	private final String statement;
+
+	private final Object[] params;
+
+	public QueryTemplate(String name, String statement, Object... params) {
+		this.name = name;
+		this.statement = statement;
+		this.params = new Object[params.length];
+		for (int i = 0; i < params.length; i++) {
+			this.params[i] = compileParam(params[i]);
+		}
+	}
+
+	private static Object compileParam(Object param) {
+		if (param instanceof String && ((String) param).startsWith(INT)) {
+			String[] range = ((String) param).split(":");
+			if (range.length != 3) {
+				throw new IllegalArgumentException("Expected $int:min:max but got: " + param);
+			}
+			return new IntRange(Long.parseLong(range[1]), Long.parseLong(range[2]));
+		}
+		return param;
+	}
+
+	/**
+	 * Read the templates from a file.
+	 *
+	 * @param templateFile the path of the JSON template file.
+	 * @return the templates in file order.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static List<QueryTemplate> fromFile(String templateFile) throws IOException {
+		return fromJson(new ObjectMapper().readTree(new File(templateFile)));
+	}
+
+	/**
+	 * @param templates the parsed template array.
+	 * @return the templates in array order.
+	 */
+	public static List<QueryTemplate> fromJson(JsonNode templates) {
+		if (!templates.isArray() || templates.size() == 0) {
+			throw new IllegalArgumentException("Expected a non-empty array of query templates");
+		}
+		List<QueryTemplate> parsed = new ArrayList<>();
+		for (JsonNode template : templates) {
+			if (!template.hasNonNull("statement")) {
+				throw new IllegalArgumentException("Query template without statement: " + template);
+			}
+			String name = template.hasNonNull("name") ? template.get("name").asText() : "q" + (parsed.size() + 1);
+			List<Object> params = new ArrayList<>();
+			if (template.has("params")) {
+				for (JsonNode param : template.get("params")) {
+					params.add(toValue(param));
+				}
+			}
+			parsed.add(new QueryTemplate(name, template.get("statement").asText(), params.toArray()));
+		}
+		return parsed;
+	}
+
+	private static Object toValue(JsonNode param) {
+		if (param.isTextual()) {
+			return param.asText();
+		} else if (param.isBoolean()) {
+			return param.asBoolean();
+		} else if (param.isIntegralNumber()) {
+			return param.asLong();
+		} else if (param.isNumber()) {
+			return param.asDouble();
+		} else if (param.isNull()) {
+			return null;
+		}
+		throw new IllegalArgumentException("Unsupported query parameter: " + param);
+	}
+
+	/**
+	 * Bind the parameters and build the query.
+	 *
+	 * @param key the document id for "$key".
+	 * @param index the key number for "$index".
+	 * @param queryParams the execution parameters (consistency, adhoc, ...).
+	 * @return the query.
+	 */
+	public N1qlQuery bind(String key, long index, N1qlParams queryParams) {
+		if (params.length == 0) {
+			return N1qlQuery.simple(statement, queryParams);
+		}
+		JsonArray values = JsonArray.create();
+		for (Object param : params) {
+			values.add(bindParam(param, key, index));
+		}
+		return N1qlQuery.parameterized(statement, values, queryParams);
+	}
+
+	private static Object bindParam(Object param, String key, long index) {
+		if (KEY.equals(param)) {
+			return key;
+		} else if (INDEX.equals(param)) {
+			return index;
+		} else if (param instanceof IntRange) {
+			IntRange range = (IntRange) param;
+			return ThreadLocalRandom.current().nextLong(range.min, range.max);
+		}
+		return param;
+	}
+
+	private static final class IntRange {
+
+		private final long min;
+
+		private final long max;
+
+		private IntRange(long min, long max) {
+			if (max <= min) {
+				throw new IllegalArgumentException("Empty $int range: " + min + ":" + max);
+			}
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getStatement() {
+		return statement;
+	}
+}
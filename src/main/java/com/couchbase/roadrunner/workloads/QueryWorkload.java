@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.couchbase.client.core.CouchbaseException;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.query.AsyncN1qlQueryResult;
+import com.couchbase.client.java.query.N1qlParams;
+import com.couchbase.client.java.query.consistency.ScanConsistency;
+import com.couchbase.roadrunner.GlobalConfig;
+import rx.Observable;
+
+/**
+ * Runs the N1QL statements of a template file next to the KV workers,
+ * keeping a fixed number of queries in flight.
+ *
+ * Statements are issued round-robin with their parameters bound to keys
+ * picked by the key distribution. Each statement records its latency
+ * into its own histogram ("query-" + name) and counts the rows returned.
+ * The workload runs until the window expires or it is stopped.
+ */
+public class QueryWorkload extends Workload {
+
+	private final List<QueryTemplate> templates;
+
+	private final String[] identifiers;
+
+	private final N1qlParams queryParams;
+
+	private final int concurrency;
+
+	private final Map<String, LongAdder> rows;
+
+	private volatile boolean stopped;
+
+	public QueryWorkload(String workloadName, Bucket bucket, GlobalConfig config, DocumentGenerator documentGenerator,
+						 int count, int offset, RunWindow window, List<QueryTemplate> templates, int concurrency,
+						 KeyChooser keyChooser, long keyBase) {
+		super(workloadName, bucket, config, documentGenerator, count, offset, null, window, keyChooser, keyBase);
+		this.templates = templates;
+		this.concurrency = concurrency;
+		this.identifiers = new String[templates.size()];
+		this.rows = new ConcurrentHashMap<>();
+		for (int i = 0; i < identifiers.length; i++) {
+			identifiers[i] = "query-" + templates.get(i).getName();
+			rows.put(identifiers[i], new LongAdder());
+		}
+		this.queryParams = N1qlParams.build()
+				.adhoc(config.isQueryAdhoc())
+				.consistency(scanConsistency(config.getScanConsistency()));
+	}
+
+	static ScanConsistency scanConsistency(String name) {
+		switch (name) {
+			case "not-bounded":
+				return ScanConsistency.NOT_BOUNDED;
+			case "request-plus":
+				return ScanConsistency.REQUEST_PLUS;
+			case "statement-plus":
+				return ScanConsistency.STATEMENT_PLUS;
+			default:
+				throw new IllegalArgumentException("Unknown scan consistency: " + name);
+		}
+	}
+
+	@Override
+	public void run() {
+		startTimer();
+		Thread.currentThread().setName(getWorkloadName());
+		Semaphore inFlight = new Semaphore(concurrency);
+		for (long opNumber = 0; isRunning(); opNumber++) {
+			inFlight.acquireUninterruptibly();
+			query(opNumber).subscribe(
+					rowCount -> {},
+					err -> {failed(err);inFlight.release();},
+					inFlight::release
+			);
+		}
+		inFlight.acquireUninterruptibly(concurrency);
+		endTimer();
+		finished = true;
+	}
+
+	private boolean isRunning() {
+		return !stopped && !(getWindow().isTimeBounded() && getWindow().isExpired(System.nanoTime()));
+	}
+
+	/**
+	 * Issue the n-th query and count its rows, failing if the service
+	 * reported errors.
+	 */
+	Observable<Integer> query(long opNumber) {
+		int statement = (int) (opNumber % templates.size());
+		String identifier = identifiers[statement];
+		long index = keyIndex(opNumber);
+		String key = key(opNumber);
+		return Observable.defer(() -> {
+			long start = System.nanoTime();
+			return counted(identifier, measured(identifier, getBucket().async()
+					.query(templates.get(statement).bind(key, index, queryParams))
+					.flatMap(QueryWorkload::countRows)
+					.doOnNext(rowCount -> rows.get(identifier).add(rowCount)), start, 0));
+		});
+	}
+
+	private static Observable<Integer> countRows(AsyncN1qlQueryResult result) {
+		return result.rows().count().flatMap(rowCount -> result.errors().toList().flatMap(errors -> errors.isEmpty()
+				? Observable.just(rowCount)
+				: Observable.<Integer>error(new CouchbaseException("Query failed: " + errors))));
+	}
+
+	/**
+	 * Stop issuing queries, the ones in flight still complete.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+
+	/**
+	 * @return the rows returned so far, per statement.
+	 */
+	public Map<String, Long> getRows() {
+		Map<String, Long> counts = new HashMap<>();
+		for (Map.Entry<String, LongAdder> entry : rows.entrySet()) {
+			counts.put(entry.getKey(), entry.getValue().sum());
+		}
+		return counts;
+	}
+}
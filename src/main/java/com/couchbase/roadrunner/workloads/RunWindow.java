@@ -0,0 +1,74 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time window of a run, shared by all workers.
+ *
+ * It starts with an optional warmup period whose samples are kept out of
+ * the results and, for time-bounded runs, ends at a deadline after which
+ * the workers stop issuing new ops.
+ */
+public class RunWindow {
+
+	private final long warmupEndNanos;
+
+	private final long deadlineNanos;
+
+	private final boolean timeBounded;
+
+	/**
+	 * Create a window starting now.
+	 *
+	 * @param warmupSeconds the warmup period in seconds, 0 for none.
+	 * @param durationSeconds the measured duration after warmup in seconds, 0 to bound by op count.
+	 */
+	public RunWindow(long warmupSeconds, long durationSeconds) {
+		long now = System.nanoTime();
+		this.warmupEndNanos = now + TimeUnit.SECONDS.toNanos(warmupSeconds);
+		this.deadlineNanos = warmupEndNanos + TimeUnit.SECONDS.toNanos(durationSeconds);
+		this.timeBounded = durationSeconds > 0;
+	}
+
+	/**
+	 * @param nanos a {@link System#nanoTime()} value.
+	 * @return true if the given time falls into the warmup period.
+	 */
+	public boolean isWarmup(long nanos) {
+		return nanos - warmupEndNanos < 0;
+	}
+
+	/**
+	 * @return true if the run is bounded by a deadline instead of an op count.
+	 */
+	public boolean isTimeBounded() {
+		return timeBounded;
+	}
+
+	/**
+	 * @param nanos a {@link System#nanoTime()} value.
+	 * @return true if the run is time bounded and the deadline has passed.
+	 */
+	public boolean isExpired(long nanos) {
+		return timeBounded && nanos - deadlineNanos >= 0;
+	}
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Generates synthetic JSON documents described by a schema file, writing
+ * them with the Jackson streaming generator into per-thread reusable
+ * buffers.
+ *
+ * The schema is a JSON object with the fields of the document root:
+ * <pre>
+ * {"fields": [
+ *   {"name": "type", "type": "string", "values": ["device", "user"]},
+ *   {"name": "name", "type": "string", "length": {"distribution": "uniform", "min": 8, "max": 32},
+ *    "cardinality": 1000},
+ *   {"name": "age", "type": "int", "min": 18, "max": 99},
+ *   {"name": "score", "type": "double"},
+ *   {"name": "active", "type": "boolean"},
+ *   {"name": "address", "type": "object", "fields": [...]},
+ *   {"name": "tags", "type": "array", "length": 5, "items": {"type": "string", "length": 8}},
+ *   {"name": "blob", "type": "string",
+ *    "length": {"distribution": "histogram", "buckets": [[2048, 70], [204800, 5]]}}
+ * ]}
+ * </pre>
+ * Lengths take any {@link SizeDistribution}. A string "cardinality" limits
+ * the number of distinct values of the field, otherwise every value is
+ * random.
+ */
+public class SchemaDocumentGenerator extends DocumentGenerator {
+
+	private static final int DEFAULT_STRING_LENGTH = 16;
+
+	private static final int DEFAULT_ARRAY_LENGTH = 4;
+
+	private static final int MIN_TEXT_SIZE = 64 * 1024;
+
+	private static final char[] ALPHABET =
+			"abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789".toCharArray();
+
+	private final JsonFactory factory = new JsonFactory();
+
+	private final ThreadLocal<ByteArrayBuilder> buffers = ThreadLocal.withInitial(ByteArrayBuilder::new);
+
+	private final ValueWriter root;
+
+	/** Random text that string values are sliced from. */
+	private final char[] text;
+
+	/**
+	 * Create the generator from a schema file.
+	 *
+	 * @param schemaFile path to the JSON schema.
+	 * @param poolSize the number of distinct payloads to render up front, 0 to render one per document.
+	 * @return the generator.
+	 */
+	public static SchemaDocumentGenerator fromFile(String schemaFile, int poolSize) throws IOException {
+		return new SchemaDocumentGenerator(new ObjectMapper().readTree(new File(schemaFile)), poolSize);
+	}
+
+	/**
+	 * Create the generator.
+	 *
+	 * @param schema the parsed schema.
+	 * @param poolSize the number of distinct payloads to render up front, 0 to render one per document.
+	 */
+	public SchemaDocumentGenerator(JsonNode schema, int poolSize) {
+		int[] maxLength = {0};
+		this.root = compileObject(schema, maxLength);
+		this.text = new char[Math.max(MIN_TEXT_SIZE, maxLength[0] * 2)];
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		for (int i = 0; i < text.length; i++) {
+			text[i] = ALPHABET[random.nextInt(ALPHABET.length)];
+		}
+		preRender(poolSize);
+	}
+
+	/**
+	 * Schema documents are random already, every slot simply gets one.
+	 */
+	@Override
+	protected byte[] render(int slot) {
+		return render();
+	}
+
+	@Override
+	protected byte[] render() {
+		ByteArrayBuilder buffer = buffers.get();
+		buffer.reset();
+		try (JsonGenerator generator = factory.createGenerator(buffer)) {
+			root.write(generator, ThreadLocalRandom.current());
+		} catch (IOException ex) {
+			throw new IllegalStateException("Unable to generate a document from the schema", ex);
+		}
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Writes one (randomly generated) JSON value.
+	 */
+	private interface ValueWriter {
+		void write(JsonGenerator generator, ThreadLocalRandom random) throws IOException;
+	}
+
+	private ValueWriter compileObject(JsonNode spec, int[] maxLength) {
+		JsonNode fields = spec.path("fields");
+		List<String> names = new ArrayList<>();
+		List<ValueWriter> writers = new ArrayList<>();
+		for (JsonNode field : fields) {
+			if (!field.hasNonNull("name")) {
+				throw new IllegalArgumentException("Schema field without a name: " + field);
+			}
+			names.add(field.get("name").asText());
+			writers.add(compile(field, maxLength));
+		}
+		String[] fieldNames = names.toArray(new String[names.size()]);
+		ValueWriter[] fieldWriters = writers.toArray(new ValueWriter[writers.size()]);
+		return (generator, random) -> {
+			generator.writeStartObject();
+			for (int i = 0; i < fieldNames.length; i++) {
+				generator.writeFieldName(fieldNames[i]);
+				fieldWriters[i].write(generator, random);
+			}
+			generator.writeEndObject();
+		};
+	}
+
+	private ValueWriter compile(JsonNode spec, int[] maxLength) {
+		String type = spec.path("type").asText("string");
+		switch (type) {
+			case "string":
+				return compileString(spec, maxLength);
+			case "int":
+			case "long": {
+				long min = spec.path("min").asLong(0);
+				long max = spec.path("max").asLong(Integer.MAX_VALUE);
+				return (generator, random) -> generator.writeNumber(min + random.nextLong(max - min + 1));
+			}
+			case "double": {
+				double min = spec.path("min").asDouble(0);
+				double max = spec.path("max").asDouble(1);
+				return (generator, random) -> generator.writeNumber(min + random.nextDouble() * (max - min));
+			}
+			case "boolean":
+				return (generator, random) -> generator.writeBoolean(random.nextBoolean());
+			case "object":
+				return compileObject(spec, maxLength);
+			case "array": {
+				SizeDistribution length = SizeDistribution.fromJson(spec.get("length"), DEFAULT_ARRAY_LENGTH);
+				ValueWriter items = compile(spec.path("items"), maxLength);
+				return (generator, random) -> {
+					generator.writeStartArray();
+					for (int i = length.next(); i > 0; i--) {
+						items.write(generator, random);
+					}
+					generator.writeEndArray();
+				};
+			}
+			default:
+				throw new IllegalArgumentException("Unknown schema field type: " + type);
+		}
+	}
+
+	private ValueWriter compileString(JsonNode spec, int[] maxLength) {
+		if (spec.has("values")) {
+			List<String> values = new ArrayList<>();
+			for (JsonNode value : spec.get("values")) {
+				values.add(value.asText());
+			}
+			String[] choices = values.toArray(new String[values.size()]);
+			return (generator, random) -> generator.writeString(choices[random.nextInt(choices.length)]);
+		}
+		SizeDistribution length = SizeDistribution.fromJson(spec.get("length"), DEFAULT_STRING_LENGTH);
+		maxLength[0] = Math.max(maxLength[0], length.max());
+		int cardinality = spec.path("cardinality").asInt(0);
+		return (generator, random) -> {
+			int size = length.next();
+			int range = text.length - size;
+			// the same ordinal always maps to the same slice, which bounds the distinct values
+			int offset = cardinality > 0
+					? (int) ((random.nextInt(cardinality) * 7919L) % (range + 1))
+					: random.nextInt(range + 1);
+			generator.writeString(text, offset, size);
+		};
+	}
+}
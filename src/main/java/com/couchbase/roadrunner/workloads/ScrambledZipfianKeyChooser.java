@@ -0,0 +1,58 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+/**
+ * A zipfian distribution whose popular keys are scattered over the whole
+ * key range (and therefore over many vBuckets) instead of being clustered
+ * at its start.
+ */
+public class ScrambledZipfianKeyChooser implements KeyChooser {
+
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+	private static final long FNV_PRIME = 1099511628211L;
+
+	private final long keyCount;
+
+	private final ZipfianKeyChooser zipfian;
+
+	public ScrambledZipfianKeyChooser(long keyCount, double theta) {
+		this.keyCount = keyCount;
+		this.zipfian = new ZipfianKeyChooser(keyCount, theta);
+	}
+
+	@Override
+	public long nextKey(long opNumber) {
+		return Math.floorMod(fnvHash(zipfian.nextKey(opNumber)), keyCount);
+	}
+
+	/**
+	 * 64 bit FNV-1a hash over the bytes of the value.
+	 */
+	static long fnvHash(long value) {
+		long hash = FNV_OFFSET_BASIS;
+		for (int i = 0; i < 8; i++) {
+			hash ^= (value >>> (i * 8)) & 0xFF;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
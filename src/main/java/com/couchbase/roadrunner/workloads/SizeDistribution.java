@@ -0,0 +1,190 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * A distribution of sizes, used for string lengths and array lengths of
+ * generated documents.
+ *
+ * In a schema it is either a plain number (a fixed size) or an object:
+ * <ul>
+ *   <li>{"distribution": "fixed", "value": 32}</li>
+ *   <li>{"distribution": "uniform", "min": 8, "max": 64}</li>
+ *   <li>{"distribution": "histogram", "buckets": [[2048, 70], [20480, 25], [204800, 5]]},
+ *   where each bucket is a size and its relative weight</li>
+ * </ul>
+ */
+public interface SizeDistribution {
+
+	/**
+	 * @return the next size.
+	 */
+	int next();
+
+	/**
+	 * @return the largest size this distribution can return.
+	 */
+	int max();
+
+	/**
+	 * Parse a distribution from its schema description.
+	 *
+	 * @param node the schema node, may be null.
+	 * @param defaultSize the fixed size to use when the node is missing.
+	 * @return the distribution.
+	 */
+	static SizeDistribution fromJson(JsonNode node, int defaultSize) {
+		if (node == null || node.isNull()) {
+			return new Fixed(defaultSize);
+		}
+		if (node.isNumber()) {
+			return new Fixed(node.asInt());
+		}
+		String distribution = node.path("distribution").asText("fixed");
+		switch (distribution) {
+			case "fixed":
+				return new Fixed(node.path("value").asInt(defaultSize));
+			case "uniform":
+				return new Uniform(node.path("min").asInt(0), node.path("max").asInt(defaultSize));
+			case "histogram":
+				JsonNode buckets = node.path("buckets");
+				int[] sizes = new int[buckets.size()];
+				long[] weights = new long[buckets.size()];
+				for (int i = 0; i < buckets.size(); i++) {
+					sizes[i] = buckets.get(i).get(0).asInt();
+					weights[i] = buckets.get(i).get(1).asLong();
+				}
+				return new Histogram(sizes, weights);
+			default:
+				throw new IllegalArgumentException("Unknown size distribution: " + distribution);
+		}
+	}
+
+	/**
+	 * Always the same size.
+	 */
+	class Fixed implements SizeDistribution {
+
+		private final int size;
+
+		public Fixed(int size) {
+			if (size < 0) {
+				throw new IllegalArgumentException("Size must not be negative: " + size);
+			}
+			this.size = size;
+		}
+
+		@Override
+		public int next() {
+			return size;
+		}
+
+		@Override
+		public int max() {
+			return size;
+		}
+	}
+
+	/**
+	 * Any size between min and max (both inclusive) with the same probability.
+	 */
+	class Uniform implements SizeDistribution {
+
+		private final int min;
+
+		private final int max;
+
+		public Uniform(int min, int max) {
+			if (min < 0 || max < min) {
+				throw new IllegalArgumentException("Invalid uniform size range: " + min + "-" + max);
+			}
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public int next() {
+			return min + ThreadLocalRandom.current().nextInt(max - min + 1);
+		}
+
+		@Override
+		public int max() {
+			return max;
+		}
+	}
+
+	/**
+	 * A set of sizes, each picked with a probability proportional to its weight.
+	 */
+	class Histogram implements SizeDistribution {
+
+		private final int[] sizes;
+
+		private final long[] cumulativeWeights;
+
+		private final int max;
+
+		public Histogram(int[] sizes, long[] weights) {
+			if (sizes.length == 0 || sizes.length != weights.length) {
+				throw new IllegalArgumentException("A size histogram needs at least one bucket and a weight per bucket");
+			}
+			this.sizes = sizes.clone();
+			this.cumulativeWeights = new long[weights.length];
+			long total = 0;
+			int largest = 0;
+			for (int i = 0; i < weights.length; i++) {
+				if (weights[i] < 0 || sizes[i] < 0) {
+					throw new IllegalArgumentException("Sizes and weights must not be negative");
+				}
+				total += weights[i];
+				cumulativeWeights[i] = total;
+				largest = Math.max(largest, sizes[i]);
+			}
+			if (total == 0) {
+				throw new IllegalArgumentException("Size histogram weights must not all be zero");
+			}
+			this.max = largest;
+		}
+
+		@Override
+		public int next() {
+			long pick = ThreadLocalRandom.current().nextLong(cumulativeWeights[cumulativeWeights.length - 1]);
+			int index = Arrays.binarySearch(cumulativeWeights, pick + 1);
+			if (index < 0) {
+				index = -index - 1;
+			}
+			// skip back over zero weight buckets sharing the same cumulative weight
+			while (index > 0 && cumulativeWeights[index - 1] == cumulativeWeights[index]) {
+				index--;
+			}
+			return sizes[index];
+		}
+
+		@Override
+		public int max() {
+			return max;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The sub-document operations of a run, their weights and the paths they
+ * work on.
+ *
+ * Both the mix and the paths are given as comma separated "kind=value"
+ * pairs, e.g. "get=40,counter=60" and "get=productFamilyId,counter=hits".
+ * Supported kinds are get, exists, counter, dict-upsert and array-append.
+ */
+public class SubdocMix {
+
+	private final Map<Operation, Double> weights;
+
+	/**
+	 * Create the mix.
+	 *
+	 * @param mix the weight of each kind, kinds left out are not run.
+	 * @param paths the path each kind works on.
+	 */
+	public SubdocMix(String mix, String paths) {
+		Map<String, String> pathsByKind = OperationMix.parsePairs(paths);
+		this.weights = new LinkedHashMap<>();
+		for (Map.Entry<String, String> entry : OperationMix.parsePairs(mix).entrySet()) {
+			SubdocOperation operation = create(entry.getKey(), pathsByKind);
+			double weight = Double.parseDouble(entry.getValue());
+			if (weight > 0) {
+				weights.put(operation, weight);
+			}
+		}
+	}
+
+	/**
+	 * Create a single sub-document operation.
+	 *
+	 * @param kind the kind of operation.
+	 * @param paths the path each kind works on.
+	 * @return the operation.
+	 */
+	static SubdocOperation create(String kind, Map<String, String> paths) {
+		if (!SubdocOperation.isKind(kind)) {
+			throw new IllegalArgumentException("Unknown sub-document operation: " + kind);
+		}
+		if (!paths.containsKey(kind)) {
+			throw new IllegalArgumentException("No path given for sub-document operation: " + kind);
+		}
+		return new SubdocOperation(kind, paths.get(kind));
+	}
+
+	/**
+	 * @return true if no operation has a weight.
+	 */
+	public boolean isEmpty() {
+		return weights.isEmpty();
+	}
+
+	/**
+	 * @return the weighted operations, in mix order.
+	 */
+	public Map<Operation, Double> getWeights() {
+		return weights;
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.couchbase.client.java.AsyncBucket;
+import rx.Observable;
+
+/**
+ * A sub-document lookup or mutation on a single path of a document.
+ * Mutations create missing parents, so counter and array paths do not
+ * need to exist up front.
+ */
+public class SubdocOperation implements Operation {
+
+	public static final String GET = "get";
+	public static final String EXISTS = "exists";
+	public static final String COUNTER = "counter";
+	public static final String DICT_UPSERT = "dict-upsert";
+	public static final String ARRAY_APPEND = "array-append";
+
+	static final String[] KINDS = {GET, EXISTS, COUNTER, DICT_UPSERT, ARRAY_APPEND};
+
+	private final String kind;
+
+	private final String path;
+
+	private final String name;
+
+	public SubdocOperation(String kind, String path) {
+		if (!isKind(kind)) {
+			throw new IllegalArgumentException("Unknown sub-document operation: " + kind);
+		}
+		this.kind = kind;
+		this.path = path;
+		this.name = "subdoc-" + kind;
+	}
+
+	/**
+	 * @return true if the kind is a supported sub-document operation.
+	 */
+	static boolean isKind(String kind) {
+		for (String candidate : KINDS) {
+			if (candidate.equals(kind)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key) {
+		switch (kind) {
+			case GET:
+				return bucket.lookupIn(key).get(path).execute();
+			case EXISTS:
+				return bucket.lookupIn(key).exists(path).execute();
+			case COUNTER:
+				return bucket.mutateIn(key).counter(path, 1L, true).execute();
+			case DICT_UPSERT:
+				return bucket.mutateIn(key).upsert(path, System.currentTimeMillis(), true).execute();
+			default:
+				return bucket.mutateIn(key).arrayAppend(path, ThreadLocalRandom.current().nextInt(), true).execute();
+		}
+	}
+}
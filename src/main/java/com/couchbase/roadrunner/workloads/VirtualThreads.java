@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creates the threads of the simulated users of the virtual engine.
+ *
+ * RoadRunner is built for Java 8, so virtual threads are looked up through
+ * reflection. On a JVM without them the users fall back to platform
+ * threads, which behave the same at a much higher cost per user.
+ */
+public final class VirtualThreads {
+
+	private static final Logger LOGGER =
+			LoggerFactory.getLogger(VirtualThreads.class.getName());
+
+	private static final Method OF_VIRTUAL;
+
+	private static final Method NAME;
+
+	private static final Method FACTORY;
+
+	static {
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		try {
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builder.getMethod("name", String.class, long.class);
+			factory = builder.getMethod("factory");
+			// a preview API which isn't enabled throws here
+			ofVirtual.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException ex) {
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		NAME = name;
+		FACTORY = factory;
+	}
+
+	private VirtualThreads() {
+	}
+
+	/**
+	 * @return true if the JVM has virtual threads.
+	 */
+	public static boolean isAvailable() {
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Create a factory for numbered user threads.
+	 *
+	 * @param prefix the name of the threads, followed by their number.
+	 * @return a factory of virtual threads, or of platform threads if there are none.
+	 */
+	public static ThreadFactory factory(String prefix) {
+		if (isAvailable()) {
+			try {
+				Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+				return (ThreadFactory) FACTORY.invoke(builder);
+			} catch (ReflectiveOperationException ex) {
+				throw new IllegalStateException("Unable to create virtual threads", ex);
+			}
+		}
+		LOGGER.warn("Virtual threads need Java 21 or later, running the users on platform threads");
+		AtomicLong counter = new AtomicLong();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + counter.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -20,24 +20,54 @@
 package com.couchbase.roadrunner.workloads;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 import com.couchbase.client.core.BackpressureException;
 import com.couchbase.client.core.time.Delay;
 import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
 import com.couchbase.roadrunner.GlobalConfig;
 import com.couchbase.roadrunner.customConverter.ByteJsonDocument;
+import com.couchbase.roadrunner.events.FlightRecorderEvents;
 import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.Uninterruptibles;
 
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import rx.Observable;
+import rx.functions.Func0;
 import rx.functions.Func1;
+import rx.observables.SyncOnSubscribe;
 
 import static com.couchbase.client.java.util.retry.RetryBuilder.any;
 
 public class Workload implements Runnable {
+
+	/** Highest latency (in microseconds) the histograms can track, larger values are clamped. */
+	public static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toMicros(10);
+
+	/** Precision of the latency histograms. */
+	public static final int SIGNIFICANT_DIGITS = 3;
+
+	/** Appended to the name of an operation for the latencies of its failed ops. */
+	public static final String ERROR_SUFFIX = ":error";
+
+	/** Appended to the name of an operation for the delays before its backpressure retries. */
+	public static final String BACKOFF_SUFFIX = ":backoff";
+
+	/** Ends an op which found no document, shared since it is never thrown. */
+	private static final Observable<?> NOT_FOUND =
+			Observable.error(new DocumentDoesNotExistException("No document found"));
+
 	private final Logger logger =
 			LoggerFactory.getLogger(Workload.class.getName());
 
@@ -47,13 +77,35 @@ public class Workload implements Runnable {
 
 	private final GlobalConfig config;
 
-	private long measuredOps;
+	private final LongAdder measuredOps;
+
+	/** Ops issued and not completed yet. */
+	private final LongAdder inFlightOps;
 
-	private long totalOps;
+	private final OutcomeCounters outcomes;
+
+	private final BackpressureStrategy backpressure;
+
+	private final LongAdder totalOps;
+
+	/** Ops completed during warmup, which throughput leaves out. */
+	private final LongAdder warmupOps;
+
+	/** Cleared by the first op completed after warmup, saves the clock read from then on. */
+	private volatile boolean warmingUp = true;
 
 	private Stopwatch elapsed;
 
-	private Map<String, List<Stopwatch>> measures;
+	/** Live recorders per operation type, written to from the callback threads. */
+	private final Map<String, Recorder> recorders;
+
+	/** Histograms accumulated from the recorders so far. */
+	private final Map<String, Histogram> measures;
+
+	private final Map<String, Histogram> recycled;
+
+	/** Recorders for the ops started during warmup, kept out of the results. */
+	private final Map<String, Recorder> warmupRecorders;
 
 	protected DocumentGenerator documentGenerator;
 
@@ -61,153 +113,510 @@ public class Workload implements Runnable {
 
 	private int start;
 
+	/** The shared open-loop schedule, or null when running closed-loop. */
+	private final OperationSchedule schedule;
+
+	private final boolean measureFromIntendedStart;
+
+	/** Expected interval (in microseconds) between the ops of this worker, 0 if not correcting. */
+	private final long expectedInterval;
+
+	private final RunWindow window;
+
+	private final KeyChooser keyChooser;
+
+	/** The index of the first key the chooser picks from. */
+	private final long keyBase;
+
+	/** Per thread, as the users of the virtual engine share the worker. */
+	private final ThreadLocal<KeyEncoder> keyEncoders;
+
+	private final boolean runPhase;
+
+	/** The operations of the run phase, null if there are none. */
+	private final OperationMix mix;
+
+	protected volatile boolean finished;
+
 	public Workload(String workloadName, Bucket bucket, GlobalConfig config, DocumentGenerator documentGenerator,
 					int count, int offset) {
+		this(workloadName, bucket, config, documentGenerator, count, offset, null,
+				new RunWindow(config.getRamp(), config.getDuration()));
+	}
+
+	public Workload(String workloadName, Bucket bucket, GlobalConfig config, DocumentGenerator documentGenerator,
+					int count, int offset, OperationSchedule schedule, RunWindow window) {
+		this(workloadName, bucket, config, documentGenerator, count, offset, schedule, window, null, 0);
+	}
+
+	/**
+	 * Create a worker whose run phase picks keys through a chooser shared
+	 * with the other workers of the phase.
+	 *
+	 * @param keyChooser the shared chooser, or null to pick from the worker's own key range.
+	 * @param keyBase the index of the first key of the shared chooser.
+	 */
+	public Workload(String workloadName, Bucket bucket, GlobalConfig config, DocumentGenerator documentGenerator,
+					int count, int offset, OperationSchedule schedule, RunWindow window,
+					KeyChooser keyChooser, long keyBase) {
 		this.count = count;
 		this.start = offset;
 		this.workloadName = workloadName;
 		this.bucket = bucket;
 		this.config = config;
+		this.recorders = new ConcurrentHashMap<>();
 		this.measures = new HashMap<>();
-		this.measuredOps = 0;
-		this.totalOps = 0;
+		this.recycled = new HashMap<>();
+		this.warmupRecorders = new ConcurrentHashMap<>();
+		this.measuredOps = new LongAdder();
+		this.inFlightOps = new LongAdder();
+		this.outcomes = new OutcomeCounters();
+		this.backpressure = BackpressureStrategies.create(config.getBackpressure(),
+				config.getMaxInFlight() > 0 ? config.getMaxInFlight() : config.getBatchSize());
+		this.totalOps = new LongAdder();
+		this.warmupOps = new LongAdder();
 		this.elapsed = new Stopwatch();
 		this.documentGenerator = documentGenerator;
+		this.schedule = schedule;
+		this.window = window;
+		this.runPhase = "run".equals(config.getPhase());
+		if (runPhase && keyChooser != null) {
+			this.keyChooser = keyChooser;
+			this.keyBase = keyBase;
+		} else {
+			this.keyChooser = runPhase
+					? KeyChoosers.create(config.getKeyDistribution(), Math.max(count, 1))
+					: new SequentialKeyChooser(Math.max(count, 1));
+			this.keyBase = offset;
+		}
+		this.keyEncoders = ThreadLocal.withInitial(
+				() -> KeyEncoder.create(config.getKeyPrefix(), config.getKeyFormat()));
+		this.mix = runPhase ? OperationMix.create(config) : null;
+		this.measureFromIntendedStart = schedule != null && !config.isCoCorrection();
+		if (schedule != null && config.isCoCorrection()) {
+			int workers = (config.getNumThreads() / config.getNumClients()) * config.getNumClients();
+			this.expectedInterval = expectedInterval(schedule.getIntervalNanos(), workers, samplingInterval());
+		} else {
+			this.expectedInterval = 0;
+		}
 	}
 
 	@Override
 	public void run() {
 		startTimer();
 		Thread.currentThread().setName(getWorkloadName());
-		int numBatches = this.count / config.getBatchSize();
-		CountDownLatch latch = new CountDownLatch(config.getBatchSize());
-
-		int samplingInterval = 0;
-		if (config.getSamplingCount() > 0) {
-			samplingInterval = config.getSamplingCount() / config.getNumThreads();
+		int numBatches = opCount() / config.getBatchSize();
+
+		int samplingInterval = samplingInterval();
+
+		if (runPhase && mix == null) {
+			// nothing but queries to run, leave the stage to the query worker
+		} else if (config.isVirtual()) {
+			runUsers(numBatches * config.getBatchSize(), samplingInterval);
+		} else if (schedule != null) {
+			runOpenLoop(numBatches * config.getBatchSize(), samplingInterval);
+		} else if (config.getMaxInFlight() > 0) {
+			runPipelined(numBatches * config.getBatchSize(), samplingInterval);
+		} else {
+			runClosedLoop(numBatches, samplingInterval);
 		}
 
-		int index = this.start;
-		for (int i = 0; i < numBatches; i++) {
-
-			if (config.getPhase() == "run") {
-				int readCount = (config.getReadratio() * config.getBatchSize()) / 100;
-				int writeCount = (config.getWriteratio() * config.getBatchSize()) / 100;
-
-				while (writeCount-- > 0) {
-					boolean measure = index != 0 && samplingInterval != 0 && index % samplingInterval == 0;
-					update(config.getKeyPrefix() + start + index, measure)
-							.subscribe(
-									doc -> {},
-									err -> {incrTotalOps();err.printStackTrace();latch.countDown();},
-									() -> {incrTotalOps();latch.countDown();}
-							);
-					index++;
-				}
+		try {
+			Thread.sleep((long) Math.random() * config.getMaxThinkTime() + config.getMinThinkTime());
+		} catch (InterruptedException ex) {
+			ex.printStackTrace();
+		}
+		System.out.println("Completed" + this.workloadName);
+		endTimer();
+		finished = true;
+	}
 
-				while (readCount-- > 0) {
-					boolean measure = index != 0 && samplingInterval != 0 && index % samplingInterval == 0;
-					get(config.getKeyPrefix() + start + index, measure)
-							.subscribe(
-									doc -> {},
-									err -> {incrTotalOps();err.printStackTrace();latch.countDown();},
-									() -> {incrTotalOps();latch.countDown();}
-							);
-					index++;
-				}
-			} else {
-				int insertCount = config.getBatchSize();
-				while (insertCount-- > 0) {
-					insertWorkload(config.getKeyPrefix() + start + index++)
-							.subscribe(
-									doc -> {},
-									err -> {incrTotalOps();err.printStackTrace();latch.countDown();},
-									() -> {incrTotalOps();latch.countDown();}
-							);
-				}
+	/**
+	 * Issue the ops batch by batch, waiting for each batch to complete.
+	 */
+	private void runClosedLoop(int numBatches, int samplingInterval) {
+		int numOps = numBatches * config.getBatchSize();
+		long opNumber = 0;
+		for (long batch = 0; hasMoreOps(batch * config.getBatchSize(), numOps); batch++) {
+			CountDownLatch latch = new CountDownLatch(config.getBatchSize());
+			for (int i = 0; i < config.getBatchSize(); i++) {
+				issue(opNumber++, samplingInterval, 0)
+						.subscribe(
+								doc -> {},
+								err -> {incrTotalOps();failed(err);latch.countDown();},
+								() -> {incrTotalOps();latch.countDown();}
+						);
 			}
+			Object stall = FlightRecorderEvents.beginStall();
 			try {
 				latch.await();
 			} catch (InterruptedException ex) {
 				ex.printStackTrace();
 			}
+			FlightRecorderEvents.endStall(stall, workloadName, "batch", config.getBatchSize());
 		}
+	}
 
-		try {
-			Thread.sleep((long) Math.random() * config.getMaxThinkTime() + config.getMinThinkTime());
-		} catch (InterruptedException ex) {
-			ex.printStackTrace();
+	/**
+	 * Issue the ops at the times given by the shared schedule, no matter how
+	 * many of the previous ops are still in flight, and wait for all of them
+	 * at the end.
+	 */
+	private void runOpenLoop(int numOps, int samplingInterval) {
+		LongAdder completed = new LongAdder();
+
+		long opNumber = 0;
+		while (hasMoreOps(opNumber, numOps)) {
+			long intendedStart = schedule.next();
+			OperationSchedule.awaitTime(intendedStart);
+
+			issue(opNumber, samplingInterval, intendedStart).subscribe(
+					doc -> {},
+					err -> {incrTotalOps();failed(err);completed.increment();},
+					() -> {incrTotalOps();completed.increment();}
+			);
+			opNumber++;
+		}
+
+		while (completed.sum() < opNumber) {
+			LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
 		}
-		System.out.println("Completed" + this.workloadName);
-		endTimer();
 	}
 
+	/**
+	 * Keep exactly max-in-flight ops outstanding: a new op is issued as soon
+	 * as any previous one completes, so a single slow op only holds up its
+	 * own permit instead of a whole batch.
+	 */
+	private void runPipelined(int numOps, int samplingInterval) {
+		int maxInFlight = config.getMaxInFlight();
+		Semaphore inFlight = new Semaphore(maxInFlight);
+
+		long opNumber = 0;
+		while (hasMoreOps(opNumber, numOps)) {
+			if (!inFlight.tryAcquire()) {
+				Object stall = FlightRecorderEvents.beginStall();
+				inFlight.acquireUninterruptibly();
+				FlightRecorderEvents.endStall(stall, workloadName, "window", maxInFlight);
+			}
+			issue(opNumber, samplingInterval, 0).subscribe(
+					doc -> {},
+					err -> {incrTotalOps();failed(err);inFlight.release();},
+					() -> {incrTotalOps();inFlight.release();}
+			);
+			opNumber++;
+		}
 
-	private Observable<ByteJsonDocument> update(String key, boolean measure) {
-		if (measure) {
-			return Observable.defer(() -> {
-				Stopwatch watch = new Stopwatch().start();
-				return _update(key)
-						.timeout(1, TimeUnit.SECONDS)
-						.doOnTerminate(() -> {
-							watch.stop();
-							addMeasure("set", watch);
-						});
+		inFlight.acquireUninterruptibly(maxInFlight);
+	}
+
+	/**
+	 * Run the ops as one simulated user per thread of the client, each a
+	 * virtual thread which issues an op and blocks until it completes, the
+	 * way the blocking API does. The users share the op numbers, key range
+	 * and measures of this worker.
+	 */
+	private void runUsers(int numOps, int samplingInterval) {
+		int users = Math.max(config.getNumThreads() / config.getNumClients(), 1);
+		ThreadFactory factory = VirtualThreads.factory(getWorkloadName() + "/User-");
+		AtomicLong nextOp = new AtomicLong();
+
+		List<Thread> threads = new ArrayList<>(users);
+		for (int i = 0; i < users; i++) {
+			Thread thread = factory.newThread(() -> {
+				for (long opNumber = nextOp.getAndIncrement(); hasMoreOps(opNumber, numOps);
+						opNumber = nextOp.getAndIncrement()) {
+					try {
+						issue(opNumber, samplingInterval, 0).toBlocking().lastOrDefault(null);
+					} catch (RuntimeException ex) {
+						failed(ex);
+					}
+					incrTotalOps();
+				}
 			});
-		} else {
-			return _update(key);
+			threads.add(thread);
+			thread.start();
+		}
+
+		for (Thread thread : threads) {
+			Uninterruptibles.joinUninterruptibly(thread);
 		}
 	}
 
-	private Observable<ByteJsonDocument> _update(String key) {
-		final ByteJsonDocument document = documentGenerator.getDocument(key);
-		return getBucket().async().upsert(document)
-			.retryWhen(errors -> errors.flatMap((Func1<Throwable, Observable<?>>) throwable -> {
-				if (throwable instanceof BackpressureException) {
-					return Observable.timer(1, TimeUnit.MICROSECONDS);
-				}
-				return Observable.error(throwable);
-			}));
+	/**
+	 * Returns the whole workload as a single non-blocking pipeline: a stream
+	 * of op numbers is mapped onto operations, flatMap keeps max-in-flight
+	 * of them (or a batch size if unset) outstanding, and every completion
+	 * pulls in the next op from the callback thread. Nothing blocks, so no
+	 * worker thread is needed to drive it.
+	 *
+	 * @return an observable which completes once all ops are done.
+	 */
+	public Observable<?> reactive() {
+		int numOps = (opCount() / config.getBatchSize()) * config.getBatchSize();
+		int concurrency = config.getMaxInFlight() > 0 ? config.getMaxInFlight() : config.getBatchSize();
+		int sampling = samplingInterval();
+
+		Observable<Long> opNumbers = Observable.create(SyncOnSubscribe.<Long, Long>createStateful(
+				() -> 0L,
+				(opNumber, observer) -> {
+					if ((mix != null || !runPhase) && hasMoreOps(opNumber, numOps)) {
+						observer.onNext(opNumber);
+					} else {
+						observer.onCompleted();
+					}
+					return opNumber + 1;
+				}));
+
+		return opNumbers
+				.flatMap(opNumber -> nextOperation(opNumber, sampling, 0)
+						.doOnTerminate(this::incrTotalOps)
+						.onErrorResumeNext(err -> {
+							failed(err);
+							return Observable.empty();
+						}), concurrency)
+				.ignoreElements()
+				.doOnSubscribe(this::startTimer)
+				.doOnTerminate(() -> {
+					endTimer();
+					finished = true;
+				});
 	}
 
-	private Observable<ByteJsonDocument> get(String key, boolean measure) {
+	/**
+	 * Build the n-th operation once the backpressure strategy lets the
+	 * worker issue another one.
+	 */
+	private Observable<?> issue(long opNumber, int samplingInterval, long intendedStart) {
+		backpressure.acquire();
+		return nextOperation(opNumber, samplingInterval, intendedStart).doOnTerminate(backpressure::release);
+	}
+
+	/**
+	 * Build the n-th operation: an insert in the load phase, otherwise one
+	 * picked from the operation mix.
+	 */
+	private Observable<?> nextOperation(long opNumber, int samplingInterval, long intendedStart) {
+		boolean measure = isSampled(start + opNumber, samplingInterval);
+		String key = key(opNumber);
+		if (!runPhase) {
+			return counted("insert", insertWorkload(key));
+		}
+		Operation operation = mix.next();
 		if (measure) {
-			return Observable.defer(() -> {
-				Stopwatch watch = new Stopwatch().start();
-				return _get(key)
-						.timeout(1, TimeUnit.SECONDS)
-						.doOnTerminate(() -> {
-							watch.stop();
-							addMeasure("get", watch);
-						});
-			});
+			return counted(operation.getName(),
+					measured(operation.getName(), () -> execute(operation, key), intendedStart));
 		} else {
-			return _get(key);
+			return counted(operation.getName(), execute(operation, key));
+		}
+	}
+
+	/**
+	 * Run the operation, an op which completes without a document (like a
+	 * get of a missing key) ends as not found.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private Observable<?> execute(Operation operation, String key) {
+		String identifier = operation.getName();
+		return operation.execute(getBucket().async(), documentGenerator, key)
+			.retryWhen(errors -> retryOnBackpressure(identifier, errors))
+			.timeout(config.getOpTimeout(), TimeUnit.MILLISECONDS)
+			.switchIfEmpty((Observable) NOT_FOUND);
+	}
+
+	/**
+	 * The ops of this worker: its share of the configured run phase ops, or
+	 * one per key of its range.
+	 */
+	private int opCount() {
+		if (!runPhase || config.getNumOps() <= 0) {
+			return count;
+		}
+		int workers = config.isReactive() || config.isVirtual()
+				? config.getNumClients()
+				: (config.getNumThreads() / config.getNumClients()) * config.getNumClients();
+		return (int) Math.min(config.getNumOps() / ((long) workers * config.getAgentCount()), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs are bounded by the deadline of the window if there is one,
+	 * otherwise by the number of ops assigned to this worker. The load
+	 * phase inserts every key once, so it also ends with its key range.
+	 */
+	private boolean hasMoreOps(long opNumber, int numOps) {
+		if (!runPhase && opNumber >= numOps) {
+			return false;
+		}
+		if (window.isTimeBounded()) {
+			return !window.isExpired(System.nanoTime());
+		}
+		return opNumber < numOps;
+	}
+
+	/**
+	 * Maps the n-th op onto a key through the key chooser.
+	 */
+	protected long keyIndex(long opNumber) {
+		return keyBase + keyChooser.nextKey(opNumber);
+	}
+
+	/**
+	 * @return the document id of the n-th op.
+	 */
+	protected String key(long opNumber) {
+		return keyEncoders.get().encode(keyIndex(opNumber));
+	}
+
+	/**
+	 * Every how many ops of this worker one is measured, 0 for none. The
+	 * reactive and virtual engines run one worker per client.
+	 */
+	private int samplingInterval() {
+		if (config.getSamplingCount() <= 0) {
+			return 0;
 		}
+		return config.getSamplingCount()
+				/ (config.isReactive() || config.isVirtual() ? config.getNumClients() : config.getNumThreads());
+	}
+
+	/**
+	 * The expected interval between the measured ops of a worker, which
+	 * coordinated omission is corrected with. Only every n-th op is measured,
+	 * so the samples a stall hides are that many intervals apart.
+	 *
+	 * @param intervalNanos the interval of the schedule across all workers.
+	 * @param workers the number of workers sharing the schedule.
+	 * @param samplingInterval every how many ops of the worker one is measured.
+	 * @return the expected interval in microseconds.
+	 */
+	static long expectedInterval(long intervalNanos, int workers, int samplingInterval) {
+		return TimeUnit.NANOSECONDS.toMicros(intervalNanos * workers * Math.max(samplingInterval, 1));
+	}
+
+	private static boolean isSampled(long index, int samplingInterval) {
+		return index != 0 && samplingInterval != 0 && index % samplingInterval == 0;
+	}
+
+	/**
+	 * Wrap the operation so its latency gets recorded when it terminates.
+	 *
+	 * In open-loop mode the latency is taken from the intended start of the
+	 * op, unless coordinated omission is corrected at recording time instead.
+	 */
+	private Observable<?> measured(String identifier, Func0<Observable<?>> operation, long intendedStart) {
+		return Observable.defer(() -> {
+			long start = measureFromIntendedStart ? intendedStart : System.nanoTime();
+			return measured(identifier, operation.call(), start, expectedInterval);
+		});
+	}
+
+	/**
+	 * Record the latency of the operation once it terminates, the latencies
+	 * of failed ops go to a separate histogram so they don't skew the ones
+	 * of the successful ops. Measured ops are the sampled ones, so they are
+	 * also the ones emitted to a flight recording.
+	 */
+	protected <T> Observable<T> measured(String identifier, Observable<T> operation, long startNanos,
+										 long expectedInterval) {
+		Object event = FlightRecorderEvents.beginOperation();
+		return operation
+				.doOnCompleted(() -> {
+					addMeasure(identifier, startNanos, expectedInterval);
+					FlightRecorderEvents.endOperation(event, workloadName, identifier,
+							Outcome.SUCCESS.getName(), startNanos);
+				})
+				.doOnError(err -> {
+					addMeasure(identifier + ERROR_SUFFIX, startNanos, expectedInterval);
+					FlightRecorderEvents.endOperation(event, workloadName, identifier,
+							Outcome.of(err).getName(), startNanos);
+				});
 	}
 
-	private Observable<ByteJsonDocument> _get(String key) {
-		return getBucket().async().get(key, ByteJsonDocument.class)
-			.retryWhen(errors -> errors.flatMap((Func1<Throwable, Observable<?>>) throwable -> {
-				if (throwable instanceof BackpressureException) {
-					return Observable.timer(1, TimeUnit.MICROSECONDS);
+	/**
+	 * Count the outcome of the operation once it terminates. Every op is
+	 * counted right before it is issued, so it is also in flight until then.
+	 */
+	protected <T> Observable<T> counted(String identifier, Observable<T> operation) {
+		inFlightOps.increment();
+		return operation
+				.doOnCompleted(() -> {
+					inFlightOps.decrement();
+					outcomes.record(identifier, Outcome.SUCCESS);
+				})
+				.doOnError(err -> {
+					inFlightOps.decrement();
+					outcomes.record(identifier, Outcome.of(err));
+				});
+	}
+
+	/**
+	 * Resubscribe after the delay of the backpressure strategy when the
+	 * request ring buffer is full, unless the strategy fails the op. Fail on
+	 * anything else.
+	 */
+	private Observable<?> retryOnBackpressure(String identifier, Observable<? extends Throwable> errors) {
+		int[] retries = new int[1];
+		return errors.flatMap((Func1<Throwable, Observable<?>>) throwable -> {
+			if (throwable instanceof BackpressureException) {
+				long backoff = backpressure.backoffNanos(retries[0]);
+				FlightRecorderEvents.backpressure(workloadName, identifier, retries[0]++, backoff);
+				if (backoff != BackpressureStrategy.FAIL) {
+					outcomes.record(identifier, Outcome.BACKPRESSURE_RETRY);
+					recordBackoff(identifier, backoff);
+					return Observable.timer(backoff, TimeUnit.NANOSECONDS);
 				}
-				return Observable.error(throwable);
-			}));
+			}
+			return Observable.error(throwable);
+		});
 	}
 
-	private Observable<ByteJsonDocument> insertWorkload(String key) {
+	private Observable<?> insertWorkload(String key) {
+		if (config.isZeroCopy()) {
+			return Observable.using(() -> documentGenerator.getBufferDocument(key), getBucket().async()::insert,
+					document -> document.content().release(), false).timeout(config.getOpTimeout(), TimeUnit.MILLISECONDS);
+		}
 		final ByteJsonDocument document = documentGenerator.getDocument(key);
-		return getBucket().async().insert(document).timeout(1, TimeUnit.SECONDS);
+		return getBucket().async().insert(document).timeout(config.getOpTimeout(), TimeUnit.MILLISECONDS);
 	}
 
 
 	public long getTotalOps() {
-		return totalOps;
+		return totalOps.sum();
 	}
 
-	public synchronized void incrTotalOps() {
-		totalOps++;
+	/**
+	 * @return the ops completed during warmup.
+	 */
+	public long getWarmupOps() {
+		return warmupOps.sum();
+	}
+
+	/**
+	 * An op failed for good, after all retries. It has been counted by its
+	 * outcome already, so the details are only logged for debugging.
+	 */
+	protected void failed(Throwable err) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Operation of " + workloadName + " failed", err);
+		}
+	}
+
+	/**
+	 * @return the outcomes so far per operation type, indexed by {@link Outcome#ordinal()}.
+	 */
+	public Map<String, long[]> getOutcomes() {
+		return outcomes.snapshot();
+	}
+
+	public void incrTotalOps() {
+		totalOps.increment();
+		if (warmingUp) {
+			if (window.isWarmup(System.nanoTime())) {
+				warmupOps.increment();
+			} else {
+				warmingUp = false;
+			}
+		}
 	}
 
 	public void startTimer() {
@@ -219,25 +628,152 @@ public class Workload implements Runnable {
 	}
 
 	/**
-	 * Store a measure for later retrieval.
+	 * Record the latency of an operation which started at the given time.
 	 *
-	 * @param identifier Identifier of the stopwatch.
-	 * @param watch The stopwatch.
+	 * This is called from the callback threads, so it only touches the
+	 * (thread safe) recorder of the operation and never allocates per op.
+	 *
+	 * @param identifier Identifier of the operation.
+	 * @param startNanos The {@link System#nanoTime()} when the operation started.
 	 */
-	public void addMeasure(String identifier, Stopwatch watch) {
-		if (!measures.containsKey(identifier)) {
-			measures.put(identifier, new ArrayList<Stopwatch>());
+	public void addMeasure(String identifier, long startNanos) {
+		addMeasure(identifier, startNanos, 0);
+	}
+
+	/**
+	 * Record the latency of an operation which started at the given time,
+	 * back-filling the samples a stalled op would have hidden.
+	 *
+	 * Ops started during warmup go to separate recorders and are not counted
+	 * as measured.
+	 *
+	 * @param identifier Identifier of the operation.
+	 * @param startNanos The {@link System#nanoTime()} when the operation started.
+	 * @param expectedInterval The expected interval between ops in microseconds, 0 for no correction.
+	 */
+	public void addMeasure(String identifier, long startNanos, long expectedInterval) {
+		long latency = Math.min(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+				HIGHEST_TRACKABLE_LATENCY);
+		if (window.isWarmup(startNanos)) {
+			getRecorder(warmupRecorders, identifier).recordValueWithExpectedInterval(latency, expectedInterval);
+			return;
+		}
+		getRecorder(recorders, identifier).recordValueWithExpectedInterval(latency, expectedInterval);
+		measuredOps.increment();
+	}
+
+	/**
+	 * Record the delay before a backpressure retry, it doesn't count as a
+	 * measured op.
+	 */
+	private void recordBackoff(String identifier, long backoffNanos) {
+		long backoff = Math.min(TimeUnit.NANOSECONDS.toMicros(backoffNanos), HIGHEST_TRACKABLE_LATENCY);
+		Map<String, Recorder> target = window.isWarmup(System.nanoTime()) ? warmupRecorders : recorders;
+		getRecorder(target, identifier + BACKOFF_SUFFIX).recordValue(backoff);
+	}
+
+	private static Recorder getRecorder(Map<String, Recorder> recorders, String identifier) {
+		Recorder recorder = recorders.get(identifier);
+		if (recorder == null) {
+			Recorder created = new Recorder(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+			recorder = recorders.putIfAbsent(identifier, created);
+			if (recorder == null) {
+				recorder = created;
+			}
 		}
-		measures.get(identifier).add(watch);
-		measuredOps++;
+		return recorder;
 	}
 
-	public Map<String, List<Stopwatch>> getMeasures() {
+	/**
+	 * Returns what has been recorded since the last call, per operation type,
+	 * and folds it into the accumulated histograms.
+	 *
+	 * The returned histograms are recycled on the next call, so callers need
+	 * to consume (or merge) them right away.
+	 *
+	 * @return the interval histograms.
+	 */
+	public synchronized Map<String, Histogram> getIntervalMeasures() {
+		Map<String, Histogram> intervals = new HashMap<>();
+		for (Map.Entry<String, Recorder> entry : recorders.entrySet()) {
+			Histogram interval = entry.getValue().getIntervalHistogram(recycled.get(entry.getKey()));
+			Histogram accumulated = measures.get(entry.getKey());
+			if (accumulated == null) {
+				accumulated = newHistogram();
+				measures.put(entry.getKey(), accumulated);
+			}
+			accumulated.add(interval);
+			recycled.put(entry.getKey(), interval);
+			intervals.put(entry.getKey(), interval);
+		}
+		return intervals;
+	}
+
+	/**
+	 * Returns the histograms of everything recorded so far, per operation type.
+	 *
+	 * @return the accumulated histograms.
+	 */
+	public synchronized Map<String, Histogram> getMeasures() {
+		getIntervalMeasures();
 		return measures;
 	}
 
+	/**
+	 * Returns the histograms of the ops started during warmup.
+	 *
+	 * @return the warmup histograms.
+	 */
+	public synchronized Map<String, Histogram> getWarmupMeasures() {
+		Map<String, Histogram> warmup = new HashMap<>();
+		for (Map.Entry<String, Recorder> entry : warmupRecorders.entrySet()) {
+			warmup.put(entry.getKey(), entry.getValue().getIntervalHistogram());
+		}
+		return warmup;
+	}
+
+	/**
+	 * Merge histograms per operation type into the given map.
+	 *
+	 * @param into the map to merge into.
+	 * @param from the histograms to add.
+	 */
+	public static void mergeMeasures(Map<String, Histogram> into, Map<String, Histogram> from) {
+		for (Map.Entry<String, Histogram> entry : from.entrySet()) {
+			Histogram merged = into.get(entry.getKey());
+			if (merged == null) {
+				merged = newHistogram();
+				into.put(entry.getKey(), merged);
+			}
+			merged.add(entry.getValue());
+		}
+	}
+
 	public long getMeasuredOps() {
-		return measuredOps;
+		return measuredOps.sum();
+	}
+
+	/**
+	 * @return the ops issued and not completed yet.
+	 */
+	public long getInFlightOps() {
+		return inFlightOps.sum();
+	}
+
+	/**
+	 * Creates an empty histogram compatible with the ones recorded by workloads.
+	 *
+	 * @return the new histogram.
+	 */
+	public static Histogram newHistogram() {
+		return new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS);
+	}
+
+	/**
+	 * @return true once the worker issued all its ops and they completed.
+	 */
+	public boolean isFinished() {
+		return finished;
 	}
 
 	public Stopwatch totalElapsed() {
@@ -247,6 +783,14 @@ public class Workload implements Runnable {
 		return elapsed;
 	}
 
+	protected GlobalConfig getConfig() {
+		return config;
+	}
+
+	protected RunWindow getWindow() {
+		return window;
+	}
+
 	/**
 	 * @return the bucket
 	 */
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009-2013 Couchbase, Inc.
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALING
+ * IN THE SOFTWARE.
+ */
+
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Picks keys following a zipfian distribution, key 0 being the most popular.
+ *
+ * This is the generator from "Quickly Generating Billion-Record Synthetic
+ * Databases" (Gray et al.), as also used by YCSB. All constants are
+ * computed up front, so choosing a key is a handful of arithmetic ops.
+ */
+public class ZipfianKeyChooser implements KeyChooser {
+
+	public static final double DEFAULT_THETA = 0.99;
+
+	private final long keyCount;
+
+	private final double theta;
+
+	private final double zetan;
+
+	private final double alpha;
+
+	private final double eta;
+
+	public ZipfianKeyChooser(long keyCount) {
+		this(keyCount, DEFAULT_THETA);
+	}
+
+	public ZipfianKeyChooser(long keyCount, double theta) {
+		if (theta <= 0 || theta >= 1) {
+			throw new IllegalArgumentException("Zipfian theta must be between 0 and 1: " + theta);
+		}
+		this.keyCount = keyCount;
+		this.theta = theta;
+		this.zetan = zeta(keyCount, theta);
+		this.alpha = 1.0 / (1.0 - theta);
+		this.eta = (1 - Math.pow(2.0 / keyCount, 1 - theta)) / (1 - zeta(2, theta) / zetan);
+	}
+
+	private static double zeta(long n, double theta) {
+		double sum = 0;
+		for (long i = 0; i < n; i++) {
+			sum += 1 / Math.pow(i + 1, theta);
+		}
+		return sum;
+	}
+
+	@Override
+	public long nextKey(long opNumber) {
+		double u = ThreadLocalRandom.current().nextDouble();
+		double uz = u * zetan;
+		if (uz < 1.0) {
+			return 0;
+		}
+		if (uz < 1.0 + Math.pow(0.5, theta)) {
+			return Math.min(1, keyCount - 1);
+		}
+		return Math.min((long) (keyCount * Math.pow(eta * u - eta + 1, alpha)), keyCount - 1);
+	}
+}
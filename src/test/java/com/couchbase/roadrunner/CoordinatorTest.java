@@ -0,0 +1,121 @@
+package com.couchbase.roadrunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class CoordinatorTest
+{
+    private static final String[] ARGS = {"--coordinator", "0", "--agents", "2", "-i", "0", "-d", "1000"};
+
+    /**
+     * Stands in for the dispatcher of an agent, every agent recorded the
+     * same 100 gets.
+     */
+    private static class AgentResults implements RunResults
+    {
+        private final Histogram gets = Workload.newHistogram();
+
+        AgentResults()
+        {
+            for (int i = 1; i <= 100; i++) {
+                gets.recordValue(i * 10);
+            }
+        }
+
+        public long getTotalOps() { return 500; }
+
+        public long getMeasuredOps() { return 100; }
+
+        public long getInFlightOps() { return 0; }
+
+        public long getWarmupOps() { return 50; }
+
+        public long getWarmupMillis() { return 500; }
+
+        public Map<String, long[]> getOutcomes()
+        {
+            long[] counts = new long[Outcome.values().length];
+            counts[Outcome.SUCCESS.ordinal()] = 497;
+            counts[Outcome.TIMEOUT.ordinal()] = 3;
+            return Collections.singletonMap("get", counts);
+        }
+
+        public Map<String, Histogram> getIntervalMeasures() { return Collections.singletonMap("get", gets); }
+
+        public Map<String, Histogram> getMeasures() { return Collections.singletonMap("get", gets); }
+
+        public Map<String, Histogram> getWarmupMeasures() { return new HashMap<String, Histogram>(); }
+
+        public Map<String, Long> getQueryRows() { return Collections.singletonMap("query-q1", 7L); }
+
+        public List<IntervalReporter.Interval> getThroughput() { return new ArrayList<>(); }
+
+        public List<Long> getThreadElapsedMillis() { return Arrays.asList(1000L, 1200L); }
+    }
+
+    @Test(timeOut = 20000)
+    public void testAgentsOnLocalhost() throws Exception
+    {
+        Coordinator coordinator = new Coordinator(new GlobalConfig(RoadRunner.parseCommandLine(ARGS)), ARGS);
+        ExecutorService threads = Executors.newCachedThreadPool();
+        Future<?> coordinating = threads.submit(() -> {
+            coordinator.run();
+            return null;
+        });
+
+        List<Future<String[]>> agents = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            agents.add(threads.submit(() -> {
+                AgentConnection agent = AgentConnection.connect("localhost:" + coordinator.getPort());
+                AgentResults results = new AgentResults();
+                agent.awaitStart(0);
+                agent.sendInterval(results);
+                agent.awaitStart(1);
+                agent.sendResult(results);
+                agent.close();
+                return agent.getArgs();
+            }));
+        }
+
+        List<String> indexes = new ArrayList<>();
+        for (Future<String[]> agent : agents) {
+            GlobalConfig config = new GlobalConfig(RoadRunner.parseCommandLine(agent.get(10, TimeUnit.SECONDS)));
+            Assert.assertEquals(config.getCoordinatorPort(), 0, "agents do not coordinate");
+            Assert.assertEquals(config.getAgentCount(), 2);
+            Assert.assertEquals(config.getNumDocs(), 1000);
+            indexes.add(String.valueOf(config.getAgentIndex()));
+        }
+        Collections.sort(indexes);
+        Assert.assertEquals(indexes, Arrays.asList("0", "1"));
+
+        coordinating.get(10, TimeUnit.SECONDS);
+        threads.shutdown();
+
+        Assert.assertEquals(coordinator.getTotalOps(), 1000);
+        Assert.assertEquals(coordinator.getMeasuredOps(), 200);
+        Assert.assertEquals(coordinator.getWarmupOps(), 100);
+        Assert.assertEquals(coordinator.getWarmupMillis(), 500);
+        Assert.assertEquals(coordinator.getOutcomes().get("get")[Outcome.SUCCESS.ordinal()], 994);
+        Assert.assertEquals(coordinator.getOutcomes().get("get")[Outcome.TIMEOUT.ordinal()], 6);
+        Histogram gets = coordinator.getMeasures().get("get");
+        Assert.assertEquals(gets.getTotalCount(), 200);
+        Assert.assertEquals(gets.getValueAtPercentile(50.0), 500, 1);
+        Assert.assertEquals(coordinator.getQueryRows().get("query-q1"), Long.valueOf(14));
+        Assert.assertEquals(coordinator.getThreadElapsedMillis().size(), 4);
+        Assert.assertEquals(coordinator.getIntervalMeasures().get("get").getTotalCount(), 200);
+    }
+}
@@ -0,0 +1,87 @@
+package com.couchbase.roadrunner;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.Workload;
+import org.HdrHistogram.Histogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class MetricsEndpointTest
+{
+    @Test
+    public void testScrapeServesPublishedPage() throws Exception
+    {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        String[] args = {"--metrics-port", Integer.toString(port), "--request-buffer-size", "1024"};
+        MetricsEndpoint endpoint = new MetricsEndpoint(new GlobalConfig(RoadRunner.parseCommandLine(args)));
+        endpoint.start();
+        try {
+            URL url = new URL("http://127.0.0.1:" + port + "/metrics");
+            Assert.assertEquals(scrape(url), "");
+
+            long[] counts = new long[Outcome.values().length];
+            counts[Outcome.SUCCESS.ordinal()] = 90;
+            counts[Outcome.TIMEOUT.ordinal()] = 10;
+            counts[Outcome.BACKPRESSURE_RETRY.ordinal()] = 3;
+            counts[Outcome.BACKPRESSURE_REJECTED.ordinal()] = 1;
+            Histogram interval = Workload.newHistogram();
+            interval.recordValue(500);
+            interval.recordValue(1500);
+            Histogram total = Workload.newHistogram();
+            total.add(interval);
+            Histogram backoffs = Workload.newHistogram();
+            backoffs.recordValue(20);
+            Map<String, Histogram> cumulative = new HashMap<>();
+            cumulative.put("get", total);
+            cumulative.put("get" + Workload.BACKOFF_SUFFIX, backoffs);
+
+            endpoint.publish(100, 7, Collections.singletonMap("get", counts),
+                    Collections.singletonMap("get", interval), cumulative);
+            String page = scrape(url);
+
+            Assert.assertTrue(page.contains("# TYPE roadrunner_ops_total counter\nroadrunner_ops_total 100\n"));
+            Assert.assertTrue(page.contains("roadrunner_ops_in_flight 7\n"));
+            Assert.assertTrue(page.contains("roadrunner_outcomes_total{operation=\"get\",outcome=\"timeout\"} 10\n"));
+            Assert.assertTrue(page.contains("roadrunner_request_buffer_capacity 1024\n"));
+            Assert.assertTrue(page.contains("roadrunner_request_buffer_full_total{operation=\"get\"} 4\n"));
+            Assert.assertTrue(page.contains(
+                    "roadrunner_latency_microseconds{operation=\"get\",result=\"success\",quantile=\"0.5\"} 500\n"));
+            Assert.assertTrue(page.contains(
+                    "roadrunner_latency_microseconds_count{operation=\"get\",result=\"success\"} 2\n"));
+            // nothing was recorded in the interval, only the totals are known
+            Assert.assertTrue(page.contains(
+                    "roadrunner_backoff_microseconds{operation=\"get\",quantile=\"0.5\"} NaN\n"));
+            Assert.assertTrue(page.contains("roadrunner_backoff_microseconds_count{operation=\"get\"} 1\n"));
+        } finally {
+            endpoint.stop();
+        }
+    }
+
+    private static String scrape(URL url) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        Assert.assertEquals(connection.getResponseCode(), 200);
+        Assert.assertTrue(connection.getContentType().startsWith("text/plain; version=0.0.4"));
+        try (InputStream in = connection.getInputStream()) {
+            byte[] buffer = new byte[65536];
+            int length = 0;
+            for (int read; (read = in.read(buffer, length, buffer.length - length)) > 0; ) {
+                length += read;
+            }
+            return new String(buffer, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
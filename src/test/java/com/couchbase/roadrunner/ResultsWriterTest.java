@@ -0,0 +1,125 @@
+package com.couchbase.roadrunner;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.couchbase.roadrunner.workloads.Outcome;
+import com.couchbase.roadrunner.workloads.Workload;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.HdrHistogram.Histogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ResultsWriterTest
+{
+    private static final String[] ARGS = {"-d", "1000", "-p", "secret", "--num-ops", "500"};
+
+    private static class Results implements RunResults
+    {
+        private final Histogram gets = Workload.newHistogram();
+
+        private long warmupOps;
+
+        private long warmupMillis;
+
+        Results()
+        {
+            for (int i = 1; i <= 100; i++) {
+                gets.recordValue(i * 10);
+            }
+        }
+
+        public long getTotalOps() { return 500; }
+
+        public long getMeasuredOps() { return 100; }
+
+        public long getInFlightOps() { return 0; }
+
+        public long getWarmupOps() { return warmupOps; }
+
+        public long getWarmupMillis() { return warmupMillis; }
+
+        public Map<String, long[]> getOutcomes()
+        {
+            long[] counts = new long[Outcome.values().length];
+            counts[Outcome.SUCCESS.ordinal()] = 498;
+            counts[Outcome.BACKPRESSURE_RETRY.ordinal()] = 10;
+            counts[Outcome.CAS_MISMATCH.ordinal()] = 2;
+            return Collections.singletonMap("get", counts);
+        }
+
+        public Map<String, Histogram> getIntervalMeasures() { return new HashMap<String, Histogram>(); }
+
+        public Map<String, Histogram> getMeasures() { return Collections.singletonMap("get", gets); }
+
+        public Map<String, Histogram> getWarmupMeasures() { return new HashMap<String, Histogram>(); }
+
+        public Map<String, Long> getQueryRows() { return new HashMap<String, Long>(); }
+
+        public List<IntervalReporter.Interval> getThroughput()
+        {
+            return Arrays.asList(new IntervalReporter.Interval(1.0, 300, 300.0),
+                new IntervalReporter.Interval(2.0, 200, 200.0));
+        }
+
+        public List<Long> getThreadElapsedMillis() { return Arrays.asList(1000L, 1200L); }
+    }
+
+    @Test
+    public void testThroughputLeavesOutWarmup() throws Exception
+    {
+        Results results = new Results();
+        results.warmupOps = 100;
+        results.warmupMillis = 400;
+        Assert.assertEquals(ResultsWriter.opsPerSecond(results, 2000), 250.0, 0.001);
+    }
+
+    private static ResultsWriter writer() throws Exception
+    {
+        return new ResultsWriter(new GlobalConfig(RoadRunner.parseCommandLine(ARGS)), new Results(), 2000);
+    }
+
+    @Test
+    public void testJsonHoldsTheFullHistogram() throws Exception
+    {
+        JsonNode json = writer().toJson();
+        Assert.assertEquals(json.get("totalOps").asLong(), 500);
+        Assert.assertEquals(json.get("errors").asLong(), 2, "retries are no errors");
+        Assert.assertEquals(json.get("outcomes").get("get").get("backpressure-retry").asLong(), 10);
+        Assert.assertEquals(json.get("opsPerSecond").asDouble(), 250.0, 0.001);
+        Assert.assertEquals(json.get("config").get("numDocs").asInt(), 1000);
+        Assert.assertEquals(json.get("config").get("numOps").asLong(), 500);
+        Assert.assertFalse(json.get("config").has("password"), "no secrets in the results");
+        Assert.assertTrue(json.get("environment").get("availableProcessors").asInt() > 0);
+        Assert.assertEquals(json.get("throughput").size(), 2);
+        Assert.assertEquals(json.get("throughput").get(1).get("ops").asLong(), 200);
+
+        JsonNode get = json.get("operations").get("get");
+        Assert.assertEquals(get.get("count").asLong(), 100);
+        Assert.assertEquals(get.get("percentiles").get("50").asLong(), 500, 1);
+        Histogram decoded = Histogram.decodeFromCompressedByteBuffer(
+            ByteBuffer.wrap(Base64.getDecoder().decode(get.get("histogram").asText())),
+            Workload.HIGHEST_TRACKABLE_LATENCY);
+        Assert.assertEquals(decoded.getTotalCount(), 100);
+        Assert.assertEquals(decoded.getValueAtPercentile(99.9), 1000, 1);
+    }
+
+    @Test
+    public void testCsvSummary() throws Exception
+    {
+        StringWriter out = new StringWriter();
+        writer().writeCsv(out);
+        String[] lines = out.toString().split("\n");
+        Assert.assertEquals(lines.length, 2);
+        Assert.assertEquals(lines[0], "operation,count,warmup,min,mean,p50,p75,p90,p95,p99,p99.9,p99.99,max,"
+            + "success,timeout,backpressure-retry,backpressure-rejected,temp-failure,not-found,cas-mismatch,other");
+        Assert.assertTrue(lines[1].startsWith("get,100,0,10,505.0,"), lines[1]);
+        Assert.assertTrue(lines[1].endsWith(",498,0,10,0,0,0,2,0"), lines[1]);
+    }
+}
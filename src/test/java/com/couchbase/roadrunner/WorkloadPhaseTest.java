@@ -0,0 +1,54 @@
+package com.couchbase.roadrunner;
+
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class WorkloadPhaseTest
+{
+    private static final String[] ARGS = {"-n", "10.0.0.1", "-t", "4", "--op-mix", "get=100", "-D", "30"};
+
+    @Test
+    public void testPhasesOverrideTheCommandLine() throws Exception
+    {
+        List<WorkloadPhase> phases = WorkloadPhase.fromJson(new ObjectMapper().readTree(
+                "{\"phases\": ["
+                        + "{\"name\": \"load\", \"phase\": \"load\"},"
+                        + "{\"name\": \"spike\", \"op-mix\": \"get=70,set=30\", \"target-ops\": 150000,"
+                        + " \"num-threads\": 16, \"zero-copy\": true},"
+                        + "{}"
+                        + "]}"), ARGS);
+
+        Assert.assertEquals(phases.size(), 3);
+        Assert.assertEquals(phases.get(0).getName(), "load");
+        Assert.assertEquals(phases.get(0).getConfig().getPhase(), "load");
+        Assert.assertEquals(phases.get(0).getConfig().getNumThreads(), 4, "taken from the command line");
+
+        GlobalConfig spike = phases.get(1).getConfig();
+        Assert.assertEquals(spike.getOpMix(), "get=70,set=30");
+        Assert.assertEquals(spike.getTargetOps(), 150000);
+        Assert.assertEquals(spike.getNumThreads(), 16);
+        Assert.assertTrue(spike.isZeroCopy());
+        Assert.assertEquals(spike.getDuration(), 30);
+        Assert.assertEquals(spike.getNodes().get(0), "10.0.0.1");
+
+        Assert.assertEquals(phases.get(2).getName(), "phase-3");
+        Assert.assertEquals(phases.get(1).measureName("get"), "spike/get");
+        Assert.assertEquals(WorkloadPhase.single(spike).get(0).measureName("get"), "get");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testSharedOptionsCannotBeOverridden() throws Exception
+    {
+        WorkloadPhase.fromJson(new ObjectMapper().readTree(
+                "{\"phases\": [{\"name\": \"other\", \"bucket\": \"travel-sample\"}]}"), ARGS);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testPhasesAreRequired() throws Exception
+    {
+        WorkloadPhase.fromJson(new ObjectMapper().readTree("{\"phases\": []}"), ARGS);
+    }
+}
@@ -0,0 +1,72 @@
+package com.couchbase.roadrunner.events;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class FlightRecorderEventsTest
+{
+    @Test
+    public void testNothingIsBuiltWithoutRecording()
+    {
+        Assert.assertNull(FlightRecorderEvents.beginOperation());
+        Assert.assertNull(FlightRecorderEvents.beginStall());
+        Assert.assertNull(FlightRecorderEvents.beginPhase());
+        FlightRecorderEvents.endOperation(null, "Workload", "get", "success", System.nanoTime());
+        FlightRecorderEvents.endStall(null, "Workload", "batch", 100);
+    }
+
+    @Test
+    public void testEventsAreRecorded() throws IOException
+    {
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(OperationEvent.class);
+            recording.enable(StallEvent.class).withThreshold(Duration.ZERO);
+            recording.enable(BackpressureEvent.class);
+            recording.start();
+
+            long start = System.nanoTime();
+            FlightRecorderEvents.endOperation(FlightRecorderEvents.beginOperation(), "Workload-1", "get",
+                    "not-found", start);
+            FlightRecorderEvents.endStall(FlightRecorderEvents.beginStall(), "Workload-1", "window", 64);
+            FlightRecorderEvents.backpressure("Workload-1", "set", 2, 40000);
+
+            recording.stop();
+            File file = File.createTempFile("roadrunner", ".jfr");
+            file.deleteOnExit();
+            recording.dump(file.toPath());
+            events = RecordingFile.readAllEvents(file.toPath());
+        }
+
+        RecordedEvent operation = find(events, "com.couchbase.roadrunner.Operation");
+        Assert.assertEquals(operation.getString("workload"), "Workload-1");
+        Assert.assertEquals(operation.getString("operation"), "get");
+        Assert.assertEquals(operation.getString("outcome"), "not-found");
+
+        RecordedEvent stall = find(events, "com.couchbase.roadrunner.Stall");
+        Assert.assertEquals(stall.getString("kind"), "window");
+        Assert.assertEquals(stall.getInt("ops"), 64);
+
+        RecordedEvent backpressure = find(events, "com.couchbase.roadrunner.Backpressure");
+        Assert.assertEquals(backpressure.getInt("retry"), 2);
+        Assert.assertEquals(backpressure.getDuration("backoff").toNanos(), 40000);
+    }
+
+    private static RecordedEvent find(List<RecordedEvent> events, String name)
+    {
+        for (RecordedEvent event : events) {
+            if (event.getEventType().getName().equals(name)) {
+                return event;
+            }
+        }
+        throw new AssertionError("No " + name + " event recorded");
+    }
+}
@@ -0,0 +1,141 @@
+package com.couchbase.roadrunner.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import com.couchbase.client.deps.io.netty.buffer.ByteBuf;
+import com.couchbase.client.deps.io.netty.buffer.Unpooled;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.Cluster;
+import com.couchbase.client.java.CouchbaseCluster;
+import com.couchbase.client.java.document.JsonDocument;
+import com.couchbase.client.java.document.JsonLongDocument;
+import com.couchbase.client.java.document.StringDocument;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.env.CouchbaseEnvironment;
+import com.couchbase.client.java.env.DefaultCouchbaseEnvironment;
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentAlreadyExistsException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+public class MockClusterTest
+{
+    private MockCluster mock;
+
+    @BeforeClass
+    public void start() throws InterruptedException
+    {
+        mock = new MockCluster("default", 0);
+        mock.start(0, 0);
+    }
+
+    @AfterClass
+    public void stop() throws InterruptedException
+    {
+        mock.stop();
+    }
+
+    @Test
+    public void shouldServeTheSdkOverTheCarrier()
+    {
+        DefaultCouchbaseEnvironment env = DefaultCouchbaseEnvironment.builder()
+            .bootstrapHttpEnabled(false)
+            .bootstrapCarrierDirectPort(mock.getKvPort())
+            .build();
+        runOperations(env, "carrier");
+    }
+
+    @Test
+    public void shouldServeTheSdkOverHttp()
+    {
+        DefaultCouchbaseEnvironment env = DefaultCouchbaseEnvironment.builder()
+            .bootstrapCarrierEnabled(false)
+            .bootstrapCarrierDirectPort(mock.getKvPort())
+            .bootstrapHttpDirectPort(mock.getHttpPort())
+            .build();
+        runOperations(env, "http");
+    }
+
+    private void runOperations(CouchbaseEnvironment env, String prefix)
+    {
+        Cluster cluster = CouchbaseCluster.create(env, mock.getHost());
+        try {
+            Bucket bucket = cluster.openBucket("default", 10, TimeUnit.SECONDS);
+
+            JsonDocument stored = bucket.upsert(JsonDocument.create(prefix + "-doc",
+                JsonObject.create().put("name", "roadrunner")));
+            JsonDocument read = bucket.get(prefix + "-doc");
+            Assert.assertEquals(read.content().getString("name"), "roadrunner");
+            Assert.assertEquals(read.cas(), stored.cas());
+            Assert.assertNull(bucket.get(prefix + "-missing"));
+
+            try {
+                bucket.insert(JsonDocument.create(prefix + "-doc", JsonObject.empty()));
+                Assert.fail();
+            } catch (DocumentAlreadyExistsException expected) {
+            }
+            try {
+                bucket.replace(JsonDocument.create(prefix + "-doc", JsonObject.empty(), stored.cas() + 1));
+                Assert.fail();
+            } catch (CASMismatchException expected) {
+            }
+            bucket.replace(JsonDocument.create(prefix + "-doc", JsonObject.empty(), stored.cas()));
+            Assert.assertTrue(bucket.get(prefix + "-doc").content().isEmpty());
+
+            JsonDocument locked = bucket.getAndLock(prefix + "-doc", 5);
+            try {
+                bucket.upsert(JsonDocument.create(prefix + "-doc", JsonObject.empty()));
+                Assert.fail();
+            } catch (TemporaryFailureException expected) {
+            }
+            Assert.assertEquals(bucket.get(prefix + "-doc").cas(), OffHeapStore.LOCKED_CAS);
+            Assert.assertTrue(bucket.unlock(prefix + "-doc", locked.cas()));
+            bucket.upsert(JsonDocument.create(prefix + "-doc", JsonObject.empty()));
+
+            Assert.assertEquals(bucket.counter(prefix + "-counter", 5, 10).content().longValue(), 10);
+            Assert.assertEquals(bucket.counter(prefix + "-counter", 5).content().longValue(), 15);
+            Assert.assertEquals(bucket.counter(prefix + "-counter", -20).content().longValue(), 0);
+            Assert.assertEquals(bucket.get(prefix + "-counter", JsonLongDocument.class).content().longValue(), 0);
+
+            bucket.upsert(StringDocument.create(prefix + "-text", "b"));
+            bucket.append(StringDocument.create(prefix + "-text", "c"));
+            bucket.prepend(StringDocument.create(prefix + "-text", "a"));
+            Assert.assertEquals(bucket.get(prefix + "-text", StringDocument.class).content(), "abc");
+
+            bucket.remove(prefix + "-doc");
+            try {
+                bucket.remove(prefix + "-doc");
+                Assert.fail();
+            } catch (DocumentDoesNotExistException expected) {
+            }
+        } finally {
+            cluster.disconnect();
+            env.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldCompactReplacedDocuments()
+    {
+        OffHeapStore store = new OffHeapStore(1);
+        ByteBuf value = Unpooled.wrappedBuffer(new byte[1000]);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 100; i++) {
+                ByteBuf key = Unpooled.copiedBuffer("key" + i, StandardCharsets.UTF_8);
+                Assert.assertTrue(store.store(OffHeapStore.Mode.SET, key, value, round, 0, 0) > 0);
+            }
+        }
+        Assert.assertEquals(store.size(), 100);
+        Assert.assertTrue(store.memoryUsed() < 5 * 1024 * 1024, "used " + store.memoryUsed());
+
+        ByteBuf out = Unpooled.buffer();
+        Assert.assertTrue(store.read(Unpooled.copiedBuffer("key42", StandardCharsets.UTF_8), out, 0) > 0);
+        Assert.assertEquals(out.readInt(), 99);
+        Assert.assertEquals(out.readableBytes(), 1000);
+    }
+}
@@ -0,0 +1,84 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class BackpressureStrategyTest
+{
+    @Test
+    public void testCreate()
+    {
+        Assert.assertTrue(BackpressureStrategies.create("immediate", 1) instanceof ImmediateRetryStrategy);
+        Assert.assertTrue(BackpressureStrategies.create("backoff:5:500", 1) instanceof ExponentialBackoffStrategy);
+        Assert.assertTrue(BackpressureStrategies.create("aimd", 1) instanceof AimdStrategy);
+        Assert.assertEquals(BackpressureStrategies.create("fail-fast", 1).backoffNanos(0), BackpressureStrategy.FAIL);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownStrategy()
+    {
+        BackpressureStrategies.create("spin", 1);
+    }
+
+    @Test
+    public void testBackoffGrowsUpToTheMaximum()
+    {
+        BackpressureStrategy backoff = BackpressureStrategies.create("backoff:10:1000", 1);
+        long min = TimeUnit.MICROSECONDS.toNanos(10);
+        long max = TimeUnit.MICROSECONDS.toNanos(1000);
+        Assert.assertEquals(backoff.backoffNanos(0), min);
+        for (int retry = 1; retry < 100; retry++) {
+            long delay = backoff.backoffNanos(retry);
+            Assert.assertTrue(delay >= min, "at least the minimum");
+            Assert.assertTrue(delay <= Math.min(min << Math.min(retry, 20), max), "at most the bound of retry " + retry);
+        }
+    }
+
+    @Test
+    public void testAimdHalvesAndRecovers()
+    {
+        AimdStrategy aimd = new AimdStrategy(8, new ImmediateRetryStrategy());
+        Assert.assertEquals(aimd.getLimit(), 8);
+        aimd.backoffNanos(0);
+        Assert.assertEquals(aimd.getLimit(), 4);
+
+        // about one more op per limit's worth of completions
+        complete(aimd, 4 + 5 + 6);
+        Assert.assertEquals(aimd.getLimit(), 6);
+        complete(aimd, 100);
+        Assert.assertEquals(aimd.getLimit(), 8, "never above the maximum");
+
+        AimdStrategy single = new AimdStrategy(1, new ImmediateRetryStrategy());
+        single.backoffNanos(0);
+        Assert.assertEquals(single.getLimit(), 1, "never below one op");
+    }
+
+    @Test
+    public void testAimdHalvesOncePerWindow()
+    {
+        AimdStrategy aimd = new AimdStrategy(8, new ImmediateRetryStrategy());
+        // the full ring buffer turns away every op in flight at once
+        for (int i = 0; i < 8; i++) {
+            aimd.backoffNanos(0);
+        }
+        Assert.assertEquals(aimd.getLimit(), 4, "one decrease for the burst");
+
+        complete(aimd, 3);
+        aimd.backoffNanos(0);
+        Assert.assertEquals(aimd.getLimit(), 4, "less than a window completed since");
+
+        complete(aimd, 1);
+        aimd.backoffNanos(0);
+        Assert.assertEquals(aimd.getLimit(), 2);
+    }
+
+    private static void complete(AimdStrategy aimd, int ops)
+    {
+        for (int i = 0; i < ops; i++) {
+            aimd.acquire();
+            aimd.release();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.couchbase.roadrunner.customConverter.ByteBufJsonDocument;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class DocumentGeneratorTest
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    public void testPooledPayloadsDiffer() throws Exception
+    {
+        DocumentGenerator generator = new DocumentGenerator("Device", 16);
+        JsonNode sample = MAPPER.readTree(new DocumentGenerator("Device").render());
+        Set<String> payloads = new HashSet<String>();
+        for (int slot = 0; slot < 16; slot++) {
+            byte[] payload = generator.render(slot);
+            JsonNode document = MAPPER.readTree(payload);
+            payloads.add(new String(payload, "UTF-8"));
+            // same shape as the sample class
+            Assert.assertEquals(document.size(), sample.size());
+            Assert.assertTrue(document.get("lastSyncedTime").isIntegralNumber());
+        }
+        Assert.assertEquals(payloads.size(), 16);
+        Assert.assertEquals(generator.render(3), generator.render(3), "slots are seeded");
+    }
+
+    @Test
+    public void testCloseReleasesPooledBuffers()
+    {
+        DocumentGenerator generator = new DocumentGenerator("Device", 1);
+        ByteBufJsonDocument document = generator.getBufferDocument("doc");
+        Assert.assertEquals(document.content().refCnt(), 2);
+
+        generator.close();
+        Assert.assertEquals(document.content().refCnt(), 1, "in flight documents keep the buffer");
+        document.content().release();
+        Assert.assertEquals(document.content().refCnt(), 0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownSampleClassFails()
+    {
+        new DocumentGenerator("NoSuchClass");
+    }
+}
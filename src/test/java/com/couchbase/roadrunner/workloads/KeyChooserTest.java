@@ -0,0 +1,92 @@
+package com.couchbase.roadrunner.workloads;
+
+import com.couchbase.roadrunner.GlobalConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KeyChooserTest
+{
+    private static final long KEYS = 1000;
+    private static final int OPS = 100000;
+
+    @Test
+    public void testAllDistributionsStayInRange()
+    {
+        String[] specs = {"sequential", "uniform", "zipfian", "scrambled", "latest", "hotspot:0.1:0.9"};
+        for (String spec : specs) {
+            KeyChooser chooser = KeyChoosers.create(spec, KEYS);
+            for (long op = 0; op < OPS; op++) {
+                long key = chooser.nextKey(op);
+                Assert.assertTrue(key >= 0 && key < KEYS, spec + " chose " + key);
+            }
+        }
+    }
+
+    @Test
+    public void testSequentialWrapsAround()
+    {
+        KeyChooser chooser = new SequentialKeyChooser(KEYS);
+        Assert.assertEquals(chooser.nextKey(5), 5);
+        Assert.assertEquals(chooser.nextKey(KEYS + 5), 5);
+    }
+
+    @Test
+    public void testZipfianIsSkewed()
+    {
+        KeyChooser chooser = new ZipfianKeyChooser(KEYS);
+        int first = 0;
+        for (long op = 0; op < OPS; op++) {
+            if (chooser.nextKey(op) < KEYS / 100) {
+                first++;
+            }
+        }
+        Assert.assertTrue(first > OPS / 3, "top 1% of keys got " + first + " ops");
+    }
+
+    @Test
+    public void testHotspotFraction()
+    {
+        KeyChooser chooser = new HotspotKeyChooser(KEYS, 0.1, 0.9);
+        int hot = 0;
+        for (long op = 0; op < OPS; op++) {
+            if (chooser.nextKey(op) < KEYS / 10) {
+                hot++;
+            }
+        }
+        Assert.assertEquals(hot / (double) OPS, 0.9, 0.02, "hot op fraction");
+    }
+
+    @Test
+    public void testSharedZipfianIsSkewedAcrossWorkers() throws Exception
+    {
+        int workers = 8;
+        int slice = (int) KEYS / workers;
+        KeyChooser shared = KeyChoosers.createShared("zipfian", KEYS);
+        GlobalConfig config = WorkloadTest.config("--key-distribution", "zipfian");
+        long[] counts = new long[(int) KEYS];
+        for (int w = 0; w < workers; w++) {
+            Workload worker = new Workload("Workload-" + (w + 1), null, config, null, slice, w * slice, null,
+                    new RunWindow(0, 0), shared, 0);
+            for (long op = 0; op < OPS / workers; op++) {
+                counts[(int) worker.keyIndex(op)]++;
+            }
+        }
+        for (int w = 1; w < workers; w++) {
+            Assert.assertTrue(counts[w * slice] * 10 < counts[0],
+                    "first key of slice " + w + " got " + counts[w * slice] + " ops, key 0 got " + counts[0]);
+        }
+    }
+
+    @Test
+    public void testSequentialIsNotShared()
+    {
+        Assert.assertNull(KeyChoosers.createShared("sequential", KEYS));
+        Assert.assertTrue(KeyChoosers.createShared("latest:0.9", KEYS) instanceof LatestKeyChooser);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownDistribution()
+    {
+        KeyChoosers.create("gaussian", KEYS);
+    }
+}
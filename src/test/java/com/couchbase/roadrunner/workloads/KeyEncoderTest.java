@@ -0,0 +1,59 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class KeyEncoderTest
+{
+    @Test
+    public void testPaddedKeysAreFixedWidth()
+    {
+        KeyEncoder encoder = KeyEncoder.create("Doc", "padded");
+        Assert.assertEquals(encoder.encode(0), "Doc0000000000");
+        Assert.assertEquals(encoder.encode(7), "Doc0000000007");
+        Assert.assertEquals(encoder.encode(1234567), "Doc0001234567");
+        Assert.assertEquals(encoder.encode(12345678901L), "Doc12345678901");
+        Assert.assertEquals(encoder.encode(Long.MAX_VALUE), "Doc" + Long.MAX_VALUE);
+        // the buffer is reused, a shorter key after a longer one must not keep its tail
+        Assert.assertEquals(encoder.encode(42), "Doc0000000042");
+    }
+
+    @Test
+    public void testPaddedKeysMatchDecimalFormatting()
+    {
+        KeyEncoder encoder = KeyEncoder.create("", "padded");
+        for (long index = 0; index < 100000; index += 7) {
+            Assert.assertEquals(Long.parseLong(encoder.encode(index)), index);
+        }
+    }
+
+    @Test
+    public void testHashedKeysAreDistinctAndFixedWidth()
+    {
+        KeyEncoder encoder = KeyEncoder.create("Doc", "hashed");
+        Set<String> keys = new HashSet<String>();
+        for (long index = 0; index < 100000; index++) {
+            String key = encoder.encode(index);
+            Assert.assertEquals(key.length(), 3 + 16);
+            Assert.assertTrue(key.startsWith("Doc"));
+            keys.add(key);
+        }
+        Assert.assertEquals(keys.size(), 100000);
+        Assert.assertEquals(encoder.encode(5), "Doc" + String.format("%016x", KeyEncoder.mix(5)));
+    }
+
+    @Test
+    public void testNonAsciiPrefix()
+    {
+        Assert.assertEquals(KeyEncoder.create("Dök-", "padded").encode(3), "Dök-0000000003");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownFormat()
+    {
+        KeyEncoder.create("Doc", "base64");
+    }
+}
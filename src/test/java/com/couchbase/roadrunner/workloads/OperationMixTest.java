@@ -0,0 +1,97 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.couchbase.client.java.AsyncBucket;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import rx.Observable;
+
+public class OperationMixTest
+{
+    private static final int OPS = 100000;
+
+    public static class NoopOperation implements Operation
+    {
+        @Override
+        public String getName()
+        {
+            return "noop";
+        }
+
+        @Override
+        public Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key)
+        {
+            return Observable.empty();
+        }
+    }
+
+    @Test
+    public void testFollowsWeights()
+    {
+        Map<Operation, Double> weights = new LinkedHashMap<>();
+        weights.put(new GetOperation(false), 70.0);
+        weights.put(new ReplaceOperation(), 20.0);
+        weights.put(new CounterOperation(), 7.0);
+        weights.put(new TouchOperation(), 3.0);
+        OperationMix mix = new OperationMix(weights);
+
+        Map<String, Integer> picked = new HashMap<>();
+        for (int i = 0; i < OPS; i++) {
+            picked.merge(mix.next().getName(), 1, Integer::sum);
+        }
+        Assert.assertEquals(picked.get("get") / (double) OPS, 0.70, 0.01, "get fraction");
+        Assert.assertEquals(picked.get("replace") / (double) OPS, 0.20, 0.01, "replace fraction");
+        Assert.assertEquals(picked.get("counter") / (double) OPS, 0.07, 0.01, "counter fraction");
+        Assert.assertEquals(picked.get("touch") / (double) OPS, 0.03, 0.01, "touch fraction");
+    }
+
+    @Test
+    public void testInterleaves()
+    {
+        Map<Operation, Double> weights = new LinkedHashMap<>();
+        weights.put(new SetOperation(false), 50.0);
+        weights.put(new GetOperation(false), 50.0);
+        OperationMix mix = new OperationMix(weights);
+
+        int switches = 0;
+        String last = mix.next().getName();
+        for (int i = 0; i < 1000; i++) {
+            String name = mix.next().getName();
+            if (!name.equals(last)) {
+                switches++;
+            }
+            last = name;
+        }
+        Assert.assertTrue(switches > 300, "only " + switches + " switches between set and get");
+    }
+
+    @Test
+    public void testCreatesOperationsByName()
+    {
+        Map<String, String> paths = Collections.singletonMap("get", "a.b");
+        String[] names = {"set", "get", "replace", "remove", "touch", "counter", "append", "prepend",
+                "get-and-lock", "get-replica", "subdoc-get"};
+        for (String name : names) {
+            Assert.assertEquals(OperationMix.createOperation(name, false, paths).getName(), name);
+        }
+        Assert.assertEquals(OperationMix.createOperation(NoopOperation.class.getName(), false, paths).getName(),
+                "noop");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownOperation()
+    {
+        OperationMix.createOperation("flush", false, Collections.<String, String>emptyMap());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class,
+            expectedExceptionsMessageRegExp = ".*AppendOperation")
+    public void testOperationNeedsNoArgConstructor()
+    {
+        OperationMix.createOperation(AppendOperation.class.getName(), false, Collections.<String, String>emptyMap());
+    }
+}
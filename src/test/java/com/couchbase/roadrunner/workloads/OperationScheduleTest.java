@@ -0,0 +1,34 @@
+package com.couchbase.roadrunner.workloads;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class OperationScheduleTest
+{
+    @Test
+    public void testEvenlySpacedStarts()
+    {
+        OperationSchedule schedule = new OperationSchedule(1000);
+        Assert.assertEquals(schedule.getIntervalNanos(), 1000000L, "interval for 1000 ops/s");
+
+        long first = schedule.next();
+        long second = schedule.next();
+        long third = schedule.next();
+        Assert.assertEquals(second - first, 1000000L, "spacing");
+        Assert.assertEquals(third - second, 1000000L, "spacing");
+    }
+
+    @Test
+    public void testAwaitTime()
+    {
+        long deadline = System.nanoTime() + 2000000L;
+        OperationSchedule.awaitTime(deadline);
+        Assert.assertTrue(System.nanoTime() >= deadline, "returned before deadline");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectsNonPositiveRate()
+    {
+        new OperationSchedule(0);
+    }
+}
@@ -0,0 +1,69 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import com.couchbase.client.core.BackpressureException;
+import com.couchbase.client.java.error.CASMismatchException;
+import com.couchbase.client.java.error.DocumentDoesNotExistException;
+import com.couchbase.client.java.error.TemporaryFailureException;
+import com.couchbase.roadrunner.GlobalConfig;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import rx.Observable;
+
+public class OutcomeCountersTest
+{
+    @Test
+    public void testClassification()
+    {
+        Assert.assertEquals(Outcome.of(new TimeoutException()), Outcome.TIMEOUT);
+        Assert.assertEquals(Outcome.of(new TemporaryFailureException()), Outcome.TEMP_FAILURE);
+        Assert.assertEquals(Outcome.of(new DocumentDoesNotExistException()), Outcome.NOT_FOUND);
+        Assert.assertEquals(Outcome.of(new CASMismatchException()), Outcome.CAS_MISMATCH);
+        Assert.assertEquals(Outcome.of(new BackpressureException()), Outcome.BACKPRESSURE_REJECTED);
+        Assert.assertEquals(Outcome.of(new IllegalStateException()), Outcome.OTHER);
+        Assert.assertFalse(Outcome.BACKPRESSURE_RETRY.isError(), "a retry is no error");
+        Assert.assertTrue(Outcome.NOT_FOUND.isError(), "not found is");
+        Assert.assertTrue(Outcome.BACKPRESSURE_REJECTED.isError(), "so is a rejection");
+    }
+
+    @Test
+    public void testCountAndMerge()
+    {
+        OutcomeCounters counters = new OutcomeCounters();
+        for (int i = 0; i < 10; i++) {
+            counters.record("get", Outcome.SUCCESS);
+        }
+        counters.record("get", Outcome.TIMEOUT);
+        counters.record("set", Outcome.CAS_MISMATCH);
+
+        Map<String, long[]> merged = new HashMap<>();
+        OutcomeCounters.merge(merged, counters.snapshot());
+        OutcomeCounters.merge(merged, counters.snapshot());
+        Assert.assertEquals(merged.get("get")[Outcome.SUCCESS.ordinal()], 20);
+        Assert.assertEquals(OutcomeCounters.errors(merged.get("get")), 2);
+        Assert.assertEquals(OutcomeCounters.format(merged.get("get")), "success=20 timeout=2");
+        Assert.assertEquals(OutcomeCounters.format(merged.get("set")), "cas-mismatch=2");
+    }
+
+    @Test
+    public void testWorkloadCountsAndSplitsLatencies() throws Exception
+    {
+        GlobalConfig config = new GlobalConfig(new GnuParser().parse(new Options(), new String[0]));
+        Workload workload = new Workload("test", null, config, null, 1, 0);
+        long start = System.nanoTime();
+        workload.counted("get", workload.measured("get", Observable.just(1), start, 0))
+            .subscribe();
+        workload.counted("get", workload.measured("get", Observable.error(new TimeoutException()), start, 0))
+            .subscribe(value -> {}, err -> {});
+
+        Assert.assertEquals(workload.getOutcomes().get("get")[Outcome.SUCCESS.ordinal()], 1);
+        Assert.assertEquals(workload.getOutcomes().get("get")[Outcome.TIMEOUT.ordinal()], 1);
+        Assert.assertEquals(workload.getMeasures().get("get").getTotalCount(), 1);
+        Assert.assertEquals(workload.getMeasures().get("get" + Workload.ERROR_SUFFIX).getTotalCount(), 1);
+    }
+}
@@ -0,0 +1,103 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.client.java.document.json.JsonArray;
+import com.couchbase.client.java.document.json.JsonObject;
+import com.couchbase.client.java.query.AsyncN1qlQueryRow;
+import com.couchbase.client.java.query.DefaultAsyncN1qlQueryResult;
+import com.couchbase.client.java.query.DefaultAsyncN1qlQueryRow;
+import com.couchbase.client.java.query.N1qlMetrics;
+import com.couchbase.client.java.query.N1qlQuery;
+import com.couchbase.roadrunner.GlobalConfig;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import rx.Observable;
+
+public class QueryWorkloadTest
+{
+    private static final List<QueryTemplate> TEMPLATES = Arrays.asList(
+            new QueryTemplate("by-key", "SELECT * FROM `default` USE KEYS $1", "$key"),
+            new QueryTemplate("all", "SELECT * FROM `default` LIMIT 3"));
+
+    @Test
+    public void testRecordsLatencyAndRowsPerStatement() throws Exception
+    {
+        AtomicReference<N1qlQuery> sent = new AtomicReference<>();
+        QueryWorkload workload = new QueryWorkload("test", cannedBucket(sent, 3, null), defaults(), null,
+                10, 0, new RunWindow(0, 0), TEMPLATES, 1, null, 0);
+
+        Assert.assertEquals(workload.query(0).toBlocking().single(), Integer.valueOf(3));
+        JsonObject request = sent.get().n1ql();
+        Assert.assertEquals(request.getString("statement"), "SELECT * FROM `default` USE KEYS $1");
+        Assert.assertEquals(((JsonArray) request.get("args")).getString(0), workload.key(0));
+        Assert.assertEquals(sent.get().params().isAdhoc(), false, "statements are prepared");
+
+        workload.query(1).toBlocking().single();
+        Assert.assertEquals(workload.getMeasures().get("query-by-key").getTotalCount(), 1);
+        Assert.assertEquals(workload.getMeasures().get("query-all").getTotalCount(), 1);
+        Assert.assertEquals(workload.getRows().get("query-by-key"), Long.valueOf(3));
+    }
+
+    @Test(expectedExceptions = RuntimeException.class)
+    public void testQueryErrorsFail() throws Exception
+    {
+        QueryWorkload workload = new QueryWorkload("test",
+                cannedBucket(new AtomicReference<>(), 0, JsonObject.create().put("msg", "syntax error")),
+                defaults(), null, 10, 0, new RunWindow(0, 0), TEMPLATES, 1, null, 0);
+        workload.query(0).toBlocking().single();
+    }
+
+    @Test
+    public void testTemplateFile() throws Exception
+    {
+        List<QueryTemplate> templates = QueryTemplate.fromJson(new com.fasterxml.jackson.databind.ObjectMapper()
+                .readTree("[{\"statement\": \"SELECT 1\"}, {\"name\": \"p\", \"statement\": \"SELECT $1\","
+                        + " \"params\": [\"$int:5:6\"]}]"));
+        Assert.assertEquals(templates.get(0).getName(), "q1");
+        JsonObject request = templates.get(1).bind("k", 1, null).n1ql();
+        Assert.assertEquals(((JsonArray) request.get("args")).getLong(0), Long.valueOf(5));
+    }
+
+    private static GlobalConfig defaults() throws Exception
+    {
+        return new GlobalConfig(new GnuParser().parse(new Options(), new String[0]));
+    }
+
+    /**
+     * A bucket standing in for the query service, answering every statement
+     * with the same rows (or errors).
+     */
+    private static Bucket cannedBucket(AtomicReference<N1qlQuery> sent, int rows, JsonObject error)
+    {
+        AsyncN1qlQueryRow[] canned = new AsyncN1qlQueryRow[rows];
+        for (int i = 0; i < rows; i++) {
+            canned[i] = new DefaultAsyncN1qlQueryRow(("{\"id\":" + i + "}").getBytes());
+        }
+        AsyncBucket async = (AsyncBucket) Proxy.newProxyInstance(QueryWorkloadTest.class.getClassLoader(),
+                new Class<?>[]{AsyncBucket.class}, (proxy, method, args) -> {
+                    if (!"query".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    sent.set((N1qlQuery) args[0]);
+                    return Observable.just(new DefaultAsyncN1qlQueryResult(Observable.from(canned),
+                            Observable.empty(), Observable.<N1qlMetrics>empty(),
+                            error == null ? Observable.<JsonObject>empty() : Observable.just(error),
+                            Observable.just(error == null ? "success" : "errors"), true, "request", ""));
+                });
+        return (Bucket) Proxy.newProxyInstance(QueryWorkloadTest.class.getClassLoader(),
+                new Class<?>[]{Bucket.class}, (proxy, method, args) -> {
+                    if (!"async".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return async;
+                });
+    }
+}
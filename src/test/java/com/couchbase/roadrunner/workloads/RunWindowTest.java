@@ -0,0 +1,30 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.TimeUnit;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RunWindowTest
+{
+    @Test
+    public void testWarmupAndDeadline()
+    {
+        long now = System.nanoTime();
+        RunWindow window = new RunWindow(10, 20);
+        Assert.assertTrue(window.isTimeBounded(), "time bounded");
+        Assert.assertTrue(window.isWarmup(now), "warmup at start");
+        Assert.assertFalse(window.isWarmup(now + TimeUnit.SECONDS.toNanos(11)), "warmup over");
+        Assert.assertFalse(window.isExpired(now + TimeUnit.SECONDS.toNanos(29)), "before deadline");
+        Assert.assertTrue(window.isExpired(now + TimeUnit.SECONDS.toNanos(31)), "after deadline");
+    }
+
+    @Test
+    public void testCountBounded()
+    {
+        RunWindow window = new RunWindow(0, 0);
+        Assert.assertFalse(window.isTimeBounded(), "bounded by op count");
+        Assert.assertFalse(window.isWarmup(System.nanoTime()), "no warmup");
+        Assert.assertFalse(window.isExpired(System.nanoTime() + TimeUnit.DAYS.toNanos(1)), "never expires");
+    }
+}
@@ -0,0 +1,64 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SchemaDocumentGeneratorTest
+{
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final String SCHEMA = "{\"fields\": ["
+        + "{\"name\": \"type\", \"type\": \"string\", \"values\": [\"device\"]},"
+        + "{\"name\": \"name\", \"type\": \"string\", \"length\": 12, \"cardinality\": 3},"
+        + "{\"name\": \"age\", \"type\": \"int\", \"min\": 18, \"max\": 99},"
+        + "{\"name\": \"active\", \"type\": \"boolean\"},"
+        + "{\"name\": \"address\", \"type\": \"object\", \"fields\": [{\"name\": \"zip\", \"type\": \"long\"}]},"
+        + "{\"name\": \"tags\", \"type\": \"array\", \"length\": {\"distribution\": \"uniform\", \"min\": 1, \"max\": 3},"
+        + " \"items\": {\"type\": \"string\", \"length\": 4}},"
+        + "{\"name\": \"blob\", \"type\": \"string\", \"length\": {\"distribution\": \"histogram\","
+        + " \"buckets\": [[100, 1], [200000, 0]]}}"
+        + "]}";
+
+    @Test
+    public void testGeneratesDocumentsMatchingTheSchema() throws Exception
+    {
+        SchemaDocumentGenerator generator = new SchemaDocumentGenerator(MAPPER.readTree(SCHEMA), 0);
+        Set<String> names = new HashSet<String>();
+        for (int i = 0; i < 200; i++) {
+            JsonNode doc = MAPPER.readTree(generator.getDocument("key" + i).content());
+            Assert.assertEquals(doc.get("type").asText(), "device");
+            Assert.assertEquals(doc.get("name").asText().length(), 12);
+            int age = doc.get("age").asInt();
+            Assert.assertTrue(age >= 18 && age <= 99, "age " + age);
+            Assert.assertTrue(doc.get("active").isBoolean());
+            Assert.assertTrue(doc.get("address").get("zip").isNumber());
+            int tags = doc.get("tags").size();
+            Assert.assertTrue(tags >= 1 && tags <= 3, "tags " + tags);
+            Assert.assertEquals(doc.get("blob").asText().length(), 100, "zero weight bucket picked");
+            names.add(doc.get("name").asText());
+        }
+        Assert.assertTrue(names.size() <= 3, "cardinality exceeded: " + names.size());
+    }
+
+    @Test
+    public void testPayloadPool() throws Exception
+    {
+        SchemaDocumentGenerator generator = new SchemaDocumentGenerator(MAPPER.readTree(SCHEMA), 2);
+        Set<byte[]> payloads = new HashSet<byte[]>();
+        for (int i = 0; i < 100; i++) {
+            payloads.add(generator.getDocument("key" + i).content());
+        }
+        Assert.assertTrue(payloads.size() <= 2, "payloads not pooled");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownType() throws Exception
+    {
+        new SchemaDocumentGenerator(MAPPER.readTree("{\"fields\": [{\"name\": \"x\", \"type\": \"date\"}]}"), 0);
+    }
+}
@@ -0,0 +1,59 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.roadrunner.customConverter.ByteBufJsonDocument;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import rx.Observable;
+
+public class SetOperationTest
+{
+    /**
+     * A bucket whose upserts complete right away, or never.
+     */
+    private static AsyncBucket bucket(boolean complete)
+    {
+        return (AsyncBucket) Proxy.newProxyInstance(AsyncBucket.class.getClassLoader(),
+                new Class<?>[] {AsyncBucket.class},
+                (proxy, method, args) -> complete ? Observable.just(args[0]) : Observable.never());
+    }
+
+    @Test
+    public void testZeroCopyReleasesOnCompletion()
+    {
+        DocumentGenerator documents = new DocumentGenerator("Device", 1);
+        ByteBufJsonDocument probe = documents.getBufferDocument("probe");
+        int references = probe.content().refCnt();
+
+        new SetOperation(true).execute(bucket(true), documents, "key").toBlocking().last();
+        Assert.assertEquals(probe.content().refCnt(), references);
+        probe.content().release();
+    }
+
+    @Test
+    public void testZeroCopyReleasesOnTimeout()
+    {
+        DocumentGenerator documents = new DocumentGenerator("Device", 1);
+        ByteBufJsonDocument probe = documents.getBufferDocument("probe");
+        int references = probe.content().refCnt();
+
+        try {
+            new SetOperation(true).execute(bucket(false), documents, "key")
+                    .timeout(10, TimeUnit.MILLISECONDS).toBlocking().last();
+            Assert.fail("The upsert never completes");
+        } catch (RuntimeException ex) {
+            Assert.assertTrue(ex.getCause() instanceof TimeoutException);
+        }
+        // the timeout unsubscribes from the upsert on its own thread
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (probe.content().refCnt() != references && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        Assert.assertEquals(probe.content().refCnt(), references);
+        probe.content().release();
+    }
+}
@@ -0,0 +1,52 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.Map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class SubdocMixTest
+{
+    private static final String PATHS = "get=a,exists=b,counter=c,dict-upsert=d,array-append=e";
+
+    @Test
+    public void testOnlyWeightedOperationsAreKept()
+    {
+        Map<Operation, Double> weights = new SubdocMix("get=0,counter=3", PATHS).getWeights();
+        Assert.assertEquals(weights.size(), 1);
+        Operation operation = weights.keySet().iterator().next();
+        Assert.assertEquals(operation.getName(), "subdoc-counter");
+        Assert.assertEquals(weights.get(operation), 3.0);
+    }
+
+    @Test
+    public void testWeights()
+    {
+        OperationMix mix = new OperationMix(new SubdocMix("get=75,exists=25", PATHS).getWeights());
+        int gets = 0;
+        for (int i = 0; i < 100000; i++) {
+            if ("subdoc-get".equals(mix.next().getName())) {
+                gets++;
+            }
+        }
+        Assert.assertEquals(gets / 100000.0, 0.75, 0.02, "get fraction");
+    }
+
+    @Test
+    public void testEmptyMix()
+    {
+        Assert.assertTrue(new SubdocMix("", PATHS).isEmpty());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testUnknownOperation()
+    {
+        new SubdocMix("replace=10", PATHS);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testMissingPath()
+    {
+        new SubdocMix("get=10", "exists=b");
+    }
+}
@@ -0,0 +1,53 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.couchbase.roadrunner.GlobalConfig;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class VirtualThreadsTest
+{
+    @Test
+    public void testAvailableFromJava21()
+    {
+        String version = System.getProperty("java.specification.version");
+        boolean modern = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+        Assert.assertEquals(VirtualThreads.isAvailable(), modern);
+    }
+
+    @Test
+    public void testFactoryNumbersAndRunsThreads() throws InterruptedException
+    {
+        ThreadFactory factory = VirtualThreads.factory("User-");
+        AtomicBoolean ran = new AtomicBoolean();
+        Thread first = factory.newThread(() -> ran.set(true));
+        Thread second = factory.newThread(() -> {});
+        Assert.assertEquals(first.getName(), "User-0");
+        Assert.assertEquals(second.getName(), "User-1");
+        Assert.assertTrue(first.isDaemon());
+
+        first.start();
+        first.join();
+        Assert.assertTrue(ran.get());
+    }
+
+    @Test(timeOut = 60000)
+    public void testMoreUsersThanCarriers() throws Exception
+    {
+        int users = Runtime.getRuntime().availableProcessors() * 8;
+        int ops = users * 100;
+        GlobalConfig config = WorkloadTest.config("--engine", "virtual", "--num-threads", String.valueOf(users),
+                "--op-mix", WorkloadTest.TimerOperation.class.getName() + "=1");
+        Workload workload = new Workload("Users", WorkloadTest.unusedBucket(), config, null, ops, 0, null,
+                new RunWindow(0, 0));
+
+        workload.run();
+
+        Assert.assertTrue(workload.isFinished());
+        Assert.assertEquals(workload.getTotalOps(), ops);
+        Assert.assertEquals(workload.getOutcomes().get("timer")[Outcome.SUCCESS.ordinal()], ops);
+        Assert.assertEquals(workload.getInFlightOps(), 0);
+    }
+}
@@ -0,0 +1,236 @@
+package com.couchbase.roadrunner.workloads;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.couchbase.client.java.AsyncBucket;
+import com.couchbase.client.java.Bucket;
+import com.couchbase.roadrunner.GlobalConfig;
+import org.HdrHistogram.Histogram;
+import org.apache.commons.cli.GnuParser;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import rx.Observable;
+import rx.subjects.ReplaySubject;
+import rx.subjects.Subject;
+
+public class WorkloadTest
+{
+    /**
+     * Completes every op after a millisecond, without touching the bucket.
+     */
+    public static class TimerOperation implements Operation
+    {
+        @Override
+        public String getName()
+        {
+            return "timer";
+        }
+
+        @Override
+        public Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key)
+        {
+            return Observable.timer(1, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Leaves every op outstanding until the test completes or fails it.
+     */
+    public static class GatedOperation implements Operation
+    {
+        static final BlockingQueue<Subject<Object, Object>> PENDING = new LinkedBlockingQueue<>();
+
+        static final AtomicInteger PEAK = new AtomicInteger();
+
+        @Override
+        public String getName()
+        {
+            return "gated";
+        }
+
+        @Override
+        public Observable<?> execute(AsyncBucket bucket, DocumentGenerator documents, String key)
+        {
+            return Observable.defer(() -> {
+                Subject<Object, Object> op = ReplaySubject.create();
+                PENDING.add(op);
+                PEAK.accumulateAndGet(PENDING.size(), Math::max);
+                return op;
+            });
+        }
+    }
+
+    private static final long INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final int OPS = 10000;
+
+    /**
+     * Ops due every 1ms take 100us, except one which stalls for 200ms.
+     */
+    private static Histogram stalledRun(int samplingInterval, long expectedInterval)
+    {
+        Histogram histogram = Workload.newHistogram();
+        for (int op = 0; op < OPS; op++) {
+            if (samplingInterval > 1 && op % samplingInterval != 0) {
+                continue;
+            }
+            long latency = op == 5000 ? 200000 : 100;
+            histogram.recordValueWithExpectedInterval(latency, expectedInterval);
+        }
+        return histogram;
+    }
+
+    @Test
+    public void testSampledCorrectionMatchesUnsampled()
+    {
+        Histogram unsampled = stalledRun(1, Workload.expectedInterval(INTERVAL_NANOS, 1, 1));
+        Histogram sampled = stalledRun(10, Workload.expectedInterval(INTERVAL_NANOS, 1, 10));
+
+        for (double percentile : new double[] {90.0, 99.0, 99.9}) {
+            double expected = unsampled.getValueAtPercentile(percentile);
+            Assert.assertEquals(sampled.getValueAtPercentile(percentile), expected, expected * 0.1,
+                    "p" + percentile);
+        }
+        Assert.assertEquals(sampled.getMaxValue(), unsampled.getMaxValue(), unsampled.getMaxValue() * 0.01);
+    }
+
+    @Test
+    public void testExpectedIntervalSpansSampledOps()
+    {
+        Assert.assertEquals(Workload.expectedInterval(INTERVAL_NANOS, 4, 0), 4000);
+        Assert.assertEquals(Workload.expectedInterval(INTERVAL_NANOS, 4, 1), 4000);
+        Assert.assertEquals(Workload.expectedInterval(INTERVAL_NANOS, 4, 25), 100000);
+    }
+
+    @Test(timeOut = 60000)
+    public void testPipelinedKeepsMaxInFlightOutstanding() throws Exception
+    {
+        Workload workload = gatedWorkload("--max-in-flight", "8");
+        Thread worker = new Thread(workload);
+        worker.start();
+
+        releaseGatedOps(workload, 200, 8, -1);
+        worker.join();
+
+        assertCountedOnce(workload, 200, 0);
+        Assert.assertEquals(GatedOperation.PEAK.get(), 8);
+    }
+
+    @Test(timeOut = 60000)
+    public void testPipelinedFinishesWhenAnOpFails() throws Exception
+    {
+        Workload workload = gatedWorkload("--max-in-flight", "8");
+        Thread worker = new Thread(workload);
+        worker.start();
+
+        releaseGatedOps(workload, 200, 8, 42);
+        worker.join();
+
+        assertCountedOnce(workload, 200, 1);
+    }
+
+    @Test(timeOut = 60000)
+    public void testReactiveKeepsMaxInFlightOutstanding() throws Exception
+    {
+        Workload workload = gatedWorkload("--engine", "reactive", "--max-in-flight", "8");
+        workload.reactive().subscribe();
+
+        releaseGatedOps(workload, 200, 8, -1);
+
+        assertCountedOnce(workload, 200, 0);
+        Assert.assertEquals(GatedOperation.PEAK.get(), 8);
+    }
+
+    @Test(timeOut = 60000)
+    public void testReactiveFinishesWhenAnOpFails() throws Exception
+    {
+        Workload workload = gatedWorkload("--engine", "reactive", "--max-in-flight", "8");
+        workload.reactive().subscribe();
+
+        releaseGatedOps(workload, 200, 8, 42);
+
+        assertCountedOnce(workload, 200, 1);
+    }
+
+    private static Workload gatedWorkload(String... args) throws ParseException
+    {
+        GatedOperation.PENDING.clear();
+        GatedOperation.PEAK.set(0);
+        String[] options = new String[args.length + 6];
+        System.arraycopy(args, 0, options, 0, args.length);
+        options[args.length] = "--op-mix";
+        options[args.length + 1] = GatedOperation.class.getName() + "=1";
+        options[args.length + 2] = "--op-timeout";
+        options[args.length + 3] = "60000";
+        options[args.length + 4] = "--min-thinktime";
+        options[args.length + 5] = "0";
+        return new Workload("Gated", unusedBucket(), config(options), null, 200, 0, null, new RunWindow(0, 0));
+    }
+
+    /**
+     * Completes the ops one at a time, failing the n-th, once the worker has
+     * issued as many as it may keep outstanding.
+     */
+    private static void releaseGatedOps(Workload workload, int ops, int maxInFlight, int failing)
+            throws InterruptedException
+    {
+        for (int op = 0; op < ops; op++) {
+            int expected = Math.min(maxInFlight, ops - op);
+            while (GatedOperation.PENDING.size() < expected) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(GatedOperation.PENDING.size(), expected, "outstanding ops");
+            Assert.assertEquals(workload.getInFlightOps(), expected, "ops in flight");
+
+            Subject<Object, Object> next = GatedOperation.PENDING.take();
+            if (op == failing) {
+                next.onError(new IllegalStateException("failed on purpose"));
+            } else {
+                next.onNext("done");
+                next.onCompleted();
+            }
+        }
+    }
+
+    private static void assertCountedOnce(Workload workload, int ops, int failed)
+    {
+        long[] outcomes = workload.getOutcomes().get("gated");
+        Assert.assertTrue(workload.isFinished());
+        Assert.assertEquals(workload.getTotalOps(), ops);
+        Assert.assertEquals(outcomes[Outcome.SUCCESS.ordinal()], ops - failed);
+        Assert.assertEquals(outcomes[Outcome.OTHER.ordinal()], failed);
+        Assert.assertEquals(workload.getInFlightOps(), 0);
+        Assert.assertTrue(GatedOperation.PENDING.isEmpty());
+    }
+
+    /**
+     * A configuration from long options, e.g. "--num-threads", "4".
+     */
+    static GlobalConfig config(String... args) throws ParseException
+    {
+        Options options = new Options();
+        for (String arg : args) {
+            if (arg.startsWith("--")) {
+                options.addOption(null, arg.substring(2), true, "");
+            }
+        }
+        return new GlobalConfig(new GnuParser().parse(options, args));
+    }
+
+    /**
+     * A bucket for operations which don't use it.
+     */
+    static Bucket unusedBucket()
+    {
+        AsyncBucket async = (AsyncBucket) Proxy.newProxyInstance(WorkloadTest.class.getClassLoader(),
+                new Class<?>[] {AsyncBucket.class}, (proxy, method, args) -> null);
+        return (Bucket) Proxy.newProxyInstance(WorkloadTest.class.getClassLoader(),
+                new Class<?>[] {Bucket.class}, (proxy, method, args) -> async);
+    }
+}